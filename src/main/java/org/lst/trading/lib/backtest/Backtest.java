@@ -1,15 +1,19 @@
 package org.lst.trading.lib.backtest;
 
+import org.lst.trading.lib.csv.FastCsvWriter;
 import org.lst.trading.lib.model.ClosedOrder;
+import org.lst.trading.lib.model.TradingContext;
 import org.lst.trading.lib.model.TradingStrategy;
+import org.lst.trading.lib.series.BarSeries;
 import org.lst.trading.lib.series.DoubleSeries;
 import org.lst.trading.lib.series.MultipleDoubleSeries;
-import org.lst.trading.lib.series.TimeSeries;
+import org.lst.trading.lib.series.RowWriter;
 import org.lst.trading.lib.util.Statistics;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
 import static org.lst.trading.lib.util.Util.check;
@@ -24,6 +28,9 @@ public class Backtest {
         double mInitialFund;
         double mFinalValue;
         double mCommissions;
+        // account values, computed on first use
+        DoubleSeries mAccountValueHistory;
+        double[] mAccountValues;
 
         public Result(double pl, DoubleSeries plHistory, DoubleSeries marginHistory, List<ClosedOrder> orders, double initialFund, double finalValue, double commisions) {
             mPl = pl;
@@ -44,7 +51,17 @@ public class Backtest {
         }
 
         public DoubleSeries getAccountValueHistory() {
-            return getPlHistory().plus(mInitialFund);
+            if (mAccountValueHistory == null) {
+                mAccountValueHistory = mPlHistory.lazy().plus(mInitialFund).toSeries();
+            }
+            return mAccountValueHistory;
+        }
+
+        private double[] getAccountValues() {
+            if (mAccountValues == null) {
+                mAccountValues = getAccountValueHistory().toArray();
+            }
+            return mAccountValues;
         }
 
         public double getFinalValue() {
@@ -60,15 +77,15 @@ public class Backtest {
         }
 
         public double getSharpe() {
-            return Statistics.sharpe(Statistics.returns(getAccountValueHistory().toArray()));
+            return Statistics.sharpe(Statistics.returns(getAccountValues()));
         }
 
         public double getMaxDrawdown() {
-            return Statistics.drawdown(getAccountValueHistory().toArray())[0];
+            return Statistics.drawdown(getAccountValues())[0];
         }
 
         public double getMaxDrawdownPercent() {
-            return Statistics.drawdown(getAccountValueHistory().toArray())[1];
+            return Statistics.drawdown(getAccountValues())[1];
         }
 
         public int getDaysCount() {
@@ -90,22 +107,100 @@ public class Backtest {
         public List<ClosedOrder> getOrders() {
             return mOrders;
         }
+
+        /**
+         * Writes the P/L and margin history, one row per bar.
+         */
+        public void writeHistory(RowWriter writer) {
+            writer.start(Arrays.asList(mPlHistory.getName(), mMarginHistory.getName()));
+            double[] row = new double[2];
+            for (int i = 0; i < mPlHistory.size(); i++) {
+                row[0] = mPlHistory.getValue(i);
+                row[1] = mMarginHistory.getValue(i);
+                writer.row(mPlHistory.getEpochMillis(i), row);
+            }
+        }
+
+        /**
+         * Writes the closed orders with a header, one row per order.
+         */
+        public void writeOrders(FastCsvWriter writer) {
+            writer.header("id", "amount", "side", "instrument", "from", "to", "open", "close", "pl");
+            for (ClosedOrder order : mOrders) {
+                writer
+                    .field(order.getId())
+                    .field(Math.abs(order.getAmount()))
+                    .field(order.isLong() ? "Buy" : "Sell")
+                    .field(order.getInstrument())
+                    .time(order.getOpenInstant().toEpochMilli())
+                    .time(order.getCloseInstant().toEpochMilli())
+                    .field(order.getOpenPrice())
+                    .field(order.getClosePrice())
+                    .field(order.getPl())
+                    .endRow();
+            }
+        }
     }
 
     MultipleDoubleSeries mPriceSeries;
+    List<BarSeries> mBars;
     double mDeposit;
     double mLeverage = 1;
+    Netting mNetting = Netting.NONE;
 
     TradingStrategy mStrategy;
     BacktestTradingContext mContext;
 
-    Iterator<TimeSeries.Entry<List<Double>>> mPriceIterator;
+    int mFrom;
+    int mTo;
+    int mRow;
     Result mResult;
 
     public Backtest(double deposit, MultipleDoubleSeries priceSeries) {
+        this(deposit, priceSeries, 0, priceSeries.size());
+    }
+
+    /**
+     * Backtests only the rows {@code [from, to)} of the price series, the rows are read in place and not copied.
+     */
+    public Backtest(double deposit, MultipleDoubleSeries priceSeries, int from, int to) {
         check(priceSeries.isAscending());
+        check(0 <= from && from <= to && to <= priceSeries.size());
         mDeposit = deposit;
         mPriceSeries = priceSeries;
+        mFrom = from;
+        mTo = to;
+    }
+
+    /**
+     * Backtests the bars of several instruments, orders are filled at the closes. All series must have the same bar
+     * start times, strategies read the current bars through {@link TradingContext#getLastBar(String)}.
+     */
+    public Backtest(double deposit, List<BarSeries> bars) {
+        this(deposit, closes(bars));
+        mBars = bars;
+    }
+
+    private static MultipleDoubleSeries closes(List<BarSeries> bars) {
+        check(!bars.isEmpty());
+        BarSeries first = bars.get(0);
+        long[] times = new long[first.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = first.getEpochMillis(i);
+        }
+        List<String> names = new ArrayList<>();
+        double[][] closes = new double[bars.size()][];
+        for (int j = 0; j < closes.length; j++) {
+            BarSeries series = bars.get(j);
+            check(series.size() == times.length, "Bar series must have the same times");
+            closes[j] = new double[times.length];
+            for (int i = 0; i < times.length; i++) {
+                check(series.getEpochMillis(i) == times[i], "Bar series must have the same times");
+                closes[j][i] = series.getClose(i);
+            }
+            names.add(series.getName());
+        }
+        return MultipleDoubleSeries.of(names, times, closes);
     }
 
     public void setLeverage(double leverage) {
@@ -116,6 +211,14 @@ public class Backtest {
         return mLeverage;
     }
 
+    public void setNetting(Netting netting) {
+        mNetting = netting;
+    }
+
+    public Netting getNetting() {
+        return mNetting;
+    }
+
     public Result run(TradingStrategy strategy) {
         initialize(strategy);
         while (nextStep()) ;
@@ -126,35 +229,46 @@ public class Backtest {
         mStrategy = strategy;
         mContext = new BacktestTradingContext();
 
-        mContext.mInstruments = mPriceSeries.getNames();
-        mContext.mHistory = new MultipleDoubleSeries(mContext.mInstruments);
+        mContext.setInstruments(mPriceSeries.getNames());
         mContext.mInitialFunds = mDeposit;
         mContext.mLeverage = mLeverage;
+        mContext.mNetting = mNetting;
+        if (mBars != null) {
+            mContext.mBars = mBars.stream().map(BarSeries::cursor).toArray(BarSeries.Cursor[]::new);
+        }
         strategy.onStart(mContext);
-        mPriceIterator = mPriceSeries.iterator();
+        int lookback = strategy.getLookback();
+        check(lookback >= TradingStrategy.FULL_HISTORY);
+        mContext.mHistory = new HistoryBuffer(mContext.mInstruments.size(), lookback == TradingStrategy.FULL_HISTORY ? mTo - mFrom : lookback);
+        mRow = mFrom;
         nextStep();
     }
 
     public boolean nextStep() {
-        if (!mPriceIterator.hasNext()) {
+        if (mRow >= mTo) {
             finish();
             return false;
         }
 
-        TimeSeries.Entry<List<Double>> entry = mPriceIterator.next();
+        long time = mPriceSeries.getEpochMillis(mRow);
+        mContext.updatePrices(mPriceSeries, mRow);
+        if (mContext.mBars != null) {
+            mContext.updateBars(mRow);
+        }
+        mRow++;
 
-        mContext.mPrices = entry.getItem();
-        mContext.mInstant = entry.getInstant();
-        mContext.mPl.add(mContext.getPl(), entry.getInstant());
-        mContext.mFundsHistory.add(mContext.getAvailableFunds(), entry.getInstant());
+        mContext.mInstant = Instant.ofEpochMilli(time);
+        mContext.mPl.add(mContext.getPl(), time);
+        mContext.mFundsHistory.add(mContext.getAvailableFunds(), time);
         if (mContext.getAvailableFunds() < 0) {
             finish();
             return false;
         }
 
+        mContext.mIndicators.update(mContext.mPrices);
         mStrategy.onTick();
 
-        mContext.mHistory.add(entry);
+        mContext.mHistory.add(mContext.mPrices, time);
 
         return true;
     }
@@ -164,9 +278,7 @@ public class Backtest {
     }
 
     private void finish() {
-        for (SimpleOrder order : new ArrayList<>(mContext.mOrders)) {
-            mContext.close(order);
-        }
+        mContext.flattenAll();
 
         mStrategy.onEnd();
 
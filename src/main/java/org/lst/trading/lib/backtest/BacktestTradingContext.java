@@ -1,67 +1,243 @@
 package org.lst.trading.lib.backtest;
 
+import org.lst.trading.lib.indicator.IndicatorGraph;
+import org.lst.trading.lib.model.Bar;
 import org.lst.trading.lib.model.ClosedOrder;
+import org.lst.trading.lib.model.Instrument;
 import org.lst.trading.lib.model.Order;
 import org.lst.trading.lib.model.TradingContext;
+import org.lst.trading.lib.series.BarSeries;
 import org.lst.trading.lib.series.DoubleSeries;
 import org.lst.trading.lib.series.MultipleDoubleSeries;
 import org.lst.trading.lib.series.TimeSeries;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.lst.trading.lib.util.Util.check;
 
 class BacktestTradingContext implements TradingContext {
     Instant mInstant;
-    List<Double> mPrices;
+    double[] mPrices;
+    // current bar per instrument, null unless the backtest runs on bars
+    BarSeries.Cursor[] mBars;
     List<String> mInstruments;
+    Map<String, Instrument> mInstrumentsByName;
     DoubleSeries mPl = new DoubleSeries("pl");
     DoubleSeries mFundsHistory = new DoubleSeries("funds");
-    MultipleDoubleSeries mHistory;
+    HistoryBuffer mHistory;
+    IndicatorGraph mIndicators = new IndicatorGraph();
     double mInitialFunds;
     double mCommissions;
 
     int mOrderId = 1;
 
-    List<SimpleOrder> mOrders = new ArrayList<>();
+    Netting mNetting = Netting.NONE;
+    PositionBook mOrders;
 
     double mClosedPl = 0;
     List<SimpleClosedOrder> mClosedOrders = new ArrayList<>();
     double mLeverage;
 
+    // running per instrument totals of the open orders, updated on order/close and when a price changes
+    int[] mOpenCounts;
+    double[] mPositions;
+    double[] mCostBasis;
+    double[] mOpenPls;
+    int mOpenCount;
+    double mOpenPl;
+    double mMargin;
+
     @Override public Instant getTime() {
         return mInstant;
     }
 
+    void setInstruments(List<String> instruments) {
+        mInstruments = instruments;
+        mPrices = new double[instruments.size()];
+        // an instrument has no price until its first valid value, see updatePrices
+        Arrays.fill(mPrices, Double.NaN);
+        mOpenCounts = new int[instruments.size()];
+        mPositions = new double[instruments.size()];
+        mCostBasis = new double[instruments.size()];
+        mOpenPls = new double[instruments.size()];
+        mOrders = new PositionBook(instruments.size());
+        mInstrumentsByName = Instrument.byName(instruments);
+    }
+
+    /**
+     * A missing (non-finite) price keeps the last one, otherwise it would turn the open P&L into NaN until every order
+     * of the instrument is closed.
+     */
+    void updatePrices(MultipleDoubleSeries prices, int row) {
+        for (int i = 0; i < mPrices.length; i++) {
+            double price = prices.getValue(row, i);
+            if (Double.isFinite(price) && price != mPrices[i]) {
+                mPrices[i] = price;
+                if (mOpenCounts[i] > 0) {
+                    markToMarket(i);
+                }
+            }
+        }
+    }
+
+    void updateBars(int row) {
+        for (BarSeries.Cursor bar : mBars) {
+            bar.moveTo(row);
+        }
+    }
+
+    private void markToMarket(int instrument) {
+        double pl = mPositions[instrument] * mPrices[instrument] - mCostBasis[instrument];
+        mOpenPl += pl - mOpenPls[instrument];
+        mOpenPls[instrument] = pl;
+    }
+
+    private void updatePosition(SimpleOrder order, int sign) {
+        int i = order.mInstrumentId;
+        double margin = Math.abs(order.getAmount()) * order.getOpenPrice();
+        mOpenCounts[i] += sign;
+        mOpenCount += sign;
+        mMargin += sign * margin;
+
+        if (mOpenCounts[i] == 0) {
+            mOpenPl -= mOpenPls[i];
+            mPositions[i] = 0;
+            mCostBasis[i] = 0;
+            mOpenPls[i] = 0;
+        } else {
+            mPositions[i] += sign * order.getAmount();
+            mCostBasis[i] += sign * order.getAmount() * order.getOpenPrice();
+            markToMarket(i);
+        }
+
+        if (mOpenCount == 0) {
+            mOpenPl = 0;
+            mMargin = 0;
+        }
+    }
+
+    @Override public Instrument getInstrument(String name) {
+        Instrument instrument = mInstrumentsByName.get(name);
+        check(instrument != null, "Unknown instrument " + name);
+        return instrument;
+    }
+
     @Override public double getLastPrice(String instrument) {
-        return mPrices.get(mInstruments.indexOf(instrument));
+        return getLastPrice(getInstrument(instrument));
+    }
+
+    @Override public double getLastPrice(Instrument instrument) {
+        return mPrices[instrument.getId()];
+    }
+
+    @Override public double[] getLastPrices() {
+        return mPrices;
+    }
+
+    @Override public Bar getLastBar(String instrument) {
+        return getLastBar(getInstrument(instrument));
+    }
+
+    @Override public Bar getLastBar(Instrument instrument) {
+        check(mBars != null, "Backtest has no bars");
+        return mBars[instrument.getId()];
     }
 
     @Override public Stream<TimeSeries.Entry<Double>> getHistory(String instrument) {
-        int index = mInstruments.indexOf(instrument);
-        return mHistory.reversedStream().map(t -> new TimeSeries.Entry<>(t.getItem().get(index), t.getInstant()));
+        int index = getInstrument(instrument).getId();
+        return IntStream.range(0, mHistory.size()).mapToObj(age -> new TimeSeries.Entry<>(mHistory.get(index, age), Instant.ofEpochMilli(mHistory.getEpochMillis(age))));
+    }
+
+    @Override public double[] getHistory(String instrument, int n) {
+        return getHistory(getInstrument(instrument), n);
+    }
+
+    @Override public double[] getHistory(Instrument instrument, int n) {
+        double[] history = new double[Math.min(n, mHistory.size())];
+        getHistory(instrument, history);
+        return history;
+    }
+
+    @Override public int getHistory(String instrument, double[] buffer) {
+        return getHistory(getInstrument(instrument), buffer);
+    }
+
+    @Override public int getHistory(Instrument instrument, double[] buffer) {
+        return mHistory.copy(instrument.getId(), buffer);
+    }
+
+    @Override public IndicatorGraph getIndicators() {
+        return mIndicators;
     }
 
     @Override public Order order(String instrument, boolean buy, int amount) {
+        return order(getInstrument(instrument), buy, amount);
+    }
+
+    @Override public Order order(Instrument instrument, boolean buy, int amount) {
         check(amount > 0);
+        check(Double.isFinite(getLastPrice(instrument)), "No price for " + instrument.getName() + " at " + getTime());
+
+        int remaining = amount * (buy ? 1 : -1);
+        if (mNetting != Netting.NONE) {
+            remaining = net(instrument.getId(), remaining);
+            if (remaining == 0) {
+                return null;
+            }
+        }
 
         double price = getLastPrice(instrument);
-        SimpleOrder order = new SimpleOrder(mOrderId++, instrument, getTime(), price, amount * (buy ? 1 : -1));
+        SimpleOrder order = new SimpleOrder(mOrderId++, instrument, getTime(), price, remaining);
         mOrders.add(order);
+        updatePosition(order, 1);
 
         mCommissions += calculateCommission(order);
 
         return order;
     }
 
+    private int net(int instrument, int amount) {
+        while (amount != 0) {
+            SimpleOrder lot = mNetting == Netting.FIFO ? mOrders.first(instrument) : mOrders.last(instrument);
+            if (lot == null || (lot.getAmount() > 0) == (amount > 0)) {
+                break;
+            }
+
+            if (Math.abs(lot.getAmount()) <= Math.abs(amount)) {
+                amount += lot.getAmount();
+                close(lot);
+            } else {
+                updatePosition(lot, -1);
+                lot.mAmount += amount;
+                updatePosition(lot, 1);
+                // the realized part gets an id of its own, the lot stays open under its id
+                realize(new SimpleOrder(mOrderId++, lot.mInstrument, lot.getOpenInstant(), lot.getOpenPrice(), -amount));
+                amount = 0;
+            }
+        }
+        return amount;
+    }
+
     @Override public ClosedOrder close(Order order) {
         SimpleOrder simpleOrder = (SimpleOrder) order;
         mOrders.remove(simpleOrder);
-        double price = getLastPrice(order.getInstrument());
-        SimpleClosedOrder closedOrder = new SimpleClosedOrder(simpleOrder, price, getTime());
+        updatePosition(simpleOrder, -1);
+        return realize(simpleOrder);
+    }
+
+    @Override public boolean isOpen(Order order) {
+        return order instanceof SimpleOrder && mOrders.contains((SimpleOrder) order);
+    }
+
+    private ClosedOrder realize(SimpleOrder order) {
+        double price = mPrices[order.mInstrumentId];
+        SimpleClosedOrder closedOrder = new SimpleClosedOrder(order, price, getTime());
         mClosedOrders.add(closedOrder);
         mClosedPl += closedOrder.getPl();
         mCommissions += calculateCommission(order);
@@ -69,8 +245,26 @@ class BacktestTradingContext implements TradingContext {
         return closedOrder;
     }
 
+    @Override public List<ClosedOrder> flatten(Instrument instrument) {
+        List<ClosedOrder> closed = new ArrayList<>(mOpenCounts[instrument.getId()]);
+        SimpleOrder order;
+        while ((order = mOrders.first(instrument.getId())) != null) {
+            closed.add(close(order));
+        }
+        return closed;
+    }
+
+    @Override public List<ClosedOrder> flattenAll() {
+        List<ClosedOrder> closed = new ArrayList<>(mOrders.size());
+        SimpleOrder order;
+        while ((order = mOrders.first()) != null) {
+            closed.add(close(order));
+        }
+        return closed;
+    }
+
     @Override public double getPl() {
-        return mClosedPl + mOrders.stream().mapToDouble(t -> t.calculatePl(getLastPrice(t.getInstrument()))).sum() - mCommissions;
+        return mClosedPl + mOpenPl - mCommissions;
     }
 
     @Override public List<String> getInstruments() {
@@ -78,7 +272,7 @@ class BacktestTradingContext implements TradingContext {
     }
 
     @Override public double getAvailableFunds() {
-        return getNetValue() - mOrders.stream().mapToDouble(t -> Math.abs(t.getAmount()) * t.getOpenPrice() / mLeverage).sum();
+        return getNetValue() - mMargin / mLeverage;
     }
 
     @Override public double getInitialFunds() {
@@ -0,0 +1,72 @@
+package org.lst.trading.lib.backtest;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Fixed capacity price history: one primitive ring buffer per instrument sharing a ring of epoch millis.
+ * Ages are counted from the most recent row (age 0).
+ */
+class HistoryBuffer {
+    final int mCapacity;
+    final long[] mTimes;
+    final double[][] mValues;
+    int mHead;
+    int mSize;
+
+    HistoryBuffer(int instrumentCount, int capacity) {
+        check(capacity >= 0);
+        mCapacity = capacity;
+        mTimes = new long[capacity];
+        mValues = new double[instrumentCount][capacity];
+    }
+
+    void add(double[] values, long epochMillis) {
+        if (mCapacity == 0) {
+            return;
+        }
+
+        mTimes[mHead] = epochMillis;
+        for (int i = 0; i < mValues.length; i++) {
+            mValues[i][mHead] = values[i];
+        }
+
+        if (++mHead == mCapacity) {
+            mHead = 0;
+        }
+        if (mSize < mCapacity) {
+            mSize++;
+        }
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    private int slot(int age) {
+        int slot = mHead - 1 - age;
+        return slot < 0 ? slot + mCapacity : slot;
+    }
+
+    double get(int instrument, int age) {
+        check(age < mSize);
+        return mValues[instrument][slot(age)];
+    }
+
+    long getEpochMillis(int age) {
+        check(age < mSize);
+        return mTimes[slot(age)];
+    }
+
+    int copy(int instrument, double[] destination) {
+        int n = Math.min(destination.length, mSize);
+        double[] values = mValues[instrument];
+        int slot = mHead;
+        for (int age = 0; age < n; age++) {
+            if (--slot < 0) {
+                slot = mCapacity - 1;
+            }
+            destination[age] = values[slot];
+        }
+        return n;
+    }
+}
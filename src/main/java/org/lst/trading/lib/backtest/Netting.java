@@ -0,0 +1,10 @@
+package org.lst.trading.lib.backtest;
+
+/**
+ * How the backtest handles an order against an open position in the opposite direction: {@link #NONE} opens a new
+ * lot, {@link #FIFO}/{@link #LIFO} first close the oldest/newest open lots of the instrument and only open a lot for the
+ * remaining amount.
+ */
+public enum Netting {
+    NONE, FIFO, LIFO
+}
@@ -0,0 +1,100 @@
+package org.lst.trading.lib.backtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Open orders indexed by id, linked per instrument and in opening order through intrusive lists in {@link SimpleOrder},
+ * so adding and removing any order is O(1).
+ */
+class PositionBook {
+    final Map<Integer, SimpleOrder> mById = new HashMap<>();
+    final SimpleOrder[] mFirst;
+    final SimpleOrder[] mLast;
+    SimpleOrder mHead;
+    SimpleOrder mTail;
+
+    PositionBook(int instrumentCount) {
+        mFirst = new SimpleOrder[instrumentCount];
+        mLast = new SimpleOrder[instrumentCount];
+    }
+
+    int size() {
+        return mById.size();
+    }
+
+    SimpleOrder get(int id) {
+        return mById.get(id);
+    }
+
+    boolean contains(SimpleOrder order) {
+        return mById.get(order.getId()) == order;
+    }
+
+    SimpleOrder first() {
+        return mHead;
+    }
+
+    SimpleOrder first(int instrument) {
+        return mFirst[instrument];
+    }
+
+    SimpleOrder last(int instrument) {
+        return mLast[instrument];
+    }
+
+    void add(SimpleOrder order) {
+        check(mById.put(order.getId(), order) == null);
+
+        int i = order.mInstrumentId;
+        order.mInstrumentPrev = mLast[i];
+        order.mInstrumentNext = null;
+        if (mLast[i] == null) {
+            mFirst[i] = order;
+        } else {
+            mLast[i].mInstrumentNext = order;
+        }
+        mLast[i] = order;
+
+        order.mBookPrev = mTail;
+        order.mBookNext = null;
+        if (mTail == null) {
+            mHead = order;
+        } else {
+            mTail.mBookNext = order;
+        }
+        mTail = order;
+    }
+
+    void remove(SimpleOrder order) {
+        check(contains(order), "Order is not open");
+        mById.remove(order.getId());
+
+        int i = order.mInstrumentId;
+        if (order.mInstrumentPrev == null) {
+            mFirst[i] = order.mInstrumentNext;
+        } else {
+            order.mInstrumentPrev.mInstrumentNext = order.mInstrumentNext;
+        }
+        if (order.mInstrumentNext == null) {
+            mLast[i] = order.mInstrumentPrev;
+        } else {
+            order.mInstrumentNext.mInstrumentPrev = order.mInstrumentPrev;
+        }
+
+        if (order.mBookPrev == null) {
+            mHead = order.mBookNext;
+        } else {
+            order.mBookPrev.mBookNext = order.mBookNext;
+        }
+        if (order.mBookNext == null) {
+            mTail = order.mBookPrev;
+        } else {
+            order.mBookNext.mBookPrev = order.mBookPrev;
+        }
+
+        order.mInstrumentPrev = order.mInstrumentNext = order.mBookPrev = order.mBookNext = null;
+    }
+}
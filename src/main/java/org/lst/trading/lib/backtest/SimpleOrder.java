@@ -1,5 +1,6 @@
 package org.lst.trading.lib.backtest;
 
+import org.lst.trading.lib.model.Instrument;
 import org.lst.trading.lib.model.Order;
 
 import java.time.Instant;
@@ -9,11 +10,17 @@ class SimpleOrder implements Order {
     int mAmount;
     double mOpenPrice;
     Instant mOpenInstant;
-    String mInstrument;
+    Instrument mInstrument;
+    int mInstrumentId;
 
-    public SimpleOrder(int id, String instrument, Instant openInstant, double openPrice, int amount) {
+    // links of the PositionBook
+    SimpleOrder mInstrumentPrev, mInstrumentNext;
+    SimpleOrder mBookPrev, mBookNext;
+
+    public SimpleOrder(int id, Instrument instrument, Instant openInstant, double openPrice, int amount) {
         mId = id;
         mInstrument = instrument;
+        mInstrumentId = instrument.getId();
         mOpenInstant = openInstant;
         mOpenPrice = openPrice;
         mAmount = amount;
@@ -36,6 +43,6 @@ class SimpleOrder implements Order {
     }
 
     @Override public String getInstrument() {
-        return mInstrument;
+        return mInstrument.getName();
     }
 }
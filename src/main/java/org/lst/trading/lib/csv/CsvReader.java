@@ -1,6 +1,7 @@
 package org.lst.trading.lib.csv;
 
 import org.lst.trading.lib.model.Bar;
+import org.lst.trading.lib.series.BarSeries;
 import org.lst.trading.lib.series.DoubleSeries;
 import org.lst.trading.lib.series.MultipleDoubleSeries;
 import org.lst.trading.lib.series.TimeSeries;
@@ -88,6 +89,7 @@ public class CsvReader {
     private static class SeriesConsumer<T> implements Consumer<String[]> {
         int i = 0;
         List<String> mColumns;
+        int mInstantIndex;
         TimeSeries<T> mSeries;
         ParseFunction<Instant> mInstantParseFunction;
         Function2<String[], List<String>, T> mF;
@@ -101,8 +103,9 @@ public class CsvReader {
         @Override public void accept(String[] parts) {
             if (i++ == 0) {
                 mColumns = Stream.of(parts).map(String::trim).collect(toList());
+                mInstantIndex = mColumns.indexOf(mInstantParseFunction.getColumn());
             } else {
-                Instant instant = mInstantParseFunction.parse(parts[mColumns.indexOf(mInstantParseFunction.getColumn())]);
+                Instant instant = mInstantParseFunction.parse(parts[mInstantIndex]);
                 mSeries.add(mF.apply(parts, mColumns), instant);
             }
         }
@@ -156,25 +159,36 @@ public class CsvReader {
         return series;
     }
 
+    /**
+     * Bars of a comma separated file. Each bar holds its parsed values, see {@link BarSeries} and
+     * {@link FastCsvReader#readBars} for large files.
+     */
     public static Stream<Bar> parse(Stream<String> lines, ParseFunction<Double> open, ParseFunction<Double> high, ParseFunction<Double> low, ParseFunction<Double> close, ParseFunction<Long> volume, ParseFunction<Instant> instant) {
         return lines
             .map(l -> l.split(","))
             .flatMap(new Function<String[], Stream<? extends Bar>>() {
-                public List<Object> mColumns;
                 int i = 0;
+                int mOpenIndex, mHighIndex, mLowIndex, mCloseIndex, mVolumeIndex, mInstantIndex;
 
                 @Override public Stream<? extends Bar> apply(String[] parts) {
                     if (i++ == 0) {
-                        mColumns = Stream.of(parts).map(String::trim).collect(toList());
+                        List<String> columns = Stream.of(parts).map(String::trim).collect(toList());
+                        mOpenIndex = columns.indexOf(open.getColumn());
+                        mHighIndex = columns.indexOf(high.getColumn());
+                        mLowIndex = columns.indexOf(low.getColumn());
+                        mCloseIndex = columns.indexOf(close.getColumn());
+                        mVolumeIndex = columns.indexOf(volume.getColumn());
+                        mInstantIndex = columns.indexOf(instant.getColumn());
                         return Stream.empty();
                     } else {
                         return Stream.of(
                             new Bar() {
-                                private double mOpen = open.parse(parts[mColumns.indexOf(open.getColumn())]);
-                                private double mHigh = high.parse(parts[mColumns.indexOf(high.getColumn())]);
-                                private double mLow = low.parse(parts[mColumns.indexOf(low.getColumn())]);
-                                private double mClose = close.parse(parts[mColumns.indexOf(close.getColumn())]);
-                                private long mVolume = volume.parse(parts[mColumns.indexOf(volume.getColumn())]);
+                                private final double mOpen = open.parse(parts[mOpenIndex]);
+                                private final double mHigh = high.parse(parts[mHighIndex]);
+                                private final double mLow = low.parse(parts[mLowIndex]);
+                                private final double mClose = close.parse(parts[mCloseIndex]);
+                                private final long mVolume = volume.parse(parts[mVolumeIndex]);
+                                private final Instant mStart = instant.parse(parts[mInstantIndex]);
 
                                 @Override public double getOpen() {
                                     return mOpen;
@@ -197,7 +211,7 @@ public class CsvReader {
                                 }
 
                                 @Override public Instant getStart() {
-                                    return instant.parse(parts[mColumns.indexOf(instant.getColumn())]);
+                                    return mStart;
                                 }
 
                                 @Override public Duration getDuration() {
@@ -0,0 +1,474 @@
+package org.lst.trading.lib.csv;
+
+import org.lst.trading.lib.series.BarSeries;
+import org.lst.trading.lib.series.DoubleSeries;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.lib.util.Util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Reads a time column and double columns of a CSV file straight from the bytes into primitive arrays.
+ * <p>
+ * The header is read once to resolve the column indices. The rest of the file is split into chunks at line boundaries
+ * which are memory mapped and parsed in parallel, each into its own arrays, which are concatenated in file order.
+ * Doubles are parsed exactly: with a single multiplication or division by a power of ten when the digits fit (which is
+ * correctly rounded), with {@link Double#parseDouble(String)} otherwise. Times must be ISO dates or date times
+ * ({@code 2017-01-31}, {@code 2017-01-31 09:30}, {@code 2017-01-31T09:30:00.000Z}) and are read as UTC. Fields may be
+ * quoted but must not contain the separator, empty fields are NaN.
+ */
+public class FastCsvReader {
+    private static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    byte mSeparator = ',';
+    int mChunkSize = DEFAULT_CHUNK_SIZE;
+    ForkJoinPool mPool = ForkJoinPool.commonPool();
+
+    public void setSeparator(char separator) {
+        check(separator < 128);
+        mSeparator = (byte) separator;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        check(chunkSize > 0);
+        mChunkSize = chunkSize;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        mPool = pool;
+    }
+
+    public DoubleSeries read(Path path, String timeColumn, String column) {
+        MultipleDoubleSeries series = read(path, timeColumn, new String[]{column});
+        return series.getColumn(column);
+    }
+
+    /**
+     * Reads OHLCV bars of the given columns, ascending by start time.
+     */
+    public BarSeries readBars(Path path, String name, Duration duration, String timeColumn, String open, String high, String low, String close, String volume) {
+        MultipleDoubleSeries series = read(path, timeColumn, open, high, low, close, volume);
+        long[] times = new long[series.size()];
+        double[][] columns = new double[4][series.size()];
+        long[] volumes = new long[series.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = series.getEpochMillis(i);
+            for (int c = 0; c < columns.length; c++) {
+                columns[c][i] = series.getValue(i, c);
+            }
+            volumes[i] = (long) series.getValue(i, 4);
+        }
+        return BarSeries.of(name, duration, times, columns[0], columns[1], columns[2], columns[3], volumes);
+    }
+
+    /**
+     * Reads the columns of all rows, ascending by time if the file is sorted either way.
+     */
+    public MultipleDoubleSeries read(Path path, String timeColumn, String... columns) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            byte[] headerLine = readLine(channel, 0);
+            List<String> header = splitHeader(headerLine);
+            int timeIndex = header.indexOf(timeColumn);
+            check(timeIndex >= 0, "Unknown column " + timeColumn);
+            int[] indices = new int[columns.length];
+            for (int c = 0; c < columns.length; c++) {
+                indices[c] = header.indexOf(columns[c]);
+                check(indices[c] >= 0, "Unknown column " + columns[c]);
+            }
+
+            List<Callable<Chunk>> tasks = new ArrayList<>();
+            long start = Math.min(headerLine.length + 1, size);
+            while (start < size) {
+                long end = start + mChunkSize >= size ? size : lineEnd(channel, start + mChunkSize);
+                long chunkStart = start;
+                tasks.add(() -> parse(channel, chunkStart, end, timeIndex, indices));
+                start = end;
+            }
+            return concat(Util.invokeAll(mPool, tasks), columns);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Splits the header into trimmed, unquoted names, skipping a UTF-8 byte order mark at the start of the file.
+     */
+    private List<String> splitHeader(byte[] line) {
+        List<String> names = new ArrayList<>();
+        boolean bom = line.length >= 3 && line[0] == (byte) 0xEF && line[1] == (byte) 0xBB && line[2] == (byte) 0xBF;
+        int from = bom ? 3 : 0;
+        for (int i = from; i <= line.length; i++) {
+            if (i == line.length || line[i] == mSeparator) {
+                int a = from;
+                int b = i;
+                while (a < b && isBlank(line[a])) a++;
+                while (b > a && isBlank(line[b - 1])) b--;
+                if (b - a >= 2 && line[a] == '"' && line[b - 1] == '"') {
+                    a++;
+                    b--;
+                }
+                names.add(new String(line, a, b - a, StandardCharsets.UTF_8));
+                from = i + 1;
+            }
+        }
+        return names;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * The line starting at {@code position}, without the line feed.
+     */
+    private static byte[] readLine(FileChannel channel, long position) throws IOException {
+        long end = lineEnd(channel, position);
+        long length = end - position - (end < channel.size() || endsWithNewline(channel) ? 1 : 0);
+        check(length <= Integer.MAX_VALUE);
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(length, 0));
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) ;
+        return buffer.array();
+    }
+
+    private static boolean endsWithNewline(FileChannel channel) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        return channel.size() > 0 && channel.read(last, channel.size() - 1) == 1 && last.get(0) == '\n';
+    }
+
+    /**
+     * Position after the first line feed at or after {@code position}, or the file size.
+     */
+    private static long lineEnd(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    private static class Chunk {
+        long[] mTimes;
+        double[][] mColumns;
+        int mSize;
+
+        Chunk(int columns, int capacity) {
+            mTimes = new long[capacity];
+            mColumns = new double[columns][capacity];
+        }
+
+        void grow() {
+            int capacity = mTimes.length * 2;
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            for (int c = 0; c < mColumns.length; c++) {
+                mColumns[c] = Arrays.copyOf(mColumns[c], capacity);
+            }
+        }
+    }
+
+    private Chunk parse(FileChannel channel, long start, long end, int timeIndex, int[] indices) throws IOException {
+        // one bulk copy out of the mapping, byte array reads are cheaper than buffer reads in the loops below
+        byte[] buffer = new byte[(int) (end - start)];
+        channel.map(FileChannel.MapMode.READ_ONLY, start, end - start).get(buffer);
+        int length = buffer.length;
+        // field index -> output column, -2 for the time, -1 for unused fields
+        int fieldCount = timeIndex + 1;
+        for (int index : indices) {
+            fieldCount = Math.max(fieldCount, index + 1);
+        }
+        int[][] targets = new int[fieldCount][];
+        for (int f = 0; f < fieldCount; f++) {
+            int count = 0;
+            for (int index : indices) {
+                if (index == f) count++;
+            }
+            targets[f] = new int[count];
+            count = 0;
+            for (int c = 0; c < indices.length; c++) {
+                if (indices[c] == f) targets[f][count++] = c;
+            }
+        }
+
+        Chunk chunk = new Chunk(indices.length, Math.max(16, length / 32));
+        int position = 0;
+        byte separator = mSeparator;
+        while (position < length) {
+            if (chunk.mSize == chunk.mTimes.length) {
+                chunk.grow();
+            }
+            int row = chunk.mSize;
+            boolean hasTime = false;
+            int field = 0;
+            int from = position;
+            int i = position;
+            // a single pass over the line, fields after the last needed one are only scanned for the line feed
+            for (; i < length; i++) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    break;
+                }
+                if (b == separator && field < fieldCount) {
+                    hasTime |= field(chunk, row, buffer, from, i, field, timeIndex, targets[field]);
+                    field++;
+                    from = i + 1;
+                }
+            }
+            if (field < fieldCount) {
+                int to = i;
+                while (to > from && buffer[to - 1] == '\r') to--;
+                if (field == 0 && to == from) {
+                    // empty line
+                    position = i + 1;
+                    continue;
+                }
+                hasTime |= field(chunk, row, buffer, from, to, field, timeIndex, targets[field]);
+                field++;
+            }
+            if (!hasTime) {
+                throw new RuntimeException("Missing time in line at " + (start + position));
+            }
+            for (; field < fieldCount; field++) {
+                for (int c : targets[field]) {
+                    chunk.mColumns[c][row] = Double.NaN;
+                }
+            }
+            chunk.mSize++;
+            position = i + 1;
+        }
+        return chunk;
+    }
+
+    /**
+     * Stores field {@code [a, b)} of the line into the row, returns whether it was the time.
+     */
+    private static boolean field(Chunk chunk, int row, byte[] buffer, int a, int b, int field, int timeIndex, int[] targets) {
+        while (a < b && buffer[a] == ' ') a++;
+        while (b > a && buffer[b - 1] == ' ') b--;
+        if (b - a >= 2 && buffer[a] == '"' && buffer[b - 1] == '"') {
+            a++;
+            b--;
+        }
+        if (targets.length > 0) {
+            double value = parseDouble(buffer, a, b);
+            for (int c : targets) {
+                chunk.mColumns[c][row] = value;
+            }
+        }
+        if (field == timeIndex) {
+            chunk.mTimes[row] = parseTime(buffer, a, b);
+            return true;
+        }
+        return false;
+    }
+
+    private static MultipleDoubleSeries concat(List<Chunk> chunks, String[] columns) {
+        int n = 0;
+        for (Chunk chunk : chunks) {
+            n += chunk.mSize;
+        }
+        long[] times = new long[n];
+        double[][] values = new double[columns.length][n];
+        int offset = 0;
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.mTimes, 0, times, offset, chunk.mSize);
+            for (int c = 0; c < columns.length; c++) {
+                System.arraycopy(chunk.mColumns[c], 0, values[c], offset, chunk.mSize);
+            }
+            offset += chunk.mSize;
+        }
+
+        if (n > 1 && times[0] > times[n - 1]) {
+            reverse(times);
+            for (double[] column : values) {
+                reverse(column);
+            }
+        }
+        return MultipleDoubleSeries.of(Arrays.asList(columns), times, values);
+    }
+
+    private static void reverse(long[] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            long tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    private static void reverse(double[] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            double tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    /**
+     * Parses {@code [from, to)} of the buffer, see the class comment.
+     */
+    static double parseDouble(byte[] buffer, int from, int to) {
+        if (from == to) {
+            return Double.NaN;
+        }
+        int i = from;
+        boolean negative = false;
+        byte b = buffer[i];
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        for (; i < to && (b = buffer[i]) >= '0' && b <= '9'; i++) {
+            anyDigit = true;
+            if (digits > 0 || b != '0') {
+                if (digits < 19) {
+                    mantissa = mantissa * 10 + (b - '0');
+                } else {
+                    exponent++;
+                }
+                digits++;
+            }
+        }
+        if (i < to && buffer[i] == '.') {
+            for (i++; i < to && (b = buffer[i]) >= '0' && b <= '9'; i++) {
+                anyDigit = true;
+                if (digits > 0 || b != '0') {
+                    if (digits < 19) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        exponent--;
+                    }
+                    digits++;
+                } else {
+                    exponent--;
+                }
+            }
+        }
+        if (anyDigit && i < to && ((b = buffer[i]) == 'e' || b == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && ((b = buffer[i]) == '-' || b == '+')) {
+                negativeExponent = b == '-';
+                i++;
+            }
+            int e = 0;
+            boolean anyExponentDigit = false;
+            for (; i < to && (b = buffer[i]) >= '0' && b <= '9'; i++) {
+                anyExponentDigit = true;
+                e = Math.min(e * 10 + (b - '0'), 100000);
+            }
+            anyDigit = anyExponentDigit;
+            exponent += negativeExponent ? -e : e;
+        }
+
+        if (anyDigit && i == to && digits <= MAX_FAST_DIGITS && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(string(buffer, from, to));
+    }
+
+    /**
+     * Parses an ISO date or date time in {@code [from, to)} of the buffer as UTC epoch millis.
+     */
+    static long parseTime(byte[] buffer, int from, int to) {
+        int length = to - from;
+        if (length < 10 || buffer[from + 4] != '-' || buffer[from + 7] != '-') {
+            throw unsupportedTime(buffer, from, to);
+        }
+        int year = digits(buffer, from, 4);
+        int month = digits(buffer, from + 5, 2);
+        int day = digits(buffer, from + 8, 2);
+        long millis = daysFromCivil(year, month, day) * 86400000L;
+
+        int i = from + 10;
+        if (i < to && (buffer[i] == 'T' || buffer[i] == ' ')) {
+            if (i + 6 > to || buffer[i + 3] != ':') {
+                throw unsupportedTime(buffer, from, to);
+            }
+            millis += digits(buffer, i + 1, 2) * 3600000L + digits(buffer, i + 4, 2) * 60000L;
+            i += 6;
+            if (i < to && buffer[i] == ':') {
+                if (i + 3 > to) {
+                    throw unsupportedTime(buffer, from, to);
+                }
+                millis += digits(buffer, i + 1, 2) * 1000L;
+                i += 3;
+                if (i < to && buffer[i] == '.') {
+                    int scale = 100;
+                    for (i++; i < to && buffer[i] >= '0' && buffer[i] <= '9'; i++) {
+                        millis += (buffer[i] - '0') * scale;
+                        scale /= 10;
+                    }
+                }
+            }
+        }
+        if (i != to && (i != to - 1 || buffer[i] != 'Z')) {
+            throw unsupportedTime(buffer, from, to);
+        }
+        return millis;
+    }
+
+    private static int digits(byte[] buffer, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new RuntimeException("Not a digit: " + (char) buffer[i]);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static RuntimeException unsupportedTime(byte[] buffer, int from, int to) {
+        return new RuntimeException("Unsupported time " + string(buffer, from, to));
+    }
+
+    private static String string(byte[] buffer, int from, int to) {
+        return new String(buffer, from, to - from, StandardCharsets.UTF_8);
+    }
+}
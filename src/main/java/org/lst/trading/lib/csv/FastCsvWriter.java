@@ -0,0 +1,299 @@
+package org.lst.trading.lib.csv;
+
+import org.lst.trading.lib.series.RowWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Writes CSV by formatting fields straight into a reusable byte buffer which is flushed to a channel when full.
+ * <p>
+ * Fields are written one by one and separated automatically, {@link #endRow()} ends the line:
+ * <pre>
+ * writer.field(id).field(price).time(epochMillis).endRow();
+ * </pre>
+ * Doubles are written with the fewest fraction digits that parse back to the same value, integral values with a
+ * trailing {@code .0}; values needing more than 15 fraction digits or 53 bits of mantissa fall back to
+ * {@link Double#toString(double)}. Times are written like {@link java.time.Instant#toString()}.
+ */
+public class FastCsvWriter implements RowWriter {
+    private static final int BUFFER_SIZE = 64 << 10;
+    // room for the longest formatted number or time
+    private static final int MAX_NUMBER_LENGTH = 32;
+    private static final long MAX_EXACT = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    WritableByteChannel mChannel;
+    ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    byte[] mBytes = mBuffer.array();
+    int mPosition;
+    byte mSeparator = ',';
+    int mFields;
+
+    public FastCsvWriter(WritableByteChannel channel) {
+        mChannel = channel;
+    }
+
+    /**
+     * Creates or truncates the file.
+     */
+    public FastCsvWriter(Path path) {
+        this(open(path));
+    }
+
+    private static FileChannel open(Path path) {
+        try {
+            return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void setSeparator(char separator) {
+        check(separator < 128);
+        mSeparator = (byte) separator;
+    }
+
+    /**
+     * Writes a header of a time column named {@code date} followed by the names.
+     */
+    @Override public void start(List<String> names) {
+        field("date");
+        for (String name : names) {
+            field(name);
+        }
+        endRow();
+    }
+
+    @Override public void row(long epochMillis, double[] values) {
+        time(epochMillis);
+        for (double value : values) {
+            field(value);
+        }
+        endRow();
+    }
+
+    /**
+     * Writes the header of the given names.
+     */
+    public FastCsvWriter header(String... names) {
+        for (String name : names) {
+            field(name);
+        }
+        return endRow();
+    }
+
+    /**
+     * Writes the string as is, it must not contain the separator or line breaks.
+     */
+    public FastCsvWriter field(String value) {
+        separate();
+        if (value == null) {
+            return this;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 128) {
+                bytes(value.getBytes(StandardCharsets.UTF_8));
+                return this;
+            }
+        }
+        for (int i = 0; i < value.length(); i++) {
+            ensure(1);
+            mBytes[mPosition++] = (byte) value.charAt(i);
+        }
+        return this;
+    }
+
+    public FastCsvWriter field(long value) {
+        separate();
+        ensure(MAX_NUMBER_LENGTH);
+        writeLong(value);
+        return this;
+    }
+
+    public FastCsvWriter field(double value) {
+        separate();
+        ensure(MAX_NUMBER_LENGTH);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            ascii(Double.toString(value));
+            return this;
+        }
+
+        double magnitude = Math.abs(value);
+        for (int digits = 0; digits < POWERS_OF_TEN.length; digits++) {
+            double scaled = magnitude * POWERS_OF_TEN[digits];
+            if (scaled >= MAX_EXACT) {
+                break;
+            }
+            long mantissa = Math.round(scaled);
+            if (mantissa / POWERS_OF_TEN[digits] == magnitude) {
+                if (value < 0 || (value == 0 && 1 / value < 0)) {
+                    mBytes[mPosition++] = '-';
+                }
+                writeDecimal(mantissa, digits);
+                if (digits == 0) {
+                    mBytes[mPosition++] = '.';
+                    mBytes[mPosition++] = '0';
+                }
+                return this;
+            }
+        }
+        ascii(Double.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes the time in the format of {@link java.time.Instant#toString()}.
+     */
+    public FastCsvWriter time(long epochMillis) {
+        separate();
+        ensure(MAX_NUMBER_LENGTH);
+        long days = Math.floorDiv(epochMillis, 86400000L);
+        int millisOfDay = (int) Math.floorMod(epochMillis, 86400000L);
+
+        // civil from days, proleptic Gregorian
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            throw new RuntimeException("Year out of range " + year);
+        }
+
+        digits((int) year, 4);
+        mBytes[mPosition++] = '-';
+        digits(month, 2);
+        mBytes[mPosition++] = '-';
+        digits(day, 2);
+        mBytes[mPosition++] = 'T';
+        digits(millisOfDay / 3600000, 2);
+        mBytes[mPosition++] = ':';
+        digits(millisOfDay / 60000 % 60, 2);
+        mBytes[mPosition++] = ':';
+        digits(millisOfDay / 1000 % 60, 2);
+        if (millisOfDay % 1000 != 0) {
+            mBytes[mPosition++] = '.';
+            digits(millisOfDay % 1000, 3);
+        }
+        mBytes[mPosition++] = 'Z';
+        return this;
+    }
+
+    public FastCsvWriter endRow() {
+        ensure(1);
+        mBytes[mPosition++] = '\n';
+        mFields = 0;
+        return this;
+    }
+
+    private void separate() {
+        if (mFields++ > 0) {
+            ensure(1);
+            mBytes[mPosition++] = mSeparator;
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            ascii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            mBytes[mPosition++] = '-';
+            value = -value;
+        }
+        writeDecimal(value, 0);
+    }
+
+    /**
+     * Writes {@code mantissa / 10^fractionDigits} with at least one integer digit.
+     */
+    private void writeDecimal(long mantissa, int fractionDigits) {
+        int length = 1;
+        for (long v = mantissa / 10; v > 0; v /= 10) {
+            length++;
+        }
+        length = Math.max(length, fractionDigits + 1);
+        int end = mPosition + length + (fractionDigits > 0 ? 1 : 0);
+        int i = end;
+        for (int d = 0; d < length; d++) {
+            if (d == fractionDigits && fractionDigits > 0) {
+                mBytes[--i] = '.';
+            }
+            mBytes[--i] = (byte) ('0' + mantissa % 10);
+            mantissa /= 10;
+        }
+        mPosition = end;
+    }
+
+    private void digits(int value, int count) {
+        for (int i = mPosition + count - 1; i >= mPosition; i--) {
+            mBytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        mPosition += count;
+    }
+
+    private void ascii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            mBytes[mPosition++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void bytes(byte[] bytes) {
+        for (byte b : bytes) {
+            ensure(1);
+            mBytes[mPosition++] = b;
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (mPosition + bytes > mBytes.length) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        try {
+            mBuffer.clear();
+            mBuffer.limit(mPosition);
+            while (mBuffer.hasRemaining()) {
+                mChannel.write(mBuffer);
+            }
+            mPosition = 0;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the channel.
+     */
+    @Override public void flush() {
+        drain();
+    }
+
+    @Override public void close() {
+        try {
+            drain();
+            mChannel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
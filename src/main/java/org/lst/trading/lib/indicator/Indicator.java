@@ -0,0 +1,23 @@
+package org.lst.trading.lib.indicator;
+
+/**
+ * Handle of a node of an {@link IndicatorGraph}, its current value is read with {@link IndicatorGraph#get(Indicator)}.
+ * Equal declarations return the same handle.
+ */
+public final class Indicator {
+    final int mId;
+    final String mKey;
+
+    Indicator(int id, String key) {
+        mId = id;
+        mKey = key;
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    @Override public String toString() {
+        return mKey;
+    }
+}
@@ -0,0 +1,215 @@
+package org.lst.trading.lib.indicator;
+
+import org.lst.trading.lib.model.Instrument;
+import org.lst.trading.lib.util.rolling.Ewma;
+import org.lst.trading.lib.util.rolling.RollingCovariance;
+import org.lst.trading.lib.util.rolling.RollingMean;
+import org.lst.trading.lib.util.rolling.RollingMinMax;
+import org.lst.trading.lib.util.rolling.RollingVariance;
+import org.lst.trading.lib.util.rolling.RollingZScore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Supplier;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Indicators shared by all strategies of a backtest, evaluated once per bar before the strategies' {@code onTick}.
+ * <p>
+ * Strategies declare indicators in {@code onStart}, e.g.
+ * <pre>
+ * IndicatorGraph indicators = context.getIndicators();
+ * Indicator spread = indicators.difference(indicators.price(y), indicators.price(x));
+ * Indicator z = indicators.zScore(spread, 20);
+ * </pre>
+ * and read {@code indicators.get(z)} on every tick. Declaring an indicator which already exists, with the same inputs
+ * and parameters, returns the existing node, so strategies declaring the same indicator share its computation. Nodes
+ * can only take existing nodes as inputs, so the declaration order is a topological order and the graph is evaluated
+ * in that order. Windowed indicators are NaN until their window is full.
+ */
+public class IndicatorGraph {
+    private interface Node {
+        double update(double[] values, double[] prices);
+    }
+
+    List<Node> mNodes = new ArrayList<>();
+    Map<String, Indicator> mIndicators = new HashMap<>();
+    // fixed by the first update
+    Node[] mOrder;
+    double[] mValues;
+
+    /**
+     * The price of the instrument, the source of the other indicators.
+     */
+    public Indicator price(Instrument instrument) {
+        int id = instrument.getId();
+        return node("price(#" + id + ")", (values, prices) -> prices[id]);
+    }
+
+    public Indicator sum(Indicator a, Indicator b) {
+        return binary("sum", a, b, (x, y) -> x + y);
+    }
+
+    public Indicator difference(Indicator a, Indicator b) {
+        return binary("difference", a, b, (x, y) -> x - y);
+    }
+
+    public Indicator product(Indicator a, Indicator b) {
+        return binary("product", a, b, (x, y) -> x * y);
+    }
+
+    public Indicator ratio(Indicator a, Indicator b) {
+        return binary("ratio", a, b, (x, y) -> x / y);
+    }
+
+    public Indicator mean(Indicator input, int window) {
+        int in = input.mId;
+        return statefulNode("mean(#" + in + "," + window + ")", () -> {
+            RollingMean mean = new RollingMean(window);
+            return (values, prices) -> {
+                mean.add(values[in]);
+                return mean.isFull() ? mean.getMean() : Double.NaN;
+            };
+        });
+    }
+
+    public Indicator standardDeviation(Indicator input, int window) {
+        int in = input.mId;
+        return statefulNode("standardDeviation(#" + in + "," + window + ")", () -> {
+            RollingVariance variance = new RollingVariance(window);
+            return (values, prices) -> {
+                variance.add(values[in]);
+                return variance.isFull() ? variance.getStandardDeviation() : Double.NaN;
+            };
+        });
+    }
+
+    public Indicator zScore(Indicator input, int window) {
+        int in = input.mId;
+        return statefulNode("zScore(#" + in + "," + window + ")", () -> {
+            RollingZScore zScore = new RollingZScore(window);
+            return (values, prices) -> {
+                zScore.add(values[in]);
+                return zScore.isFull() ? zScore.getZScore() : Double.NaN;
+            };
+        });
+    }
+
+    public Indicator min(Indicator input, int window) {
+        int in = input.mId;
+        return statefulNode("min(#" + in + "," + window + ")", () -> {
+            RollingMinMax minMax = new RollingMinMax(window);
+            return (values, prices) -> {
+                minMax.add(values[in]);
+                return minMax.isFull() ? minMax.getMin() : Double.NaN;
+            };
+        });
+    }
+
+    public Indicator max(Indicator input, int window) {
+        int in = input.mId;
+        return statefulNode("max(#" + in + "," + window + ")", () -> {
+            RollingMinMax minMax = new RollingMinMax(window);
+            return (values, prices) -> {
+                minMax.add(values[in]);
+                return minMax.isFull() ? minMax.getMax() : Double.NaN;
+            };
+        });
+    }
+
+    public Indicator ewma(Indicator input, double alpha) {
+        int in = input.mId;
+        return statefulNode("ewma(#" + in + "," + alpha + ")", () -> {
+            Ewma ewma = new Ewma(alpha);
+            return (values, prices) -> {
+                ewma.add(values[in]);
+                return ewma.getMean();
+            };
+        });
+    }
+
+    /**
+     * Slope of the rolling least squares regression of y on x.
+     */
+    public Indicator beta(Indicator x, Indicator y, int window) {
+        int inX = x.mId;
+        int inY = y.mId;
+        return statefulNode("beta(#" + inX + ",#" + inY + "," + window + ")", () -> {
+            RollingCovariance covariance = new RollingCovariance(window);
+            return (values, prices) -> {
+                covariance.add(values[inX], values[inY]);
+                return covariance.isFull() ? covariance.getBeta() : Double.NaN;
+            };
+        });
+    }
+
+    public Indicator correlation(Indicator x, Indicator y, int window) {
+        int inX = x.mId;
+        int inY = y.mId;
+        return statefulNode("correlation(#" + inX + ",#" + inY + "," + window + ")", () -> {
+            RollingCovariance covariance = new RollingCovariance(window);
+            return (values, prices) -> {
+                covariance.add(values[inX], values[inY]);
+                return covariance.isFull() ? covariance.getCorrelation() : Double.NaN;
+            };
+        });
+    }
+
+    private Indicator binary(String name, Indicator a, Indicator b, DoubleBinaryOperator operator) {
+        int inA = a.mId;
+        int inB = b.mId;
+        return node(name + "(#" + inA + ",#" + inB + ")", (values, prices) -> operator.applyAsDouble(values[inA], values[inB]));
+    }
+
+    private Indicator node(String key, Node node) {
+        return statefulNode(key, () -> node);
+    }
+
+    /**
+     * Returns the existing node with this key or adds the node created by the factory, so the state of a node is only
+     * created if the node does not exist yet.
+     */
+    private Indicator statefulNode(String key, Supplier<Node> factory) {
+        Indicator indicator = mIndicators.get(key);
+        if (indicator != null) {
+            return indicator;
+        }
+        check(mOrder == null, "Indicators must be declared in onStart");
+
+        indicator = new Indicator(mNodes.size(), key);
+        mNodes.add(factory.get());
+        mIndicators.put(key, indicator);
+        return indicator;
+    }
+
+    /**
+     * Current value of the indicator, only available from the first {@code onTick} on.
+     */
+    public double get(Indicator indicator) {
+        check(mValues != null, "Indicator " + indicator + " has no value before the first bar");
+        return mValues[indicator.mId];
+    }
+
+    public int size() {
+        return mNodes.size();
+    }
+
+    /**
+     * Evaluates all nodes for a new bar, called by the backtest before the strategies' {@code onTick}.
+     */
+    public void update(double[] prices) {
+        if (mOrder == null) {
+            mOrder = mNodes.toArray(new Node[0]);
+            mValues = new double[mOrder.length];
+        }
+        Node[] order = mOrder;
+        double[] values = mValues;
+        for (int i = 0; i < order.length; i++) {
+            values[i] = order[i].update(values, prices);
+        }
+    }
+}
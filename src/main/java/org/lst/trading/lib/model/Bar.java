@@ -16,6 +16,10 @@ public interface Bar extends Comparable<Bar> {
 
     Instant getStart();
 
+    default long getStartEpochMillis() {
+        return getStart().toEpochMilli();
+    }
+
     Duration getDuration();
 
     double getWAP();
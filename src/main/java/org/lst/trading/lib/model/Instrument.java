@@ -0,0 +1,46 @@
+package org.lst.trading.lib.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handle of an instrument resolved once through {@link TradingContext#getInstrument(String)}, the id is the index of
+ * the instrument in {@link TradingContext#getInstruments()} and {@link TradingContext#getLastPrices()}.
+ */
+public final class Instrument {
+    private final int mId;
+    private final String mName;
+
+    private Instrument(int id, String name) {
+        mId = id;
+        mName = name;
+    }
+
+    /**
+     * The handles of the instruments of a context by name, the id of each is its index in {@code names}. This is the
+     * only way to create handles, so an id always refers to the instrument list it was created for.
+     */
+    public static Map<String, Instrument> byName(List<String> names) {
+        Map<String, Instrument> instruments = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            instruments.putIfAbsent(names.get(i), new Instrument(i, names.get(i)));
+        }
+        return instruments;
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    @Override public String toString() {
+        return "Instrument{" +
+            "mId=" + mId +
+            ", mName='" + mName + '\'' +
+            '}';
+    }
+}
@@ -1,5 +1,7 @@
 package org.lst.trading.lib.model;
 
+import org.lst.trading.lib.indicator.IndicatorGraph;
+import org.lst.trading.lib.series.BarSeries;
 import org.lst.trading.lib.series.TimeSeries;
 
 import java.time.Instant;
@@ -9,14 +11,83 @@ import java.util.stream.Stream;
 public interface TradingContext {
     Instant getTime();
 
+    Instrument getInstrument(String name);
+
+    /**
+     * The last valid price, a missing price of the current bar leaves the previous one in place. NaN until the first
+     * valid price of the instrument, e.g. for a {@link org.lst.trading.lib.series.Alignment#forwardFill()} series that
+     * starts late.
+     */
     double getLastPrice(String instrument);
 
+    double getLastPrice(Instrument instrument);
+
+    /**
+     * Prices of the current bar indexed by {@link Instrument#getId()}. The array is reused for every bar and must not be
+     * modified.
+     */
+    double[] getLastPrices();
+
+    /**
+     * The current bar of the instrument, only available when the backtest runs on {@link BarSeries}. The bar is a view
+     * that moves on with the backtest, copy the values that are needed later.
+     */
+    Bar getLastBar(String instrument);
+
+    Bar getLastBar(Instrument instrument);
+
     Stream<TimeSeries.Entry<Double>> getHistory(String instrument);
 
+    /**
+     * The last {@code n} (or fewer if not available) prices before the current one, most recent first.
+     */
+    double[] getHistory(String instrument, int n);
+
+    double[] getHistory(Instrument instrument, int n);
+
+    /**
+     * Allocation free variant of {@link #getHistory(String, int)}, fills {@code buffer} most recent first and returns
+     * the number of prices written.
+     */
+    int getHistory(String instrument, double[] buffer);
+
+    int getHistory(Instrument instrument, double[] buffer);
+
+    /**
+     * Indicators shared by all strategies of the backtest, declare them in {@link TradingStrategy#onStart(TradingContext)}.
+     */
+    IndicatorGraph getIndicators();
+
     Order order(String instrument, boolean buy, int amount);
 
+    /**
+     * Opens a new lot. If the backtest nets positions an order against an opposite position first closes open lots of
+     * the instrument, it then returns the lot opened for the remaining amount or {@code null} if nothing remained.
+     * Fails if the instrument has no price yet.
+     */
+    Order order(Instrument instrument, boolean buy, int amount);
+
+    /**
+     * Closes an open order, fails if it is not {@link #isOpen(Order) open}.
+     */
     ClosedOrder close(Order order);
 
+    /**
+     * Whether the order is still open, {@code false} for {@code null}. With netting an order of another strategy can
+     * close a lot entirely, check this before closing a lot that may have been netted away.
+     */
+    boolean isOpen(Order order);
+
+    /**
+     * Closes all open orders of the instrument in the order they were opened.
+     */
+    List<ClosedOrder> flatten(Instrument instrument);
+
+    /**
+     * Closes all open orders in the order they were opened.
+     */
+    List<ClosedOrder> flattenAll();
+
     double getPl();
 
     List<String> getInstruments();
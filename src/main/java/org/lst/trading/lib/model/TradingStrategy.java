@@ -1,6 +1,11 @@
 package org.lst.trading.lib.model;
 
 public interface TradingStrategy {
+    /**
+     * Lookback of a strategy which reads the whole history.
+     */
+    int FULL_HISTORY = -1;
+
     default void onStart(TradingContext context) {
 
     }
@@ -12,4 +17,12 @@ public interface TradingStrategy {
     default void onEnd() {
 
     }
+
+    /**
+     * How many past bars the strategy reads through {@code TradingContext.getHistory}, asked after
+     * {@link #onStart(TradingContext)}. Strategies which don't override it get the whole history.
+     */
+    default int getLookback() {
+        return FULL_HISTORY;
+    }
 }
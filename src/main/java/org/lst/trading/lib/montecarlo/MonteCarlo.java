@@ -0,0 +1,318 @@
+package org.lst.trading.lib.montecarlo;
+
+import org.lst.trading.lib.backtest.Backtest;
+import org.lst.trading.lib.model.ClosedOrder;
+import org.lst.trading.lib.model.TradingStrategy;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.lib.util.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Resampling based robustness analysis of backtest results:
+ * <ul>
+ * <li>{@link #bootstrapReturns(Backtest.Result)}: moving block bootstrap of the daily returns of the account value</li>
+ * <li>{@link #shuffleTrades(Backtest.Result)}: random reordering of the closed orders</li>
+ * <li>{@link #resamplePrices(MultipleDoubleSeries, double, double, Supplier)}: block bootstrapped price paths backtested again</li>
+ * </ul>
+ * Samples are split into fixed size chunks which run in parallel, each chunk has its own random generator split from the
+ * seed (so results only depend on the seed) and allocates its buffers once.
+ */
+public class MonteCarlo {
+    private static final int CHUNK_SIZE = 256;
+
+    public static class Interval {
+        double mLower;
+        double mUpper;
+
+        public Interval(double lower, double upper) {
+            mLower = lower;
+            mUpper = upper;
+        }
+
+        public double getLower() {
+            return mLower;
+        }
+
+        public double getUpper() {
+            return mUpper;
+        }
+
+        @Override public String toString() {
+            return "[" + mLower + ", " + mUpper + "]";
+        }
+    }
+
+    public static class Distribution {
+        double[] mSamples;
+        int mCount;
+
+        Distribution(double[] samples) {
+            Arrays.sort(samples);
+            mSamples = samples;
+            mCount = samples.length;
+            while (mCount > 0 && Double.isNaN(samples[mCount - 1])) {
+                mCount--;
+            }
+        }
+
+        /**
+         * Number of samples, not counting NaN samples.
+         */
+        public int size() {
+            return mCount;
+        }
+
+        public double getPercentile(double p) {
+            check(p >= 0 && p <= 1);
+            if (mCount == 0) {
+                return Double.NaN;
+            }
+            double position = p * (mCount - 1);
+            int lower = (int) position;
+            int upper = Math.min(lower + 1, mCount - 1);
+            return mSamples[lower] + (position - lower) * (mSamples[upper] - mSamples[lower]);
+        }
+
+        public double getMedian() {
+            return getPercentile(0.5);
+        }
+
+        public double getMean() {
+            double sum = 0;
+            for (int i = 0; i < mCount; i++) {
+                sum += mSamples[i];
+            }
+            return sum / mCount;
+        }
+
+        public Interval getInterval(double confidence) {
+            check(confidence > 0 && confidence < 1);
+            return new Interval(getPercentile((1 - confidence) / 2), getPercentile((1 + confidence) / 2));
+        }
+
+        @Override public String toString() {
+            return "Distribution{" +
+                "mMedian=" + getMedian() +
+                ", m95=" + getInterval(0.95) +
+                ", mSize=" + mCount +
+                '}';
+        }
+    }
+
+    public static class Report {
+        Distribution mSharpe;
+        Distribution mMaxDrawdownPercent;
+        Distribution mFinalValue;
+
+        public Report(Distribution sharpe, Distribution maxDrawdownPercent, Distribution finalValue) {
+            mSharpe = sharpe;
+            mMaxDrawdownPercent = maxDrawdownPercent;
+            mFinalValue = finalValue;
+        }
+
+        public Distribution getSharpe() {
+            return mSharpe;
+        }
+
+        public Distribution getMaxDrawdownPercent() {
+            return mMaxDrawdownPercent;
+        }
+
+        public Distribution getFinalValue() {
+            return mFinalValue;
+        }
+
+        @Override public String toString() {
+            return "Report{" +
+                "mSharpe=" + mSharpe +
+                ", mMaxDrawdownPercent=" + mMaxDrawdownPercent +
+                ", mFinalValue=" + mFinalValue +
+                '}';
+        }
+    }
+
+    /**
+     * Produces sample {@code index} into the metric arrays, one sampler is created per chunk and owns its buffers.
+     */
+    private interface Sampler {
+        void sample(SplittableRandom random, int index, double[] sharpe, double[] maxDrawdownPercent, double[] finalValue);
+    }
+
+    int mSamples = 10000;
+    int mBlockSize = 20;
+    long mSeed = 42;
+    ForkJoinPool mPool = ForkJoinPool.commonPool();
+
+    public void setSamples(int samples) {
+        check(samples > 0);
+        mSamples = samples;
+    }
+
+    /**
+     * Length of the blocks of consecutive returns drawn by the bootstraps, preserves autocorrelation up to this lag.
+     */
+    public void setBlockSize(int blockSize) {
+        check(blockSize > 0);
+        mBlockSize = blockSize;
+    }
+
+    public void setSeed(long seed) {
+        mSeed = seed;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        mPool = pool;
+    }
+
+    public Report bootstrapReturns(Backtest.Result result) {
+        double[] values = result.getAccountValueHistory().toArray();
+        check(values.length > 1);
+        int n = values.length;
+        int blockSize = Math.min(mBlockSize, n - 1);
+
+        return run(() -> {
+            double[] path = new double[n];
+            return (random, index, sharpe, maxDrawdownPercent, finalValue) -> {
+                path[0] = values[0];
+                int t = 1;
+                while (t < n) {
+                    int start = 1 + random.nextInt(n - blockSize);
+                    for (int k = 0; k < blockSize && t < n; k++, t++) {
+                        path[t] = path[t - 1] * (values[start + k] / values[start + k - 1]);
+                    }
+                }
+                evaluate(path, n, index, sharpe, maxDrawdownPercent, finalValue);
+            };
+        });
+    }
+
+    /**
+     * Replays the closed orders in random order. The final value stays the same, the Sharpe ratio is computed from the
+     * per trade returns.
+     */
+    public Report shuffleTrades(Backtest.Result result) {
+        List<ClosedOrder> orders = result.getOrders();
+        check(!orders.isEmpty());
+        int n = orders.size();
+        double[] pls = new double[n];
+        for (int i = 0; i < n; i++) {
+            pls[i] = orders.get(i).getPl();
+        }
+        double initialFund = result.getInitialFund();
+
+        return run(() -> {
+            double[] shuffled = pls.clone();
+            double[] path = new double[n + 1];
+            return (random, index, sharpe, maxDrawdownPercent, finalValue) -> {
+                for (int i = n - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    double tmp = shuffled[i];
+                    shuffled[i] = shuffled[j];
+                    shuffled[j] = tmp;
+                }
+                path[0] = initialFund;
+                for (int i = 0; i < n; i++) {
+                    path[i + 1] = path[i] + shuffled[i];
+                }
+                evaluate(path, n + 1, index, sharpe, maxDrawdownPercent, finalValue);
+            };
+        });
+    }
+
+    /**
+     * Backtests the strategy on synthetic price paths. Each path starts at the first row of {@code prices} and is built
+     * from blocks of consecutive rows of returns, the same rows are used for all instruments to keep their correlation.
+     */
+    public Report resamplePrices(MultipleDoubleSeries prices, double deposit, double leverage, Supplier<TradingStrategy> strategyFactory) {
+        check(prices.size() > 1);
+        int n = prices.size();
+        int columns = prices.getNames().size();
+        int blockSize = Math.min(mBlockSize, n - 1);
+
+        return run(() -> {
+            MultipleDoubleSeries path = prices.copy();
+            return (random, index, sharpe, maxDrawdownPercent, finalValue) -> {
+                int t = 1;
+                while (t < n) {
+                    int start = 1 + random.nextInt(n - blockSize);
+                    for (int k = 0; k < blockSize && t < n; k++, t++) {
+                        for (int c = 0; c < columns; c++) {
+                            double ratio = prices.getValue(start + k, c) / prices.getValue(start + k - 1, c);
+                            path.setValue(t, c, path.getValue(t - 1, c) * ratio);
+                        }
+                    }
+                }
+
+                Backtest backtest = new Backtest(deposit, path);
+                backtest.setLeverage(leverage);
+                Backtest.Result result = backtest.run(strategyFactory.get());
+                sharpe[index] = result.getSharpe();
+                maxDrawdownPercent[index] = result.getMaxDrawdownPercent();
+                finalValue[index] = result.getFinalValue();
+            };
+        });
+    }
+
+    private Report run(Supplier<Sampler> samplers) {
+        double[] sharpe = new double[mSamples];
+        double[] maxDrawdownPercent = new double[mSamples];
+        double[] finalValue = new double[mSamples];
+
+        SplittableRandom root = new SplittableRandom(mSeed);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < mSamples; from += CHUNK_SIZE) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(from + CHUNK_SIZE, mSamples);
+            SplittableRandom random = root.split();
+            tasks.add(() -> {
+                Sampler sampler = samplers.get();
+                for (int i = chunkFrom; i < chunkTo; i++) {
+                    sampler.sample(random, i, sharpe, maxDrawdownPercent, finalValue);
+                }
+                return null;
+            });
+        }
+        Util.invokeAll(mPool, tasks);
+
+        return new Report(new Distribution(sharpe), new Distribution(maxDrawdownPercent), new Distribution(finalValue));
+    }
+
+    /**
+     * Same metrics as {@code Statistics.sharpe(Statistics.returns(path))} and {@code Statistics.drawdown(path)[1]},
+     * computed without allocating.
+     */
+    static void evaluate(double[] path, int n, int index, double[] sharpe, double[] maxDrawdownPercent, double[] finalValue) {
+        double sum = 0;
+        for (int t = 1; t < n; t++) {
+            sum += path[t] / path[t - 1] - 1;
+        }
+        double mean = sum / (n - 1);
+        double squares = 0;
+        double deviations = 0;
+        for (int t = 1; t < n; t++) {
+            double d = path[t] / path[t - 1] - 1 - mean;
+            squares += d * d;
+            deviations += d;
+        }
+        double variance = n > 2 ? (squares - deviations * deviations / (n - 1)) / (n - 2) : 0;
+        sharpe[index] = mean / Math.sqrt(variance) * Math.sqrt(250);
+
+        double max = Double.MIN_VALUE;
+        double drawdown = Double.MAX_VALUE;
+        for (int t = 0; t < n; t++) {
+            drawdown = Math.min(path[t] / max - 1, drawdown);
+            max = Math.max(max, path[t]);
+        }
+        maxDrawdownPercent[index] = drawdown;
+        finalValue[index] = path[n - 1];
+    }
+}
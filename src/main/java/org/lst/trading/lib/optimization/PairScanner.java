@@ -0,0 +1,175 @@
+package org.lst.trading.lib.optimization;
+
+import org.lst.trading.lib.backtest.Backtest;
+import org.lst.trading.lib.model.TradingStrategy;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.lib.util.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToDoubleFunction;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Backtests a pair strategy on all N (N - 1) ordered pairs of a universe and keeps the best {@code topK} pairs.
+ * <p>
+ * Every backtest reads a two column {@link MultipleDoubleSeries#select(String...) selection} of the universe, which
+ * shares the universe's arrays, so memory is bounded by the universe plus the kept results. Pairs start at the first row
+ * at which both prices are known, so a forward-filled universe with different listing dates can be scanned.
+ */
+public class PairScanner {
+    private static final int CHUNK_SIZE = 64;
+
+    public interface PairStrategyFactory {
+        TradingStrategy create(String x, String y);
+    }
+
+    public static class Pair {
+        String mX;
+        String mY;
+        Backtest.Result mResult;
+        double mScore;
+
+        public Pair(String x, String y, Backtest.Result result, double score) {
+            mX = x;
+            mY = y;
+            mResult = result;
+            mScore = score;
+        }
+
+        public String getX() {
+            return mX;
+        }
+
+        public String getY() {
+            return mY;
+        }
+
+        public Backtest.Result getResult() {
+            return mResult;
+        }
+
+        public double getScore() {
+            return mScore;
+        }
+
+        @Override public String toString() {
+            return "Pair{" +
+                "mX='" + mX + '\'' +
+                ", mY='" + mY + '\'' +
+                ", mScore=" + mScore +
+                ", mFinalValue=" + mResult.getFinalValue() +
+                ", mMaxDrawdownPercent=" + mResult.getMaxDrawdownPercent() +
+                '}';
+        }
+    }
+
+    private static final Comparator<Pair> WORST_FIRST = (a, b) -> Double.compare(a.mScore, b.mScore);
+
+    MultipleDoubleSeries mUniverse;
+    double mDeposit;
+    double mLeverage = 1;
+    PairStrategyFactory mStrategyFactory;
+    ToDoubleFunction<Backtest.Result> mScore = Backtest.Result::getSharpe;
+    int mTopK = 100;
+    int mMinRows = 2;
+    ForkJoinPool mPool = ForkJoinPool.commonPool();
+
+    public PairScanner(double deposit, MultipleDoubleSeries universe, PairStrategyFactory strategyFactory) {
+        mDeposit = deposit;
+        mUniverse = universe;
+        mStrategyFactory = strategyFactory;
+    }
+
+    public void setLeverage(double leverage) {
+        mLeverage = leverage;
+    }
+
+    /**
+     * The metric pairs are ranked by, higher is better. Defaults to the Sharpe ratio, pairs with a NaN score are dropped.
+     */
+    public void setScore(ToDoubleFunction<Backtest.Result> score) {
+        mScore = score;
+    }
+
+    public void setTopK(int topK) {
+        check(topK > 0);
+        mTopK = topK;
+    }
+
+    /**
+     * Pairs with fewer rows at which both prices are known are skipped.
+     */
+    public void setMinRows(int minRows) {
+        mMinRows = minRows;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * Scans all ordered pairs in parallel, returns the best {@code topK} pairs, best first.
+     */
+    public List<Pair> run() {
+        List<String> names = mUniverse.getNames();
+        int n = names.size();
+        long pairCount = (long) n * (n - 1);
+        PriorityQueue<Pair> best = new PriorityQueue<>(mTopK, WORST_FIRST);
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (long from = 0; from < pairCount; from += CHUNK_SIZE) {
+            long chunkFrom = from;
+            long chunkTo = Math.min(from + CHUNK_SIZE, pairCount);
+            tasks.add(() -> {
+                for (long index = chunkFrom; index < chunkTo; index++) {
+                    int x = (int) (index / (n - 1));
+                    int y = (int) (index % (n - 1));
+                    scan(names.get(x), names.get(y < x ? y : y + 1), best);
+                }
+                return null;
+            });
+        }
+        Util.invokeAll(mPool, tasks);
+
+        List<Pair> ranked = new ArrayList<>(best);
+        Collections.sort(ranked, WORST_FIRST.reversed());
+        return ranked;
+    }
+
+    private void scan(String x, String y, PriorityQueue<Pair> best) {
+        MultipleDoubleSeries prices = mUniverse.select(x, y);
+        int from = 0;
+        while (from < prices.size() && (Double.isNaN(prices.getValue(from, 0)) || Double.isNaN(prices.getValue(from, 1)))) {
+            from++;
+        }
+        if (prices.size() - from < mMinRows) {
+            return;
+        }
+
+        Backtest backtest = new Backtest(mDeposit, prices, from, prices.size());
+        backtest.setLeverage(mLeverage);
+        Backtest.Result result = backtest.run(mStrategyFactory.create(x, y));
+        double score = mScore.applyAsDouble(result);
+        if (!Double.isNaN(score)) {
+            offer(best, new Pair(x, y, result, score));
+        }
+    }
+
+    private void offer(PriorityQueue<Pair> best, Pair pair) {
+        synchronized (best) {
+            if (best.size() < mTopK) {
+                best.add(pair);
+            } else if (pair.mScore > best.peek().mScore) {
+                best.poll();
+                best.add(pair);
+            }
+        }
+    }
+}
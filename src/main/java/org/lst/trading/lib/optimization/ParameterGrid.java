@@ -0,0 +1,82 @@
+package org.lst.trading.lib.optimization;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Cartesian product of candidate values per parameter, e.g.
+ * {@code ParameterGrid.create().add("delta", 1e-10, 1e-8).add("entry", 0.5, 1, 1.5)} yields 6 parameter sets.
+ */
+public class ParameterGrid {
+    List<String> mNames = new ArrayList<>();
+    List<double[]> mValues = new ArrayList<>();
+
+    public static ParameterGrid create() {
+        return new ParameterGrid();
+    }
+
+    public ParameterGrid add(String name, double... values) {
+        check(!mNames.contains(name), "Duplicate parameter " + name);
+        check(values.length > 0);
+        mNames.add(name);
+        mValues.add(values.clone());
+        return this;
+    }
+
+    public ParameterGrid range(String name, double from, double to, double step) {
+        check(step > 0 && to >= from);
+        int n = (int) Math.floor((to - from) / step + 1e-9) + 1;
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = from + i * step;
+        }
+        return add(name, values);
+    }
+
+    public ParameterGrid logRange(String name, double from, double to, int count) {
+        check(from > 0 && to >= from && count > 0);
+        double[] values = new double[count];
+        double logFrom = Math.log10(from);
+        double logStep = count == 1 ? 0 : (Math.log10(to) - logFrom) / (count - 1);
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.pow(10, logFrom + i * logStep);
+        }
+        return add(name, values);
+    }
+
+    public int size() {
+        long size = 1;
+        for (double[] values : mValues) {
+            size *= values.length;
+            check(size <= Integer.MAX_VALUE, "More than " + Integer.MAX_VALUE + " parameter sets");
+        }
+        return (int) size;
+    }
+
+    public ParameterSet get(int index) {
+        return get(index, new ArrayList<>(mNames));
+    }
+
+    private ParameterSet get(int index, List<String> names) {
+        check(index >= 0 && index < size());
+        double[] values = new double[mNames.size()];
+        for (int i = mNames.size() - 1; i >= 0; i--) {
+            double[] candidates = mValues.get(i);
+            values[i] = candidates[index % candidates.length];
+            index /= candidates.length;
+        }
+        return new ParameterSet(names, values);
+    }
+
+    public List<ParameterSet> getParameterSets() {
+        int size = size();
+        List<String> names = new ArrayList<>(mNames);
+        List<ParameterSet> sets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sets.add(get(i, names));
+        }
+        return sets;
+    }
+}
@@ -0,0 +1,57 @@
+package org.lst.trading.lib.optimization;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.lst.trading.lib.util.Util.check;
+
+public class ParameterSet {
+    final List<String> mNames;
+    final double[] mValues;
+
+    ParameterSet(List<String> names, double[] values) {
+        mNames = Collections.unmodifiableList(names);
+        mValues = values;
+    }
+
+    public List<String> getNames() {
+        return mNames;
+    }
+
+    public boolean contains(String name) {
+        return mNames.contains(name);
+    }
+
+    public double get(String name) {
+        int index = mNames.indexOf(name);
+        check(index >= 0, "Unknown parameter " + name);
+        return mValues[index];
+    }
+
+    public double get(String name, double defaultValue) {
+        int index = mNames.indexOf(name);
+        return index < 0 ? defaultValue : mValues[index];
+    }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ParameterSet that = (ParameterSet) o;
+
+        return mNames.equals(that.mNames) && Arrays.equals(mValues, that.mValues);
+    }
+
+    @Override public int hashCode() {
+        return 31 * mNames.hashCode() + Arrays.hashCode(mValues);
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("ParameterSet{");
+        for (int i = 0; i < mValues.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append(mNames.get(i)).append('=').append(mValues[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,152 @@
+package org.lst.trading.lib.optimization;
+
+import org.lst.trading.lib.backtest.Backtest;
+import org.lst.trading.lib.model.TradingStrategy;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.lib.util.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Runs one {@link Backtest} per parameter set of a {@link ParameterGrid} on a fork-join pool. All backtests read the
+ * same price series, which is never modified by a backtest.
+ * <p>
+ * A parameter named {@link #LEVERAGE} is applied to the backtest itself, all parameters are passed to the strategy
+ * factory.
+ */
+public class ParameterSweep {
+    public static final String LEVERAGE = "leverage";
+
+    public interface StrategyFactory {
+        TradingStrategy create(ParameterSet parameters);
+    }
+
+    public static class Run {
+        ParameterSet mParameters;
+        Backtest.Result mResult;
+        double mScore;
+
+        public Run(ParameterSet parameters, Backtest.Result result, double score) {
+            mParameters = parameters;
+            mResult = result;
+            mScore = score;
+        }
+
+        public ParameterSet getParameters() {
+            return mParameters;
+        }
+
+        public Backtest.Result getResult() {
+            return mResult;
+        }
+
+        public double getScore() {
+            return mScore;
+        }
+
+        @Override public String toString() {
+            return "Run{" +
+                "mParameters=" + mParameters +
+                ", mScore=" + mScore +
+                ", mFinalValue=" + mResult.getFinalValue() +
+                ", mMaxDrawdownPercent=" + mResult.getMaxDrawdownPercent() +
+                ", mOrders=" + mResult.getOrders().size() +
+                '}';
+        }
+    }
+
+    /**
+     * Best run first, runs with a NaN score last.
+     */
+    public static final Comparator<Run> RANKING = (a, b) -> {
+        boolean aNaN = Double.isNaN(a.mScore);
+        boolean bNaN = Double.isNaN(b.mScore);
+        return aNaN || bNaN ? Boolean.compare(aNaN, bNaN) : Double.compare(b.mScore, a.mScore);
+    };
+
+    MultipleDoubleSeries mPriceSeries;
+    double mDeposit;
+    double mLeverage = 1;
+    StrategyFactory mStrategyFactory;
+    ToDoubleFunction<Backtest.Result> mScore = Backtest.Result::getSharpe;
+    ForkJoinPool mPool = ForkJoinPool.commonPool();
+
+    public ParameterSweep(double deposit, MultipleDoubleSeries priceSeries, StrategyFactory strategyFactory) {
+        mDeposit = deposit;
+        mPriceSeries = priceSeries;
+        mStrategyFactory = strategyFactory;
+    }
+
+    public void setLeverage(double leverage) {
+        mLeverage = leverage;
+    }
+
+    public double getLeverage() {
+        return mLeverage;
+    }
+
+    /**
+     * The metric the runs are ranked by, higher is better. Defaults to the Sharpe ratio.
+     */
+    public void setScore(ToDoubleFunction<Backtest.Result> score) {
+        mScore = score;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        mPool = pool;
+    }
+
+    public MultipleDoubleSeries getPriceSeries() {
+        return mPriceSeries;
+    }
+
+    public double getDeposit() {
+        return mDeposit;
+    }
+
+    public Run run(ParameterSet parameters) {
+        return run(parameters, 0, mPriceSeries.size());
+    }
+
+    /**
+     * Backtests the parameter set on the rows {@code [from, to)} of the price series.
+     */
+    public Run run(ParameterSet parameters, int from, int to) {
+        Backtest backtest = new Backtest(mDeposit, mPriceSeries, from, to);
+        backtest.setLeverage(parameters.get(LEVERAGE, mLeverage));
+        Backtest.Result result = backtest.run(mStrategyFactory.create(parameters));
+        return new Run(parameters, result, mScore.applyAsDouble(result));
+    }
+
+    /**
+     * Runs all parameter sets of the grid in parallel, ranked best first.
+     */
+    public List<Run> run(ParameterGrid grid) {
+        return run(grid.getParameterSets());
+    }
+
+    public List<Run> run(List<ParameterSet> parameterSets) {
+        return run(parameterSets, 0, mPriceSeries.size());
+    }
+
+    public List<Run> run(List<ParameterSet> parameterSets, int from, int to) {
+        List<Callable<Run>> tasks = new ArrayList<>(parameterSets.size());
+        for (ParameterSet parameters : parameterSets) {
+            tasks.add(() -> run(parameters, from, to));
+        }
+
+        List<Run> runs = invokeAll(tasks);
+        Collections.sort(runs, RANKING);
+        return runs;
+    }
+
+    <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        return Util.invokeAll(mPool, tasks);
+    }
+}
@@ -0,0 +1,171 @@
+package org.lst.trading.lib.optimization;
+
+import org.lst.trading.lib.backtest.Backtest;
+import org.lst.trading.lib.series.DoubleSeries;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.lib.util.Statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Walk-forward optimization: the price series is split into rolling windows of {@code inSample} rows followed by
+ * {@code outOfSample} rows. On each in-sample range all parameter sets are backtested, the best ranked one is then
+ * backtested on the following out-of-sample range. The windows are row ranges of the sweep's price series, nothing is
+ * copied.
+ * <p>
+ * All in-sample backtests of all windows run in parallel on the sweep's pool, followed by all out-of-sample backtests.
+ * The out-of-sample account values are chained into one equity curve starting at the sweep's deposit.
+ */
+public class WalkForward {
+    public static class Window {
+        int mInSampleFrom;
+        int mOutOfSampleFrom;
+        int mOutOfSampleTo;
+        ParameterSweep.Run mInSample;
+        ParameterSweep.Run mOutOfSample;
+
+        Window(int inSampleFrom, int outOfSampleFrom, int outOfSampleTo) {
+            mInSampleFrom = inSampleFrom;
+            mOutOfSampleFrom = outOfSampleFrom;
+            mOutOfSampleTo = outOfSampleTo;
+        }
+
+        public int getInSampleFrom() {
+            return mInSampleFrom;
+        }
+
+        public int getOutOfSampleFrom() {
+            return mOutOfSampleFrom;
+        }
+
+        public int getOutOfSampleTo() {
+            return mOutOfSampleTo;
+        }
+
+        /**
+         * The best ranked in-sample run, its parameters are used out of sample.
+         */
+        public ParameterSweep.Run getInSample() {
+            return mInSample;
+        }
+
+        public ParameterSweep.Run getOutOfSample() {
+            return mOutOfSample;
+        }
+
+        @Override public String toString() {
+            return "Window{" +
+                "mInSample=[" + mInSampleFrom + ", " + mOutOfSampleFrom + ")" +
+                ", mOutOfSample=[" + mOutOfSampleFrom + ", " + mOutOfSampleTo + ")" +
+                ", mParameters=" + mInSample.getParameters() +
+                ", mInSampleScore=" + mInSample.getScore() +
+                ", mOutOfSampleScore=" + mOutOfSample.getScore() +
+                '}';
+        }
+    }
+
+    public static class Result {
+        List<Window> mWindows;
+        DoubleSeries mEquity;
+
+        public Result(List<Window> windows, DoubleSeries equity) {
+            mWindows = windows;
+            mEquity = equity;
+        }
+
+        public List<Window> getWindows() {
+            return mWindows;
+        }
+
+        public DoubleSeries getEquity() {
+            return mEquity;
+        }
+
+        public double getFinalValue() {
+            return mEquity.getLast();
+        }
+
+        public double getSharpe() {
+            return Statistics.sharpe(Statistics.returns(mEquity.toArray()));
+        }
+
+        public double getMaxDrawdownPercent() {
+            return Statistics.drawdown(mEquity.toArray())[1];
+        }
+    }
+
+    ParameterSweep mSweep;
+    int mInSample;
+    int mOutOfSample;
+
+    public WalkForward(ParameterSweep sweep, int inSample, int outOfSample) {
+        check(inSample > 0 && outOfSample > 0);
+        mSweep = sweep;
+        mInSample = inSample;
+        mOutOfSample = outOfSample;
+    }
+
+    public List<Window> getWindows() {
+        int size = mSweep.getPriceSeries().size();
+        List<Window> windows = new ArrayList<>();
+        for (int from = 0; from + mInSample < size; from += mOutOfSample) {
+            windows.add(new Window(from, from + mInSample, Math.min(from + mInSample + mOutOfSample, size)));
+        }
+        return windows;
+    }
+
+    public Result run(ParameterGrid grid) {
+        List<ParameterSet> parameterSets = grid.getParameterSets();
+        List<Window> windows = getWindows();
+
+        List<Callable<ParameterSweep.Run>> inSampleTasks = new ArrayList<>(windows.size() * parameterSets.size());
+        for (Window window : windows) {
+            for (ParameterSet parameters : parameterSets) {
+                inSampleTasks.add(() -> mSweep.run(parameters, window.mInSampleFrom, window.mOutOfSampleFrom));
+            }
+        }
+        List<ParameterSweep.Run> inSampleRuns = mSweep.invokeAll(inSampleTasks);
+
+        List<Callable<ParameterSweep.Run>> outOfSampleTasks = new ArrayList<>(windows.size());
+        for (int i = 0; i < windows.size(); i++) {
+            Window window = windows.get(i);
+            window.mInSample = Collections.min(inSampleRuns.subList(i * parameterSets.size(), (i + 1) * parameterSets.size()), ParameterSweep.RANKING);
+            outOfSampleTasks.add(() -> mSweep.run(window.mInSample.getParameters(), window.mOutOfSampleFrom, window.mOutOfSampleTo));
+        }
+        List<ParameterSweep.Run> outOfSampleRuns = mSweep.invokeAll(outOfSampleTasks);
+
+        for (int i = 0; i < windows.size(); i++) {
+            windows.get(i).mOutOfSample = outOfSampleRuns.get(i);
+        }
+
+        return new Result(windows, stitch(windows));
+    }
+
+    private DoubleSeries stitch(List<Window> windows) {
+        MultipleDoubleSeries prices = mSweep.getPriceSeries();
+        double deposit = mSweep.getDeposit();
+        DoubleSeries equity = new DoubleSeries("equity", windows.isEmpty() ? 0 : windows.get(windows.size() - 1).mOutOfSampleTo - windows.get(0).mOutOfSampleFrom);
+
+        double value = deposit;
+        for (Window window : windows) {
+            Backtest.Result result = window.mOutOfSample.getResult();
+            DoubleSeries pl = result.getPlHistory();
+            double scale = value / deposit;
+            for (int i = 0; i < pl.size(); i++) {
+                equity.add((deposit + pl.getValue(i)) * scale, pl.getEpochMillis(i));
+            }
+            // the value after liquidation at the end of the window, also used for bars after an early stop
+            value = (deposit + result.getPl() - result.getCommissions()) * scale;
+            for (int row = window.mOutOfSampleFrom + pl.size(); row < window.mOutOfSampleTo; row++) {
+                equity.add(value, prices.getEpochMillis(row));
+            }
+        }
+
+        return equity;
+    }
+}
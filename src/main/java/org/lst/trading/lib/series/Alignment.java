@@ -0,0 +1,58 @@
+package org.lst.trading.lib.series;
+
+import java.time.Duration;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * How {@link MultipleDoubleSeries#align(Alignment, DoubleSeries...)} joins series with different timestamps.
+ * <ul>
+ * <li>{@link #inner()}: only timestamps present in every series</li>
+ * <li>{@link #forwardFill()}: every timestamp of any series, missing values are carried forward (NaN before the first value)</li>
+ * <li>{@link #asOf(Duration)}: every timestamp at which each series has a value no older than the given staleness</li>
+ * </ul>
+ */
+public final class Alignment {
+    public enum Mode {
+        INNER, FORWARD_FILL, AS_OF
+    }
+
+    private static final Alignment INNER = new Alignment(Mode.INNER, 0);
+    private static final Alignment FORWARD_FILL = new Alignment(Mode.FORWARD_FILL, Long.MAX_VALUE);
+
+    final Mode mMode;
+    final long mMaxStalenessMillis;
+
+    private Alignment(Mode mode, long maxStalenessMillis) {
+        mMode = mode;
+        mMaxStalenessMillis = maxStalenessMillis;
+    }
+
+    public static Alignment inner() {
+        return INNER;
+    }
+
+    public static Alignment forwardFill() {
+        return FORWARD_FILL;
+    }
+
+    public static Alignment asOf(Duration maxStaleness) {
+        check(!maxStaleness.isNegative());
+        return new Alignment(Mode.AS_OF, maxStaleness.toMillis());
+    }
+
+    public Mode getMode() {
+        return mMode;
+    }
+
+    public Duration getMaxStaleness() {
+        return Duration.ofMillis(mMaxStalenessMillis);
+    }
+
+    @Override public String toString() {
+        return "Alignment{" +
+            "mMode=" + mMode +
+            (mMode == Mode.AS_OF ? ", mMaxStaleness=" + getMaxStaleness() : "") +
+            '}';
+    }
+}
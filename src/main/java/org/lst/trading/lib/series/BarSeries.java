@@ -0,0 +1,257 @@
+package org.lst.trading.lib.series;
+
+import org.lst.trading.lib.model.Bar;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * OHLCV bars stored column-wise: one primitive array per field sharing an epoch-millis array of the bar starts.
+ * <p>
+ * Bars are read through a {@link Cursor}, a reusable {@link Bar} view of one row, so iterating does not allocate.
+ */
+public class BarSeries {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    String mName;
+    Duration mDuration;
+    long[] mTimes;
+    double[] mOpen;
+    double[] mHigh;
+    double[] mLow;
+    double[] mClose;
+    long[] mVolume;
+    int mSize;
+
+    BarSeries(String name, Duration duration, long[] times, double[] open, double[] high, double[] low, double[] close, long[] volume, int size) {
+        mName = name;
+        mDuration = duration;
+        mTimes = times;
+        mOpen = open;
+        mHigh = high;
+        mLow = low;
+        mClose = close;
+        mVolume = volume;
+        mSize = size;
+    }
+
+    /**
+     * @param duration length of the bars or {@code null} if unknown
+     */
+    public BarSeries(String name, Duration duration) {
+        this(name, duration, DEFAULT_CAPACITY);
+    }
+
+    public BarSeries(String name, Duration duration, int capacity) {
+        this(name, duration, new long[capacity], new double[capacity], new double[capacity], new double[capacity], new double[capacity], new long[capacity], 0);
+    }
+
+    /**
+     * A series backed by the given arrays, which are not copied. Times must be strictly ascending.
+     */
+    public static BarSeries of(String name, Duration duration, long[] epochMillis, double[] open, double[] high, double[] low, double[] close, long[] volume) {
+        int n = epochMillis.length;
+        check(open.length == n && high.length == n && low.length == n && close.length == n && volume.length == n);
+        TimeSeries.checkAscending(epochMillis, n);
+        return new BarSeries(name, duration, epochMillis, open, high, low, close, volume, n);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public void setName(String name) {
+        mName = name;
+    }
+
+    public Duration getDuration() {
+        return mDuration;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public boolean isAscending() {
+        return mSize <= 1 || mTimes[0] < mTimes[1];
+    }
+
+    public void add(long epochMillis, double open, double high, double low, double close, long volume) {
+        if (mSize == mTimes.length) {
+            grow(mSize + 1);
+        }
+        mTimes[mSize] = epochMillis;
+        mOpen[mSize] = open;
+        mHigh[mSize] = high;
+        mLow[mSize] = low;
+        mClose[mSize] = close;
+        mVolume[mSize] = volume;
+        mSize++;
+    }
+
+    public void add(Bar bar) {
+        add(bar.getStart().toEpochMilli(), bar.getOpen(), bar.getHigh(), bar.getLow(), bar.getClose(), bar.getVolume());
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(Math.max(DEFAULT_CAPACITY, mTimes.length * 2), minCapacity);
+        mTimes = Arrays.copyOf(mTimes, capacity);
+        mOpen = Arrays.copyOf(mOpen, capacity);
+        mHigh = Arrays.copyOf(mHigh, capacity);
+        mLow = Arrays.copyOf(mLow, capacity);
+        mClose = Arrays.copyOf(mClose, capacity);
+        mVolume = Arrays.copyOf(mVolume, capacity);
+    }
+
+    public long getEpochMillis(int row) {
+        return mTimes[row];
+    }
+
+    public double getOpen(int row) {
+        return mOpen[row];
+    }
+
+    public double getHigh(int row) {
+        return mHigh[row];
+    }
+
+    public double getLow(int row) {
+        return mLow[row];
+    }
+
+    public double getClose(int row) {
+        return mClose[row];
+    }
+
+    public long getVolume(int row) {
+        return mVolume[row];
+    }
+
+    /**
+     * Binary search for the row with the given start time, same contract as
+     * {@link Arrays#binarySearch(long[], int, int, long)}.
+     */
+    public int rowOf(long epochMillis) {
+        check(isAscending());
+        return Arrays.binarySearch(mTimes, 0, mSize, epochMillis);
+    }
+
+    public DoubleSeries getOpens() {
+        return column(mOpen);
+    }
+
+    public DoubleSeries getHighs() {
+        return column(mHigh);
+    }
+
+    public DoubleSeries getLows() {
+        return column(mLow);
+    }
+
+    public DoubleSeries getCloses() {
+        return column(mClose);
+    }
+
+    private DoubleSeries column(double[] values) {
+        return new DoubleSeries(Arrays.copyOf(values, mSize), Arrays.copyOf(mTimes, mSize), mSize, mName);
+    }
+
+    /**
+     * A cursor positioned before the first row.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    @Override public String toString() {
+        return mSize == 0 ? "BarSeries{empty}" :
+            "BarSeries{" +
+                "mName=" + mName +
+                ", from=" + Instant.ofEpochMilli(mTimes[0]) +
+                ", to=" + Instant.ofEpochMilli(mTimes[mSize - 1]) +
+                ", size=" + mSize +
+                '}';
+    }
+
+    /**
+     * A {@link Bar} view of the current row. The same instance is reused for every row, copy the values to keep them.
+     */
+    public class Cursor implements Bar {
+        int mRow = -1;
+
+        public int getRow() {
+            return mRow;
+        }
+
+        public Cursor moveTo(int row) {
+            check(row >= 0 && row < mSize);
+            mRow = row;
+            return this;
+        }
+
+        public boolean next() {
+            if (mRow + 1 >= mSize) {
+                return false;
+            }
+            mRow++;
+            return true;
+        }
+
+        @Override public double getOpen() {
+            return mOpen[mRow];
+        }
+
+        @Override public double getHigh() {
+            return mHigh[mRow];
+        }
+
+        @Override public double getLow() {
+            return mLow[mRow];
+        }
+
+        @Override public double getClose() {
+            return mClose[mRow];
+        }
+
+        @Override public long getVolume() {
+            return mVolume[mRow];
+        }
+
+        @Override public long getStartEpochMillis() {
+            return mTimes[mRow];
+        }
+
+        @Override public Instant getStart() {
+            return Instant.ofEpochMilli(mTimes[mRow]);
+        }
+
+        @Override public Duration getDuration() {
+            return mDuration;
+        }
+
+        /**
+         * Not stored, always NaN.
+         */
+        @Override public double getWAP() {
+            return Double.NaN;
+        }
+
+        @Override public String toString() {
+            return "Bar{" +
+                "start=" + getStart() +
+                ", open=" + getOpen() +
+                ", high=" + getHigh() +
+                ", low=" + getLow() +
+                ", close=" + getClose() +
+                ", volume=" + getVolume() +
+                '}';
+        }
+    }
+}
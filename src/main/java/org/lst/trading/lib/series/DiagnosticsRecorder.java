@@ -0,0 +1,187 @@
+package org.lst.trading.lib.series;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Records named per tick values of a strategy, e.g. the internals of a model, into primitive column buffers.
+ * <p>
+ * Usage on every tick, without allocating:
+ * <pre>
+ * if (recorder.tick(epochMillis)) {
+ *     recorder.set(0, a);
+ *     recorder.set(1, b);
+ * }
+ * </pre>
+ * Depending on the mode nothing is recorded, every k-th tick or every tick, the latter either in memory or streamed to a
+ * {@link RowWriter}. A recorder belongs to a single strategy and is reset by {@link #start(List)}.
+ */
+public class DiagnosticsRecorder {
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    public enum Mode {
+        OFF, SAMPLED, FULL, STREAMED
+    }
+
+    private static final DiagnosticsRecorder OFF = new DiagnosticsRecorder(Mode.OFF, 1, 0);
+
+    Mode mMode;
+    int mEvery;
+    int mCapacity;
+
+    List<String> mNames = new ArrayList<>();
+    long[] mTimes;
+    double[][] mColumns;
+    int mSize;
+    long mTicks;
+    RowWriter mWriter;
+    double[] mRow;
+    int mWritten;
+
+    private DiagnosticsRecorder(Mode mode, int every, int capacity) {
+        mMode = mode;
+        mEvery = every;
+        mCapacity = capacity;
+    }
+
+    /**
+     * Records nothing, {@link #tick(long)} always returns false.
+     */
+    public static DiagnosticsRecorder off() {
+        return OFF;
+    }
+
+    /**
+     * Records the first and then every {@code every}-th tick.
+     */
+    public static DiagnosticsRecorder sampled(int every) {
+        check(every > 0);
+        return new DiagnosticsRecorder(Mode.SAMPLED, every, DEFAULT_CAPACITY);
+    }
+
+    public static DiagnosticsRecorder full() {
+        return full(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Records every tick into buffers of the given initial capacity, e.g. the number of bars of the backtest.
+     */
+    public static DiagnosticsRecorder full(int capacity) {
+        check(capacity > 0);
+        return new DiagnosticsRecorder(Mode.FULL, 1, capacity);
+    }
+
+    /**
+     * Writes every tick to the writer instead of keeping it, a row is written when the next tick starts and on
+     * {@link #finish()}, which also closes the writer.
+     */
+    public static DiagnosticsRecorder streaming(RowWriter writer) {
+        DiagnosticsRecorder recorder = new DiagnosticsRecorder(Mode.STREAMED, 1, 1);
+        recorder.mWriter = writer;
+        return recorder;
+    }
+
+    public Mode getMode() {
+        return mMode;
+    }
+
+    /**
+     * Clears the recorded values and sets the columns, called by the strategy when it starts.
+     */
+    public void start(List<String> names) {
+        if (mMode == Mode.OFF) {
+            return;
+        }
+        mNames = new ArrayList<>(names);
+        mTimes = new long[mCapacity];
+        mColumns = new double[names.size()][mCapacity];
+        mSize = 0;
+        mTicks = 0;
+        if (mMode == Mode.STREAMED) {
+            mRow = new double[names.size()];
+            mWritten = 0;
+            mWriter.start(mNames);
+        }
+    }
+
+    /**
+     * Advances to the next tick, returns whether it is recorded. If so a row is added, its values are NaN until
+     * {@link #set(int, double)}.
+     */
+    public boolean tick(long epochMillis) {
+        if (mMode == Mode.OFF || mTicks++ % mEvery != 0) {
+            return false;
+        }
+        check(mTimes != null, "Recorder not started");
+
+        if (mMode == Mode.STREAMED) {
+            writePending();
+        } else if (mSize == mTimes.length) {
+            int capacity = mTimes.length * 2;
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            for (int c = 0; c < mColumns.length; c++) {
+                mColumns[c] = Arrays.copyOf(mColumns[c], capacity);
+            }
+        }
+        mTimes[mSize] = epochMillis;
+        for (double[] column : mColumns) {
+            column[mSize] = Double.NaN;
+        }
+        mSize++;
+        return true;
+    }
+
+    /**
+     * Sets a value of the row added by the last {@link #tick(long)}.
+     */
+    public void set(int column, double value) {
+        mColumns[column][mSize - 1] = value;
+    }
+
+    private void writePending() {
+        if (mSize == 0) {
+            return;
+        }
+        for (int c = 0; c < mColumns.length; c++) {
+            mRow[c] = mColumns[c][0];
+        }
+        mWriter.row(mTimes[0], mRow);
+        mWritten++;
+        mSize = 0;
+    }
+
+    /**
+     * Writes the last row and closes the writer of a {@link #streaming(RowWriter)} recorder, does nothing for the
+     * other modes. Called by the strategy when it ends.
+     */
+    public void finish() {
+        if (mMode == Mode.STREAMED && mTimes != null) {
+            writePending();
+            mWriter.close();
+        }
+    }
+
+    /**
+     * The number of recorded rows, including the rows already streamed.
+     */
+    public int size() {
+        return mMode == Mode.STREAMED ? mWritten + mSize : mSize;
+    }
+
+    public List<String> getNames() {
+        return mNames;
+    }
+
+    /**
+     * The rows recorded so far as a series sharing the buffers, it is copied before it is modified.
+     */
+    public MultipleDoubleSeries toSeries() {
+        check(mMode != Mode.STREAMED, "Rows were streamed to a writer");
+        MultipleDoubleSeries series = new MultipleDoubleSeries(mNames, mTimes == null ? new long[0] : mTimes, mColumns == null ? new double[mNames.size()][0] : mColumns, mSize);
+        series.mShared = true;
+        return series;
+    }
+}
@@ -1,19 +1,63 @@
 package org.lst.trading.lib.series;
 
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * A time series of doubles stored in two parallel primitive arrays (values and epoch millis).
+ * <p>
+ * The {@link TimeSeries} entry API is still available through {@link #getData()}, {@link #iterator()} and
+ * {@link #stream()}, but entries are created on the fly from the arrays.
+ */
 public class DoubleSeries extends TimeSeries<Double> {
+    private static final int DEFAULT_CAPACITY = 16;
+
     String mName;
+    double[] mValues;
+    long[] mTimes;
+    int mSize;
+    // arrays shared with the series this one was taken from, copied before the first modification
+    boolean mShared;
 
     DoubleSeries(List<Entry<Double>> data, String name) {
-        super(data);
+        this(name, data.size());
+        for (Entry<Double> entry : data) {
+            add(entry);
+        }
+    }
+
+    DoubleSeries(double[] values, long[] times, int size, String name) {
+        super(null);
+        mValues = values;
+        mTimes = times;
+        mSize = size;
         mName = name;
+        mData = new EntryView();
     }
 
     public DoubleSeries(String name) {
-        super();
-        mName = name;
+        this(name, DEFAULT_CAPACITY);
+    }
+
+    public DoubleSeries(String name, int capacity) {
+        this(new double[capacity], new long[capacity], 0, name);
+    }
+
+    /**
+     * A series backed by the given arrays, which are not copied. Times must be strictly ascending.
+     */
+    public static DoubleSeries of(String name, long[] epochMillis, double[] values) {
+        check(epochMillis.length == values.length);
+        checkAscending(epochMillis, epochMillis.length);
+        return new DoubleSeries(values, epochMillis, values.length, name);
     }
 
     public String getName() {
@@ -24,73 +68,216 @@ public class DoubleSeries extends TimeSeries<Double> {
         mName = name;
     }
 
+    @Override public int size() {
+        return mSize;
+    }
+
+    @Override public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @Override public boolean add(Entry<Double> entry) {
+        add(entry.mT, entry.mInstant.toEpochMilli());
+        return true;
+    }
+
+    @Override public void add(Double item, Instant instant) {
+        add(item.doubleValue(), instant.toEpochMilli());
+    }
+
+    public void add(double value, Instant instant) {
+        add(value, instant.toEpochMilli());
+    }
+
+    public void add(double value, long epochMillis) {
+        unshare();
+        if (mSize == mValues.length) {
+            grow(mSize + 1);
+        }
+        mValues[mSize] = value;
+        mTimes[mSize] = epochMillis;
+        mSize++;
+    }
+
+    private void unshare() {
+        if (mShared) {
+            mValues = Arrays.copyOf(mValues, mSize);
+            mTimes = Arrays.copyOf(mTimes, mSize);
+            mShared = false;
+        }
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(Math.max(DEFAULT_CAPACITY, mValues.length * 2), minCapacity);
+        mValues = Arrays.copyOf(mValues, capacity);
+        mTimes = Arrays.copyOf(mTimes, capacity);
+    }
+
+    public double getValue(int index) {
+        return mValues[index];
+    }
+
+    public long getEpochMillis(int index) {
+        return mTimes[index];
+    }
+
+    public Instant getInstant(int index) {
+        return Instant.ofEpochMilli(mTimes[index]);
+    }
+
+    @Override public boolean isAscending() {
+        return mSize <= 1 || mTimes[0] < mTimes[1];
+    }
+
     public DoubleSeries merge(DoubleSeries other, MergeFunction<Double, Double> f) {
-        return new DoubleSeries(DoubleSeries.merge(this, other, f).mData, mName);
+        return mergeValues(other, f::merge);
+    }
+
+    DoubleSeries mergeValues(DoubleSeries other, DoubleBinaryOperator f) {
+        check(isAscending());
+        check(other.isAscending());
+
+        int capacity = Math.min(mSize, other.mSize);
+        double[] values = new double[capacity];
+        long[] times = new long[capacity];
+        int n = 0;
+
+        int i = 0, j = 0;
+        while (i < mSize && j < other.mSize) {
+            long t1 = mTimes[i];
+            long t2 = other.mTimes[j];
+            if (t1 < t2) {
+                i++;
+            } else if (t2 < t1) {
+                j++;
+            } else {
+                values[n] = f.applyAsDouble(mValues[i], other.mValues[j]);
+                times[n] = t1;
+                n++;
+                i++;
+                j++;
+            }
+        }
+
+        return new DoubleSeries(values, times, n, mName);
+    }
+
+    /**
+     * A lazy plan of operations on the values currently in this series, values added later are not part of it. See
+     * {@link LazyDoubleSeries}.
+     */
+    public LazyDoubleSeries lazy() {
+        return LazyDoubleSeries.of(this);
     }
 
     public DoubleSeries mapToDouble(Function<Double, Double> f) {
-        return new DoubleSeries(map(f).mData, mName);
+        return apply(f::apply);
+    }
+
+    DoubleSeries apply(DoubleUnaryOperator f) {
+        double[] values = new double[mSize];
+        for (int i = 0; i < mSize; i++) {
+            values[i] = f.applyAsDouble(mValues[i]);
+        }
+        return new DoubleSeries(values, Arrays.copyOf(mTimes, mSize), mSize, mName);
     }
 
     public DoubleSeries plus(DoubleSeries other) {
-        return merge(other, (x, y) -> x + y);
+        return mergeValues(other, (x, y) -> x + y);
     }
 
     public DoubleSeries plus(double other) {
-        return mapToDouble(x -> x + other);
+        return apply(x -> x + other);
     }
 
     public DoubleSeries mul(DoubleSeries other) {
-        return merge(other, (x, y) -> x * y);
+        return mergeValues(other, (x, y) -> x * y);
     }
 
     public DoubleSeries mul(double factor) {
-        return mapToDouble(x -> x * factor);
+        return apply(x -> x * factor);
     }
 
     public DoubleSeries div(DoubleSeries other) {
-        return merge(other, (x, y) -> x / y);
+        return mergeValues(other, (x, y) -> x / y);
     }
 
     public DoubleSeries returns() {
-        return this.div(lag(1)).plus(-1);
+        return returns(1);
     }
 
     public double getLast() {
-        return getData().get(size() - 1).getItem();
+        return mValues[mSize - 1];
     }
 
     public DoubleSeries tail(int n) {
-        return new DoubleSeries(getData().subList(size() - n, size()), getName());
+        return new DoubleSeries(Arrays.copyOfRange(mValues, mSize - n, mSize), Arrays.copyOfRange(mTimes, mSize - n, mSize), n, getName());
     }
 
     public DoubleSeries returns(int days) {
-        return this.div(lag(days)).plus(-1);
+        check(days > 0);
+        int size = Math.max(0, mSize - days);
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = mValues[i + days] / mValues[i] - 1;
+        }
+        return new DoubleSeries(values, Arrays.copyOfRange(mTimes, mSize - size, mSize), size, getName());
     }
 
     public double[] toArray() {
-        return stream().mapToDouble(Entry::getItem).toArray();
+        return Arrays.copyOf(mValues, mSize);
     }
 
     @Override public DoubleSeries toAscending() {
-        return new DoubleSeries(super.toAscending().mData, getName());
+        return isAscending() ? this : reverse();
     }
 
     @Override public DoubleSeries toDescending() {
-        return new DoubleSeries(super.toDescending().mData, getName());
+        return isAscending() ? reverse() : this;
+    }
+
+    @Override public DoubleSeries reverse() {
+        double[] values = new double[mSize];
+        long[] times = new long[mSize];
+        for (int i = 0; i < mSize; i++) {
+            values[i] = mValues[mSize - 1 - i];
+            times[i] = mTimes[mSize - 1 - i];
+        }
+        return new DoubleSeries(values, times, mSize, getName());
     }
 
     @Override public DoubleSeries lag(int k) {
-        return new DoubleSeries(super.lag(k).mData, getName());
+        check(k > 0);
+        check(mSize >= k);
+
+        return new DoubleSeries(Arrays.copyOf(mValues, mSize - k), Arrays.copyOfRange(mTimes, k, mSize), mSize - k, getName());
     }
 
     @Override public String toString() {
-        return mData.isEmpty() ? "DoubleSeries{empty}" :
+        return mSize == 0 ? "DoubleSeries{empty}" :
             "DoubleSeries{" +
                 "mName=" + mName +
-                ", from=" + mData.get(0).getInstant() +
-                ", to=" + mData.get(mData.size() - 1).getInstant() +
-                ", size=" + mData.size() +
+                ", from=" + getInstant(0) +
+                ", to=" + getInstant(mSize - 1) +
+                ", size=" + mSize +
                 '}';
     }
+
+    private class EntryView extends AbstractList<Entry<Double>> implements RandomAccess {
+        @Override public Entry<Double> get(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+            }
+            return new Entry<>(mValues[index], Instant.ofEpochMilli(mTimes[index]));
+        }
+
+        @Override public int size() {
+            return mSize;
+        }
+
+        @Override public boolean add(Entry<Double> entry) {
+            DoubleSeries.this.add(entry);
+            return true;
+        }
+    }
 }
@@ -0,0 +1,150 @@
+package org.lst.trading.lib.series;
+
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * A plan of arithmetic on {@link DoubleSeries}, created by {@link DoubleSeries#lazy()}. Operations only compose
+ * functions, {@link #toSeries()} or {@link #toArray()} evaluate the whole plan in one loop without intermediate series.
+ * <p>
+ * A plan is defined on rows {@code [from, to)} of an index, the time array of the series it was created from. Operations
+ * on two plans over the same index just intersect the row ranges, as do plans over indices with the same times. Other
+ * plans are aligned on equal times like {@link DoubleSeries#merge(DoubleSeries, TimeSeries.MergeFunction)}, which
+ * materializes both first.
+ */
+public final class LazyDoubleSeries {
+    /**
+     * Value of the plan at a row of the index.
+     */
+    private interface Plan {
+        double at(int row);
+    }
+
+    final String mName;
+    final long[] mTimes;
+    final int mFrom;
+    final int mTo;
+    final Plan mPlan;
+
+    private LazyDoubleSeries(String name, long[] times, int from, int to, Plan plan) {
+        mName = name;
+        mTimes = times;
+        mFrom = from;
+        mTo = to;
+        mPlan = plan;
+    }
+
+    static LazyDoubleSeries of(DoubleSeries series) {
+        double[] values = series.mValues;
+        return new LazyDoubleSeries(series.mName, series.mTimes, 0, series.mSize, row -> values[row]);
+    }
+
+    public int size() {
+        return mTo - mFrom;
+    }
+
+    public LazyDoubleSeries plus(LazyDoubleSeries other) {
+        return combine(other, (x, y) -> x + y);
+    }
+
+    public LazyDoubleSeries plus(double other) {
+        Plan plan = mPlan;
+        return with(mFrom, row -> plan.at(row) + other);
+    }
+
+    public LazyDoubleSeries mul(LazyDoubleSeries other) {
+        return combine(other, (x, y) -> x * y);
+    }
+
+    public LazyDoubleSeries mul(double factor) {
+        Plan plan = mPlan;
+        return with(mFrom, row -> plan.at(row) * factor);
+    }
+
+    public LazyDoubleSeries div(LazyDoubleSeries other) {
+        return combine(other, (x, y) -> x / y);
+    }
+
+    public LazyDoubleSeries mapToDouble(DoubleUnaryOperator f) {
+        Plan plan = mPlan;
+        return with(mFrom, row -> f.applyAsDouble(plan.at(row)));
+    }
+
+    /**
+     * The value {@code k} rows earlier at every time, the first {@code k} times are dropped, like
+     * {@link DoubleSeries#lag(int)}.
+     */
+    public LazyDoubleSeries lag(int k) {
+        check(k > 0);
+        check(size() >= k);
+        Plan plan = mPlan;
+        return with(mFrom + k, row -> plan.at(row - k));
+    }
+
+    public LazyDoubleSeries returns() {
+        return returns(1);
+    }
+
+    /**
+     * Same as {@link DoubleSeries#returns(int)}: {@code x[t] / x[t - k] - 1}, the first {@code k} times are dropped.
+     */
+    public LazyDoubleSeries returns(int k) {
+        check(k > 0);
+        Plan plan = mPlan;
+        return with(Math.min(mFrom + k, mTo), row -> plan.at(row) / plan.at(row - k) - 1);
+    }
+
+    private LazyDoubleSeries with(int from, Plan plan) {
+        return new LazyDoubleSeries(mName, mTimes, from, mTo, plan);
+    }
+
+    private LazyDoubleSeries combine(LazyDoubleSeries other, DoubleBinaryOperator f) {
+        Plan a = mPlan;
+        Plan b = other.mPlan;
+        if (mTimes == other.mTimes) {
+            int from = Math.max(mFrom, other.mFrom);
+            int to = Math.max(from, Math.min(mTo, other.mTo));
+            return new LazyDoubleSeries(mName, mTimes, from, to, row -> f.applyAsDouble(a.at(row), b.at(row)));
+        }
+        if (hasSameTimes(other)) {
+            int offset = other.mFrom - mFrom;
+            return with(mFrom, row -> f.applyAsDouble(a.at(row), b.at(row + offset)));
+        }
+        return toSeries().mergeValues(other.toSeries(), f).lazy();
+    }
+
+    private boolean hasSameTimes(LazyDoubleSeries other) {
+        if (size() != other.size()) {
+            return false;
+        }
+        for (int i = 0; i < size(); i++) {
+            if (mTimes[mFrom + i] != other.mTimes[other.mFrom + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public double[] toArray() {
+        double[] values = new double[size()];
+        Plan plan = mPlan;
+        for (int row = mFrom; row < mTo; row++) {
+            values[row - mFrom] = plan.at(row);
+        }
+        return values;
+    }
+
+    public DoubleSeries toSeries() {
+        return new DoubleSeries(toArray(), Arrays.copyOfRange(mTimes, mFrom, mTo), size(), mName);
+    }
+
+    @Override public String toString() {
+        return "LazyDoubleSeries{" +
+            "mName=" + mName +
+            ", size=" + size() +
+            '}';
+    }
+}
@@ -1,57 +1,246 @@
 package org.lst.trading.lib.series;
 
+import java.time.Instant;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
+import static org.lst.trading.lib.util.Util.check;
 
+/**
+ * A table of doubles stored column-wise: one shared epoch-millis array and one primitive array per named column.
+ * <p>
+ * Rows are still available as {@link TimeSeries.Entry} objects holding a {@code List<Double>}, but both are views
+ * created on demand over the columns.
+ */
 public class MultipleDoubleSeries extends TimeSeries<List<Double>> {
+    private static final int DEFAULT_CAPACITY = 16;
+
     List<String> mNames;
+    Map<String, Integer> mIndex;
+    long[] mTimes;
+    double[][] mColumns;
+    int mSize;
+    // arrays shared with the series this one was selected from, copied before the first modification
+    boolean mShared;
 
-    public MultipleDoubleSeries(Collection<String> names) {
+    MultipleDoubleSeries(List<String> names, long[] times, double[][] columns, int size) {
+        super(null);
         mNames = new ArrayList<>(names);
+        mIndex = new HashMap<>();
+        for (int i = 0; i < mNames.size(); i++) {
+            mIndex.putIfAbsent(mNames.get(i), i);
+        }
+        mTimes = times;
+        mColumns = columns;
+        mSize = size;
+        mData = new EntryView();
+    }
+
+    public MultipleDoubleSeries(Collection<String> names) {
+        this(new ArrayList<>(names), new long[DEFAULT_CAPACITY], new double[names.size()][DEFAULT_CAPACITY], 0);
     }
 
     public MultipleDoubleSeries(DoubleSeries... series) {
-        mNames = new ArrayList<>();
-        for (int i = 0; i < series.length; i++) {
-            if (i == 0) {
-                _init(series[i]);
+        this(SeriesMerger.merge(Alignment.inner(), series));
+    }
+
+    private MultipleDoubleSeries(MultipleDoubleSeries other) {
+        this(other.mNames, other.mTimes, other.mColumns, other.mSize);
+    }
+
+    /**
+     * A series backed by the given arrays, one column per name, which are not copied. Times must be strictly
+     * ascending.
+     */
+    public static MultipleDoubleSeries of(List<String> names, long[] epochMillis, double[][] columns) {
+        check(names.size() == columns.length);
+        for (double[] column : columns) {
+            check(column.length == epochMillis.length);
+        }
+        checkAscending(epochMillis, epochMillis.length);
+        return new MultipleDoubleSeries(names, epochMillis, columns, epochMillis.length);
+    }
+
+    /**
+     * Aligns all series in a single k-way merge pass, see {@link Alignment} for the supported join modes.
+     */
+    public static MultipleDoubleSeries align(Alignment alignment, DoubleSeries... series) {
+        return SeriesMerger.merge(alignment, series);
+    }
+
+    private void addName(String name) {
+        mIndex.putIfAbsent(name, mNames.size());
+        mNames.add(name);
+    }
+
+    public void addSeries(DoubleSeries series) {
+        check(isAscending());
+        check(series.isAscending());
+
+        int capacity = Math.min(mSize, series.mSize);
+        int columnCount = mColumns.length;
+        long[] times = new long[capacity];
+        double[][] columns = new double[columnCount + 1][capacity];
+        int n = 0;
+
+        int i = 0, j = 0;
+        while (i < mSize && j < series.mSize) {
+            long t1 = mTimes[i];
+            long t2 = series.mTimes[j];
+            if (t1 < t2) {
+                i++;
+            } else if (t2 < t1) {
+                j++;
             } else {
-                addSeries(series[i]);
+                times[n] = t1;
+                for (int c = 0; c < columnCount; c++) {
+                    columns[c][n] = mColumns[c][i];
+                }
+                columns[columnCount][n] = series.mValues[j];
+                n++;
+                i++;
+                j++;
             }
         }
+
+        mTimes = times;
+        mColumns = columns;
+        mSize = n;
+        addName(series.mName);
+    }
+
+    @Override public int size() {
+        return mSize;
+    }
+
+    @Override public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @Override public boolean isAscending() {
+        return mSize <= 1 || mTimes[0] < mTimes[1];
+    }
+
+    @Override public boolean add(Entry<List<Double>> entry) {
+        add(entry.mT, entry.mInstant);
+        return true;
+    }
+
+    @Override public void add(List<Double> row, Instant instant) {
+        check(row.size() == mColumns.length);
+        unshare();
+        ensureCapacity(mSize + 1);
+        for (int c = 0; c < mColumns.length; c++) {
+            mColumns[c][mSize] = row.get(c);
+        }
+        mTimes[mSize] = instant.toEpochMilli();
+        mSize++;
     }
 
-    void _init(DoubleSeries series) {
-        mData = new ArrayList<>();
-        for (Entry<Double> entry : series) {
-            LinkedList<Double> list = new LinkedList<>();
-            list.add(entry.mT);
-            add(new Entry<>(list, entry.mInstant));
+    public void add(double[] row, long epochMillis) {
+        check(row.length == mColumns.length);
+        unshare();
+        ensureCapacity(mSize + 1);
+        for (int c = 0; c < mColumns.length; c++) {
+            mColumns[c][mSize] = row[c];
         }
-        mNames.add(series.mName);
+        mTimes[mSize] = epochMillis;
+        mSize++;
     }
 
-    public void addSeries(DoubleSeries series) {
-        mData = TimeSeries.merge(this, series, (l, t) -> {
-            l.add(t);
-            return l;
-        }).mData;
-        mNames.add(series.mName);
+    private void unshare() {
+        if (mShared) {
+            mTimes = Arrays.copyOf(mTimes, mSize);
+            for (int c = 0; c < mColumns.length; c++) {
+                mColumns[c] = Arrays.copyOf(mColumns[c], mSize);
+            }
+            mShared = false;
+        }
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > mTimes.length) {
+            int capacity = Math.max(Math.max(DEFAULT_CAPACITY, mTimes.length * 2), minCapacity);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            for (int c = 0; c < mColumns.length; c++) {
+                mColumns[c] = Arrays.copyOf(mColumns[c], capacity);
+            }
+        }
     }
 
+    /**
+     * The column as a series which shares the time and column arrays with this one, like {@link #select(String...)}.
+     */
     public DoubleSeries getColumn(String name) {
-        int index = getNames().indexOf(name);
-        List<Entry<Double>> entries = mData.stream().map(t -> new Entry<Double>(t.getItem().get(index), t.getInstant())).collect(toList());
-        return new DoubleSeries(entries, name);
+        int index = indexOf(name);
+        check(index >= 0, "Unknown column " + name);
+        DoubleSeries series = new DoubleSeries(mColumns[index], mTimes, mSize, name);
+        series.mShared = true;
+        return series;
+    }
+
+    public double getValue(int row, int column) {
+        return mColumns[column][row];
+    }
+
+    public void setValue(int row, int column, double value) {
+        check(row < mSize);
+        unshare();
+        mColumns[column][row] = value;
+    }
+
+    /**
+     * A copy with its own column arrays, e.g. to be modified with {@link #setValue(int, int, double)}.
+     */
+    public MultipleDoubleSeries copy() {
+        double[][] columns = new double[mColumns.length][];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = Arrays.copyOf(mColumns[c], mSize);
+        }
+        return new MultipleDoubleSeries(mNames, Arrays.copyOf(mTimes, mSize), columns, mSize);
+    }
+
+    /**
+     * A series of the given columns which shares the time and column arrays with this one instead of copying them.
+     * Modifying the returned series copies its arrays first, values later changed through
+     * {@link #setValue(int, int, double)} of this series are visible in the returned one.
+     */
+    public MultipleDoubleSeries select(String... names) {
+        double[][] columns = new double[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            int index = indexOf(names[i]);
+            check(index >= 0, "Unknown column " + names[i]);
+            columns[i] = mColumns[index];
+        }
+        MultipleDoubleSeries series = new MultipleDoubleSeries(Arrays.asList(names), mTimes, columns, mSize);
+        series.mShared = true;
+        return series;
+    }
+
+    public long getEpochMillis(int row) {
+        return mTimes[row];
+    }
+
+    public Instant getInstant(int row) {
+        return Instant.ofEpochMilli(mTimes[row]);
+    }
+
+    public void getRow(int row, double[] destination) {
+        for (int c = 0; c < mColumns.length; c++) {
+            destination[c] = mColumns[c][row];
+        }
     }
 
     public int indexOf(String name) {
-        return mNames.indexOf(name);
+        Integer index = mIndex.get(name);
+        return index == null ? -1 : index;
     }
 
     public List<String> getNames() {
@@ -59,12 +248,46 @@ public class MultipleDoubleSeries extends TimeSeries<List<Double>> {
     }
 
     @Override public String toString() {
-        return mData.isEmpty() ? "MultipleDoubleSeries{empty}" :
+        return mSize == 0 ? "MultipleDoubleSeries{empty}" :
             "MultipleDoubleSeries{" +
                 "mNames={" + mNames.stream().collect(joining(", ")) +
-                ", from=" + mData.get(0).getInstant() +
-                ", to=" + mData.get(mData.size() - 1).getInstant() +
-                ", size=" + mData.size() +
+                ", from=" + getInstant(0) +
+                ", to=" + getInstant(mSize - 1) +
+                ", size=" + mSize +
                 '}';
     }
+
+    private class EntryView extends AbstractList<Entry<List<Double>>> implements RandomAccess {
+        @Override public Entry<List<Double>> get(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+            }
+            return new Entry<>(new RowView(index), Instant.ofEpochMilli(mTimes[index]));
+        }
+
+        @Override public int size() {
+            return mSize;
+        }
+
+        @Override public boolean add(Entry<List<Double>> entry) {
+            MultipleDoubleSeries.this.add(entry);
+            return true;
+        }
+    }
+
+    private class RowView extends AbstractList<Double> implements RandomAccess {
+        final int mRow;
+
+        RowView(int row) {
+            mRow = row;
+        }
+
+        @Override public Double get(int index) {
+            return mColumns[index][mRow];
+        }
+
+        @Override public int size() {
+            return mColumns.length;
+        }
+    }
 }
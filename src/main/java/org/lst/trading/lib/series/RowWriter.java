@@ -0,0 +1,36 @@
+package org.lst.trading.lib.series;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Streams rows of doubles with a time to a file, e.g. an equity curve or the diagnostics of a strategy, without keeping
+ * them in memory.
+ */
+public interface RowWriter extends Closeable {
+    /**
+     * Sets the columns, called once before the first row.
+     */
+    void start(List<String> names);
+
+    /**
+     * Writes a row with one value per column, the array is not kept.
+     */
+    void row(long epochMillis, double[] values);
+
+    void flush();
+
+    @Override void close();
+
+    /**
+     * Starts with the columns of the series and writes all of its rows.
+     */
+    default void write(MultipleDoubleSeries series) {
+        start(series.getNames());
+        double[] row = new double[series.getNames().size()];
+        for (int i = 0; i < series.size(); i++) {
+            series.getRow(i, row);
+            row(series.getEpochMillis(i), row);
+        }
+    }
+}
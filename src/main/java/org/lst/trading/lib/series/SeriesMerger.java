@@ -0,0 +1,157 @@
+package org.lst.trading.lib.series;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Single pass k-way merge of ascending {@link DoubleSeries} into a {@link MultipleDoubleSeries}.
+ * <p>
+ * A binary heap of series indices ordered by their next timestamp yields the distinct timestamps in ascending order,
+ * so aligning N series of length T costs O(N T log N) regardless of how many series are merged. A time repeated within
+ * a series gives a single row holding its first value at that time, like the former pairwise inner merge.
+ */
+final class SeriesMerger {
+    private SeriesMerger() {
+    }
+
+    static MultipleDoubleSeries merge(Alignment alignment, DoubleSeries[] series) {
+        int k = series.length;
+        List<String> names = new ArrayList<>(k);
+        int[] position = new int[k];
+        double[] last = new double[k];
+        long[] lastTime = new long[k];
+        int[] matchedRow = new int[k];
+        int[] heap = new int[k];
+        int heapSize = 0;
+        int capacity = 0;
+
+        Arrays.fill(last, Double.NaN);
+        Arrays.fill(lastTime, Long.MIN_VALUE);
+        Arrays.fill(matchedRow, -1);
+
+        for (int s = 0; s < k; s++) {
+            check(series[s].isAscending());
+            names.add(series[s].getName());
+            capacity = alignment.mMode == Alignment.Mode.INNER ? (s == 0 ? series[s].mSize : Math.min(capacity, series[s].mSize)) : Math.max(capacity, series[s].mSize);
+            if (series[s].mSize > 0) {
+                heap[heapSize] = s;
+                siftUp(heap, heapSize++, series, position);
+            }
+        }
+
+        long[] times = new long[capacity];
+        double[][] columns = new double[k][capacity];
+        int size = 0;
+        int round = 0;
+
+        while (heapSize > 0) {
+            if (alignment.mMode == Alignment.Mode.INNER && heapSize < k) {
+                break;
+            }
+
+            long t = timeOf(heap[0], series, position);
+            int matched = 0;
+
+            while (heapSize > 0 && timeOf(heap[0], series, position) == t) {
+                int s = heap[0];
+                if (matchedRow[s] != round) {
+                    last[s] = series[s].mValues[position[s]];
+                    lastTime[s] = t;
+                    matchedRow[s] = round;
+                    matched++;
+                }
+
+                if (++position[s] == series[s].mSize) {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(heap, heapSize, series, position);
+            }
+            round++;
+
+            if (!accept(alignment, t, matched, lastTime)) {
+                continue;
+            }
+
+            if (size == times.length) {
+                int newCapacity = Math.max(16, size * 2);
+                times = Arrays.copyOf(times, newCapacity);
+                for (int s = 0; s < k; s++) {
+                    columns[s] = Arrays.copyOf(columns[s], newCapacity);
+                }
+            }
+
+            times[size] = t;
+            for (int s = 0; s < k; s++) {
+                columns[s][size] = last[s];
+            }
+            size++;
+        }
+
+        return new MultipleDoubleSeries(names, times, columns, size);
+    }
+
+    private static boolean accept(Alignment alignment, long t, int matched, long[] lastTime) {
+        switch (alignment.mMode) {
+            case INNER:
+                return matched == lastTime.length;
+            case FORWARD_FILL:
+                return true;
+            default:
+                for (long time : lastTime) {
+                    if (time == Long.MIN_VALUE || t - time > alignment.mMaxStalenessMillis) {
+                        return false;
+                    }
+                }
+                return true;
+        }
+    }
+
+    private static long timeOf(int s, DoubleSeries[] series, int[] position) {
+        return series[s].mTimes[position[s]];
+    }
+
+    private static boolean less(int a, int b, DoubleSeries[] series, int[] position) {
+        long ta = timeOf(a, series, position);
+        long tb = timeOf(b, series, position);
+        return ta < tb || ta == tb && a < b;
+    }
+
+    private static void siftUp(int[] heap, int i, DoubleSeries[] series, int[] position) {
+        int s = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(s, heap[parent], series, position)) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = s;
+    }
+
+    private static void siftDown(int[] heap, int size, DoubleSeries[] series, int[] position) {
+        if (size == 0) {
+            return;
+        }
+        int s = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && less(heap[child + 1], heap[child], series, position)) {
+                child++;
+            }
+            if (!less(heap[child], s, series, position)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = s;
+    }
+}
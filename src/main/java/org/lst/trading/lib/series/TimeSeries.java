@@ -120,6 +120,17 @@ public class TimeSeries<T> implements Iterable<TimeSeries.Entry<T>> {
         return size() <= 1 || get(0).getInstant().isBefore(get(1).mInstant);
     }
 
+    /**
+     * Fails unless the first {@code size} times are strictly ascending, as lookups by time and merges rely on it.
+     */
+    static void checkAscending(long[] epochMillis, int size) {
+        for (int i = 1; i < size; i++) {
+            if (epochMillis[i] <= epochMillis[i - 1]) {
+                throw new RuntimeException("Times not strictly ascending at " + i + ": " + Instant.ofEpochMilli(epochMillis[i - 1]) + ", " + Instant.ofEpochMilli(epochMillis[i]));
+            }
+        }
+    }
+
     public TimeSeries<T> toAscending() {
         if (!isAscending()) {
             return reverse();
@@ -0,0 +1,411 @@
+package org.lst.trading.lib.store;
+
+import org.lst.trading.lib.series.DoubleSeries;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Columnar binary file of prices of one symbol, memory mapped so opening it neither parses nor reads the data, and
+ * processes reading the same file share the page cache.
+ * <p>
+ * Layout, little endian:
+ * <pre>
+ * int magic, int version, int field count, int data offset, long capacity, long size
+ * per field: short length, UTF-8 name
+ * padding to the data offset (a multiple of 8)
+ * long[capacity] epoch millis
+ * per field: double[capacity] values
+ * </pre>
+ * Columns are allocated for {@code capacity} rows so rows can be appended in place, the file is rewritten with twice
+ * the capacity when it is full. The size is written after the rows, a reader sees the rows appended before it opened
+ * the file. Times are strictly ascending.
+ */
+public class PriceFile implements Closeable {
+    private static final int MAGIC = 0x4C535450;
+    private static final int VERSION = 1;
+    private static final int SIZE_OFFSET = 24;
+    private static final int NAMES_OFFSET = 32;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    Path mPath;
+    boolean mWritable;
+    FileChannel mChannel;
+    MappedByteBuffer mBuffer;
+    List<String> mFields;
+    int mDataOffset;
+    int mCapacity;
+    int mSize;
+
+    private PriceFile(Path path, boolean writable) {
+        mPath = path;
+        mWritable = writable;
+        map();
+    }
+
+    /**
+     * Creates an empty file, replacing an existing one, and opens it for appending.
+     */
+    public static PriceFile create(Path path, List<String> fields) {
+        write(path, fields, DEFAULT_CAPACITY, null, 0);
+        return new PriceFile(path, true);
+    }
+
+    public static PriceFile open(Path path) {
+        return new PriceFile(path, false);
+    }
+
+    public static PriceFile openForAppend(Path path) {
+        return new PriceFile(path, true);
+    }
+
+    private void map() {
+        try {
+            mChannel = mWritable ? FileChannel.open(mPath, StandardOpenOption.READ, StandardOpenOption.WRITE) : FileChannel.open(mPath, StandardOpenOption.READ);
+            long length = mChannel.size();
+            check(length <= Integer.MAX_VALUE, "File too large " + mPath);
+            mBuffer = mChannel.map(mWritable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        mBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        check(mBuffer.getInt(0) == MAGIC, "Not a price file " + mPath);
+        check(mBuffer.getInt(4) == VERSION, "Unsupported version " + mBuffer.getInt(4));
+        int fieldCount = mBuffer.getInt(8);
+        mDataOffset = mBuffer.getInt(12);
+        mCapacity = (int) mBuffer.getLong(16);
+        mSize = (int) mBuffer.getLong(SIZE_OFFSET);
+
+        List<String> fields = new ArrayList<>(fieldCount);
+        int position = NAMES_OFFSET;
+        for (int i = 0; i < fieldCount; i++) {
+            byte[] name = new byte[mBuffer.getShort(position)];
+            ByteBuffer names = mBuffer.duplicate();
+            names.position(position + 2);
+            names.get(name);
+            fields.add(new String(name, StandardCharsets.UTF_8));
+            position += 2 + name.length;
+        }
+        mFields = Collections.unmodifiableList(fields);
+    }
+
+    /**
+     * Writes a file with the given capacity and the first {@code size} rows of {@code source}, if any, to a temporary
+     * file which then replaces {@code path}.
+     */
+    private static void write(Path path, List<String> fields, int capacity, PriceFile source, int size) {
+        List<byte[]> names = new ArrayList<>();
+        int namesLength = 0;
+        for (String field : fields) {
+            byte[] name = field.getBytes(StandardCharsets.UTF_8);
+            check(name.length <= Short.MAX_VALUE);
+            names.add(name);
+            namesLength += 2 + name.length;
+        }
+        int dataOffset = (NAMES_OFFSET + namesLength + 7) & ~7;
+        long length = dataOffset + 8L * capacity * (1 + fields.size());
+        check(length <= Integer.MAX_VALUE, "File too large " + path);
+
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, fields.size());
+                buffer.putInt(12, dataOffset);
+                buffer.putLong(16, capacity);
+                buffer.position(NAMES_OFFSET);
+                for (byte[] name : names) {
+                    buffer.putShort((short) name.length);
+                    buffer.put(name);
+                }
+
+                if (source != null) {
+                    slice(buffer, dataOffset, size).asLongBuffer().put(source.getTimes());
+                    for (int f = 0; f < fields.size(); f++) {
+                        slice(buffer, dataOffset + 8 * capacity * (1 + f), size).asDoubleBuffer().put(source.getColumn(f));
+                    }
+                }
+                buffer.putLong(SIZE_OFFSET, size);
+                buffer.force();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int rows) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset);
+        slice.limit(offset + 8 * rows);
+        return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private int columnOffset(int field) {
+        return mDataOffset + 8 * mCapacity * (1 + field);
+    }
+
+    public Path getPath() {
+        return mPath;
+    }
+
+    public List<String> getFields() {
+        return mFields;
+    }
+
+    public int indexOf(String field) {
+        int index = mFields.indexOf(field);
+        check(index >= 0, "Unknown field " + field);
+        return index;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getEpochMillis(int row) {
+        return mBuffer.getLong(mDataOffset + 8 * row);
+    }
+
+    public double getValue(int row, int field) {
+        return mBuffer.getDouble(columnOffset(field) + 8 * row);
+    }
+
+    /**
+     * The times of all rows as a view of the mapped file.
+     */
+    public LongBuffer getTimes() {
+        return slice(mBuffer, mDataOffset, mSize).asLongBuffer();
+    }
+
+    /**
+     * The values of a field for all rows as a view of the mapped file.
+     */
+    public DoubleBuffer getColumn(int field) {
+        return slice(mBuffer, columnOffset(field), mSize).asDoubleBuffer();
+    }
+
+    public DoubleBuffer getColumn(String field) {
+        return getColumn(indexOf(field));
+    }
+
+    /**
+     * The first row with a time at or after {@code epochMillis}, {@link #size()} if there is none.
+     */
+    public int lowerBound(long epochMillis) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getEpochMillis(middle) < epochMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public DoubleSeries getSeries(String field) {
+        return getRows(field, 0, mSize);
+    }
+
+    /**
+     * The field for times in {@code [fromEpochMillis, toEpochMillis)}, named after the field.
+     */
+    public DoubleSeries getSeries(String field, long fromEpochMillis, long toEpochMillis) {
+        int from = lowerBound(fromEpochMillis);
+        return getRows(field, from, Math.max(from, lowerBound(toEpochMillis)));
+    }
+
+    /**
+     * Rows {@code [from, to)} of the field, copied from the mapped file in bulk.
+     */
+    public DoubleSeries getRows(String field, int from, int to) {
+        check(0 <= from && from <= to && to <= mSize);
+        return DoubleSeries.of(field, readTimes(from, to), readColumn(indexOf(field), from, to));
+    }
+
+    public MultipleDoubleSeries getAll() {
+        return getRows(0, mSize);
+    }
+
+    /**
+     * All fields for times in {@code [fromEpochMillis, toEpochMillis)}.
+     */
+    public MultipleDoubleSeries getAll(long fromEpochMillis, long toEpochMillis) {
+        int from = lowerBound(fromEpochMillis);
+        return getRows(from, Math.max(from, lowerBound(toEpochMillis)));
+    }
+
+    /**
+     * Rows {@code [from, to)} of all fields, copied from the mapped file in bulk.
+     */
+    public MultipleDoubleSeries getRows(int from, int to) {
+        check(0 <= from && from <= to && to <= mSize);
+        double[][] columns = new double[mFields.size()][];
+        for (int f = 0; f < columns.length; f++) {
+            columns[f] = readColumn(f, from, to);
+        }
+        return MultipleDoubleSeries.of(mFields, readTimes(from, to), columns);
+    }
+
+    private long[] readTimes(int from, int to) {
+        long[] times = new long[to - from];
+        LongBuffer buffer = getTimes();
+        buffer.position(from);
+        buffer.get(times);
+        return times;
+    }
+
+    private double[] readColumn(int field, int from, int to) {
+        double[] values = new double[to - from];
+        DoubleBuffer buffer = getColumn(field);
+        buffer.position(from);
+        buffer.get(values);
+        return values;
+    }
+
+    /**
+     * Appends a row with one value per field, its time must be after the last row's.
+     */
+    public void append(long epochMillis, double... values) {
+        check(mWritable, "Not opened for appending");
+        check(values.length == mFields.size());
+        check(mSize == 0 || epochMillis > getEpochMillis(mSize - 1), "Times must be ascending");
+        if (mSize == mCapacity) {
+            ensureCapacity(mCapacity * 2);
+        }
+
+        mBuffer.putLong(mDataOffset + 8 * mSize, epochMillis);
+        for (int f = 0; f < values.length; f++) {
+            mBuffer.putDouble(columnOffset(f) + 8 * mSize, values[f]);
+        }
+        mSize++;
+        mBuffer.putLong(SIZE_OFFSET, mSize);
+    }
+
+    /**
+     * Appends the rows of the series after the last row's time, its columns are matched to the fields by name. Returns
+     * the number of rows appended.
+     */
+    public int append(MultipleDoubleSeries series) {
+        int[] columns = new int[mFields.size()];
+        for (int f = 0; f < columns.length; f++) {
+            columns[f] = series.indexOf(mFields.get(f));
+            check(columns[f] >= 0, "Missing field " + mFields.get(f));
+        }
+
+        ensureCapacity(mSize + countAfterLast(series.size(), series::getEpochMillis));
+        double[] values = new double[columns.length];
+        int appended = 0;
+        for (int row = 0; row < series.size(); row++) {
+            if (mSize > 0 && series.getEpochMillis(row) <= getEpochMillis(mSize - 1)) {
+                continue;
+            }
+            for (int f = 0; f < columns.length; f++) {
+                values[f] = series.getValue(row, columns[f]);
+            }
+            append(series.getEpochMillis(row), values);
+            appended++;
+        }
+        return appended;
+    }
+
+    /**
+     * Appends the values of a single field file after the last row's time. Returns the number of rows appended.
+     */
+    public int append(DoubleSeries series) {
+        check(mFields.size() == 1);
+        ensureCapacity(mSize + countAfterLast(series.size(), series::getEpochMillis));
+        int appended = 0;
+        for (int i = 0; i < series.size(); i++) {
+            if (mSize == 0 || series.getEpochMillis(i) > getEpochMillis(mSize - 1)) {
+                append(series.getEpochMillis(i), series.getValue(i));
+                appended++;
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * The number of the {@code rows} times after the last row's time, which is what an append adds. A refresh that
+     * overlaps the stored rows then only reserves room for its new rows.
+     */
+    private int countAfterLast(int rows, IntToLongFunction epochMillis) {
+        if (mSize == 0) {
+            return rows;
+        }
+        long last = getEpochMillis(mSize - 1);
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (epochMillis.applyAsLong(row) > last) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes all appended rows to the storage device.
+     */
+    public void flush() {
+        if (mWritable) {
+            mBuffer.force();
+        }
+    }
+
+    /**
+     * Rewrites the file with room for at least {@code rows} rows, at least doubling the capacity.
+     */
+    private void ensureCapacity(int rows) {
+        if (rows <= mCapacity) {
+            return;
+        }
+        check(mWritable, "Not opened for appending");
+        write(mPath, mFields, Math.max(rows, mCapacity * 2), this, mSize);
+        close();
+        map();
+    }
+
+    @Override public void close() {
+        try {
+            flush();
+            mChannel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override public String toString() {
+        return "PriceFile{" +
+            "mPath=" + mPath +
+            ", mFields=" + mFields +
+            ", mSize=" + mSize +
+            '}';
+    }
+}
@@ -0,0 +1,113 @@
+package org.lst.trading.lib.store;
+
+import org.lst.trading.lib.series.Alignment;
+import org.lst.trading.lib.series.DoubleSeries;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * A directory of {@link PriceFile}s, one per symbol.
+ */
+public class PriceStore {
+    public static final String EXTENSION = ".prices";
+    /**
+     * Field of the single field files written by {@link #append(String, DoubleSeries)}.
+     */
+    public static final String CLOSE = "close";
+
+    Path mDirectory;
+
+    public PriceStore(Path directory) {
+        mDirectory = directory;
+    }
+
+    public Path getDirectory() {
+        return mDirectory;
+    }
+
+    public Path getPath(String symbol) {
+        return mDirectory.resolve(symbol + EXTENSION);
+    }
+
+    public boolean contains(String symbol) {
+        return Files.exists(getPath(symbol));
+    }
+
+    /**
+     * The symbols with a file in the directory, empty if it does not exist.
+     */
+    public List<String> getSymbols() {
+        if (!Files.isDirectory(mDirectory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(mDirectory)) {
+            return files
+                .map(path -> path.getFileName().toString())
+                .filter(name -> name.endsWith(EXTENSION))
+                .map(name -> name.substring(0, name.length() - EXTENSION.length()))
+                .sorted()
+                .collect(toList());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Deletes the file of the symbol, returns whether it existed.
+     */
+    public boolean delete(String symbol) {
+        try {
+            return Files.deleteIfExists(getPath(symbol));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public PriceFile open(String symbol) {
+        return PriceFile.open(getPath(symbol));
+    }
+
+    /**
+     * Appends the prices after the last stored time to the symbol's {@link #CLOSE} file, which is created if needed.
+     * Returns the number of rows appended.
+     */
+    public int append(String symbol, DoubleSeries prices) {
+        Path path = getPath(symbol);
+        try (PriceFile file = Files.exists(path) ? PriceFile.openForAppend(path) : PriceFile.create(path, Collections.singletonList(CLOSE))) {
+            return file.append(prices.toAscending());
+        }
+    }
+
+    /**
+     * The stored closes of the symbol, named after the symbol.
+     */
+    public DoubleSeries getSeries(String symbol) {
+        try (PriceFile file = open(symbol)) {
+            DoubleSeries series = file.getSeries(CLOSE);
+            series.setName(symbol);
+            return series;
+        }
+    }
+
+    /**
+     * The closes of the symbols for times in {@code [fromEpochMillis, toEpochMillis)}, aligned into one series.
+     */
+    public MultipleDoubleSeries getSeries(List<String> symbols, Alignment alignment, long fromEpochMillis, long toEpochMillis) {
+        DoubleSeries[] series = new DoubleSeries[symbols.size()];
+        for (int i = 0; i < series.length; i++) {
+            try (PriceFile file = open(symbols.get(i))) {
+                series[i] = file.getSeries(CLOSE, fromEpochMillis, toEpochMillis);
+                series[i].setName(symbols.get(i));
+            }
+        }
+        return MultipleDoubleSeries.align(alignment, series);
+    }
+}
@@ -0,0 +1,164 @@
+package org.lst.trading.lib.store;
+
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.lib.series.RowWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Row oriented binary file of a time and doubles per row, written as a stream by {@link Writer} and read back with
+ * {@link #read(Path)}.
+ * <p>
+ * Layout, little endian:
+ * <pre>
+ * int magic, int version, int column count, int data offset
+ * per column: short length, UTF-8 name
+ * padding to the data offset (a multiple of 8)
+ * per row: long epoch millis, double[column count] values
+ * </pre>
+ * The number of rows follows from the file length, a partially written last row is ignored. Unlike {@link PriceFile}
+ * nothing is rewritten while writing, which suits results and logs that are written once.
+ */
+public class RowFile {
+    private static final int MAGIC = 0x4C535452;
+    private static final int VERSION = 1;
+    private static final int NAMES_OFFSET = 16;
+    private static final int BUFFER_SIZE = 64 << 10;
+
+    private RowFile() {
+    }
+
+    public static Writer writer(Path path) {
+        return new Writer(path);
+    }
+
+    public static MultipleDoubleSeries read(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            check(length <= Integer.MAX_VALUE, "File too large " + path);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            check(length >= NAMES_OFFSET && buffer.getInt(0) == MAGIC, "Not a row file " + path);
+            check(buffer.getInt(4) == VERSION, "Unsupported version " + buffer.getInt(4));
+            int columnCount = buffer.getInt(8);
+            int dataOffset = buffer.getInt(12);
+
+            List<String> names = new ArrayList<>(columnCount);
+            int position = NAMES_OFFSET;
+            for (int c = 0; c < columnCount; c++) {
+                byte[] name = new byte[buffer.getShort(position)];
+                ByteBuffer bytes = buffer.duplicate();
+                bytes.position(position + 2);
+                bytes.get(name);
+                names.add(new String(name, StandardCharsets.UTF_8));
+                position += 2 + name.length;
+            }
+
+            int rowLength = 8 * (1 + columnCount);
+            int size = (int) ((length - dataOffset) / rowLength);
+            long[] times = new long[size];
+            double[][] columns = new double[columnCount][size];
+            position = dataOffset;
+            for (int i = 0; i < size; i++) {
+                times[i] = buffer.getLong(position);
+                for (int c = 0; c < columnCount; c++) {
+                    columns[c][i] = buffer.getDouble(position + 8 + 8 * c);
+                }
+                position += rowLength;
+            }
+            return MultipleDoubleSeries.of(names, times, columns);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes rows through a reusable buffer, the header is written by {@link #start(List)}.
+     */
+    public static class Writer implements RowWriter {
+        FileChannel mChannel;
+        ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        int mColumnCount = -1;
+
+        Writer(Path path) {
+            try {
+                mChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override public void start(List<String> names) {
+            check(mColumnCount < 0, "Already started");
+            List<byte[]> bytes = new ArrayList<>();
+            int namesLength = 0;
+            for (String name : names) {
+                byte[] b = name.getBytes(StandardCharsets.UTF_8);
+                check(b.length <= Short.MAX_VALUE);
+                bytes.add(b);
+                namesLength += 2 + b.length;
+            }
+            int dataOffset = (NAMES_OFFSET + namesLength + 7) & ~7;
+            check(dataOffset <= BUFFER_SIZE && 8 * (1 + names.size()) <= BUFFER_SIZE, "Too many columns");
+
+            mBuffer.putInt(MAGIC).putInt(VERSION).putInt(names.size()).putInt(dataOffset);
+            for (byte[] b : bytes) {
+                mBuffer.putShort((short) b.length).put(b);
+            }
+            while (mBuffer.position() < dataOffset) {
+                mBuffer.put((byte) 0);
+            }
+            mColumnCount = names.size();
+        }
+
+        @Override public void row(long epochMillis, double[] values) {
+            if (values.length != mColumnCount) {
+                throw new RuntimeException("Expected " + mColumnCount + " values");
+            }
+            if (mBuffer.remaining() < 8 * (1 + values.length)) {
+                drain();
+            }
+            mBuffer.putLong(epochMillis);
+            for (double value : values) {
+                mBuffer.putDouble(value);
+            }
+        }
+
+        private void drain() {
+            try {
+                mBuffer.flip();
+                while (mBuffer.hasRemaining()) {
+                    mChannel.write(mBuffer);
+                }
+                mBuffer.clear();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override public void flush() {
+            drain();
+        }
+
+        @Override public void close() {
+            try {
+                drain();
+                mChannel.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.stream.Stream;
 
 import static java.lang.String.format;
@@ -18,6 +19,7 @@ import static org.lst.trading.lib.csv.CsvReader.ParseFunction.ofColumn;
 
 public class AlphaVantageHistoricalPriceService implements HistoricalPriceService {
     private final String apikey;
+    private final String baseUrl;
 
     public static final String SEP = ",";
     public static final CsvReader.ParseFunction<Instant> DATE_COLUMN = ofColumn("timestamp").map(s -> LocalDate.from(DateTimeFormatter.ISO_DATE.parse(s)).atStartOfDay(ZoneOffset.UTC.normalized()).toInstant());
@@ -27,17 +29,51 @@ public class AlphaVantageHistoricalPriceService implements HistoricalPriceServic
     public static final CsvReader.ParseFunction<Double> OPEN_COLUMN = doubleColumn("open");
     public static final CsvReader.ParseFunction<Double> VOLUME_COLUMN = doubleColumn("volume");
 
+    public static final String BASE_URL = "https://www.alphavantage.co/query";
+    /**
+     * Request quota of a free API key.
+     */
+    public static final int REQUESTS_PER_MINUTE = 5;
+    // the compact output has the last 100 prices, requests for fewer calendar days than this can use it
+    private static final int COMPACT_DAYS = 120;
+
     private static final Logger log = LoggerFactory.getLogger(AlphaVantageHistoricalPriceService.class);
 
     public AlphaVantageHistoricalPriceService(String apikey) {
+        this(apikey, BASE_URL);
+    }
+
+    /**
+     * @param baseUrl the query endpoint, e.g. of a local stand-in server
+     */
+    public AlphaVantageHistoricalPriceService(String apikey, String baseUrl) {
         this.apikey = apikey;
+        this.baseUrl = baseUrl;
     }
 
     @Override
     public Observable<DoubleSeries> getHistoricalAdjustedPrices(String symbol) {
-        return Http.get(createHistoricalPricesUrl(symbol, apikey))
-                .flatMap(Http.asString())
-                .map(csv -> csvToDoubleSeries(csv, symbol));
+        return getPrices(symbol, "full");
+    }
+
+    @Override
+    public Observable<DoubleSeries> getHistoricalAdjustedPrices(String symbol, Instant from) {
+        boolean compact = from.isAfter(Instant.now().minus(COMPACT_DAYS, ChronoUnit.DAYS));
+        return getPrices(symbol, compact ? "compact" : "full").map(prices -> HistoricalPriceService.since(prices, from));
+    }
+
+    private Observable<DoubleSeries> getPrices(String symbol, String outputSize) {
+        return Http.getString(createHistoricalPricesUrl(baseUrl, symbol, apikey, outputSize))
+                .flatMap(body -> body.startsWith("{") ? Observable.error(jsonError(body)) : Observable.just(csvToDoubleSeries(body, symbol)));
+    }
+
+    /**
+     * Errors come as a JSON message instead of CSV, with status 200. Exceeding the quota is reported as a 429 so that it
+     * can be retried.
+     */
+    private static Http.StatusException jsonError(String body) {
+        String message = body.replaceAll("\\s+", " ");
+        return new Http.StatusException(message.contains("Error Message") ? 400 : 429, message);
     }
 
     private static DoubleSeries csvToDoubleSeries(String csv, String symbol) {
@@ -48,9 +84,9 @@ public class AlphaVantageHistoricalPriceService implements HistoricalPriceServic
         return prices;
     }
 
-    private static String createHistoricalPricesUrl(String symbol, String apikey) {
-        return format("https://www.alphavantage.co/query?function=TIME_SERIES_DAILY&symbol=%s&apikey=%s&datatype=csv&outputsize=full",
-                symbol, apikey);
+    private static String createHistoricalPricesUrl(String baseUrl, String symbol, String apikey, String outputSize) {
+        return format("%s?function=TIME_SERIES_DAILY&symbol=%s&apikey=%s&datatype=csv&outputsize=%s",
+                baseUrl, symbol, apikey, outputSize);
     }
 
 }
@@ -0,0 +1,160 @@
+package org.lst.trading.lib.util;
+
+import org.lst.trading.lib.series.DoubleSeries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Downloads the prices of many symbols concurrently through a {@link HistoricalPriceService}.
+ * <p>
+ * Every request, including retries, first takes a permit of the rate limiter, so the quota of the vendor holds however
+ * many downloads run at once. Transient failures (I/O errors, 429 and 5xx responses) are retried with exponential
+ * backoff and jitter. Symbols which still fail are skipped and reported with the {@link Result} of each download.
+ */
+public class BulkPriceDownloader {
+    private static final Logger log = LoggerFactory.getLogger(BulkPriceDownloader.class);
+
+    public static class Result {
+        Map<String, DoubleSeries> mPrices;
+        Map<String, Throwable> mFailures;
+
+        public Result(Map<String, DoubleSeries> prices, Map<String, Throwable> failures) {
+            mPrices = prices;
+            mFailures = failures;
+        }
+
+        /**
+         * The prices by symbol in the order of the requested symbols, without the failed ones.
+         */
+        public Map<String, DoubleSeries> getPrices() {
+            return mPrices;
+        }
+
+        /**
+         * The symbols which failed after all retries.
+         */
+        public Map<String, Throwable> getFailures() {
+            return mFailures;
+        }
+
+        public boolean isComplete() {
+            return mFailures.isEmpty();
+        }
+    }
+
+    HistoricalPriceService mService;
+    RateLimiter mRateLimiter;
+    int mConcurrency = 8;
+    int mMaxRetries = 4;
+    Duration mInitialBackoff = Duration.ofSeconds(1);
+    Duration mMaxBackoff = Duration.ofMinutes(1);
+
+    /**
+     * @param rateLimiter shared by all downloads, e.g. {@link RateLimiter#perMinute(int)} of the vendor quota
+     */
+    public BulkPriceDownloader(HistoricalPriceService service, RateLimiter rateLimiter) {
+        mService = service;
+        mRateLimiter = rateLimiter;
+    }
+
+    public void setConcurrency(int concurrency) {
+        check(concurrency > 0);
+        mConcurrency = concurrency;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        check(maxRetries >= 0);
+        mMaxRetries = maxRetries;
+    }
+
+    /**
+     * Backoff before the first retry, doubled for every further retry up to {@code max}.
+     */
+    public void setBackoff(Duration initial, Duration max) {
+        check(!initial.isNegative() && initial.compareTo(max) <= 0);
+        mInitialBackoff = initial;
+        mMaxBackoff = max;
+    }
+
+    /**
+     * Emits the prices of each symbol as soon as they are downloaded, in no particular order. Symbols which fail are
+     * put into {@code failures}, on every subscription.
+     */
+    public Observable<DoubleSeries> download(List<String> symbols, Map<String, Throwable> failures) {
+        return Observable.from(symbols).flatMap(symbol ->
+            Observable.defer(() -> Observable.just(fetch(symbol)))
+                .subscribeOn(Schedulers.io())
+                .onErrorResumeNext(e -> {
+                    log.warn("Downloading {} failed", symbol, e);
+                    failures.put(symbol, e);
+                    return Observable.empty();
+                }), mConcurrency);
+    }
+
+    /**
+     * Downloads all symbols, waiting until every one has succeeded or failed.
+     */
+    public Result downloadAll(List<String> symbols) {
+        Map<String, DoubleSeries> downloaded = new ConcurrentHashMap<>();
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        download(symbols, failures).toBlocking().forEach(prices -> downloaded.put(prices.getName(), prices));
+
+        Map<String, DoubleSeries> prices = new LinkedHashMap<>();
+        for (String symbol : symbols) {
+            if (downloaded.containsKey(symbol)) {
+                prices.put(symbol, downloaded.get(symbol));
+            }
+        }
+        return new Result(Collections.unmodifiableMap(prices), Collections.unmodifiableMap(failures));
+    }
+
+    private DoubleSeries fetch(String symbol) {
+        for (int attempt = 0; ; attempt++) {
+            mRateLimiter.acquire();
+            try {
+                DoubleSeries prices = mService.getHistoricalAdjustedPrices(symbol).toBlocking().first();
+                prices.setName(symbol);
+                return prices;
+            } catch (RuntimeException e) {
+                if (attempt >= mMaxRetries || !isTransient(e)) {
+                    throw e;
+                }
+                long backoff = Math.min(mInitialBackoff.toMillis() << Math.min(attempt, 20), mMaxBackoff.toMillis());
+                long sleep = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                log.debug("Downloading {} failed, retry {} in {} ms: {}", symbol, attempt + 1, sleep, e.toString());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(sleep);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(interrupted);
+                }
+            }
+        }
+    }
+
+    private static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof Http.StatusException) {
+                return ((Http.StatusException) t).isTransient();
+            }
+            if (t instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,261 @@
+package org.lst.trading.lib.util;
+
+import org.lst.trading.lib.series.DoubleSeries;
+import org.lst.trading.lib.store.PriceStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * A {@link HistoricalPriceService} keeping the prices of every symbol in a {@link PriceStore} and in memory.
+ * <p>
+ * A symbol is downloaded once and then served from memory or disk. When it was last checked more than the refresh
+ * interval ago only the prices from the last stored day on are requested and the new ones appended; if the price of
+ * that day changed, e.g. after a split, the full history is downloaded again. If a refresh fails the stored prices are
+ * served. When the files exceed the disk budget the least recently used symbols are deleted.
+ */
+public class CachedHistoricalPriceService implements HistoricalPriceService {
+    private static final Logger log = LoggerFactory.getLogger(CachedHistoricalPriceService.class);
+
+    private static class Entry {
+        final DoubleSeries mPrices;
+        final long mChecked;
+
+        Entry(DoubleSeries prices, long checked) {
+            mPrices = prices;
+            mChecked = checked;
+        }
+    }
+
+    HistoricalPriceService mDelegate;
+    PriceStore mStore;
+    Duration mRefreshInterval = Duration.ofHours(12);
+    long mDiskBudget = Long.MAX_VALUE;
+    Clock mClock = Clock.systemUTC();
+
+    Map<String, Entry> mMemory = new ConcurrentHashMap<>();
+    Map<String, Long> mLastUse = new ConcurrentHashMap<>();
+    Map<String, Object> mLocks = new ConcurrentHashMap<>();
+    final Object mEvictionLock = new Object();
+
+    public CachedHistoricalPriceService(HistoricalPriceService delegate, Path directory) {
+        this(delegate, new PriceStore(directory));
+    }
+
+    public CachedHistoricalPriceService(HistoricalPriceService delegate, PriceStore store) {
+        mDelegate = delegate;
+        mStore = store;
+    }
+
+    /**
+     * How long stored prices are served before the latest ones are requested, 12 hours by default.
+     */
+    public void setRefreshInterval(Duration refreshInterval) {
+        check(!refreshInterval.isNegative());
+        mRefreshInterval = refreshInterval;
+    }
+
+    /**
+     * Maximum total size of the stored files in bytes, unlimited by default.
+     */
+    public void setDiskBudget(long bytes) {
+        check(bytes >= 0);
+        mDiskBudget = bytes;
+    }
+
+    public void setClock(Clock clock) {
+        mClock = clock;
+    }
+
+    public PriceStore getStore() {
+        return mStore;
+    }
+
+    @Override public Observable<DoubleSeries> getHistoricalAdjustedPrices(String symbol) {
+        return Observable.defer(() -> Observable.just(get(symbol))).subscribeOn(Schedulers.io());
+    }
+
+    @Override public Observable<DoubleSeries> getHistoricalAdjustedPrices(String symbol, Instant from) {
+        return getHistoricalAdjustedPrices(symbol).map(prices -> HistoricalPriceService.since(prices, from));
+    }
+
+    /**
+     * The prices of the symbol, downloaded or refreshed first if needed. The series is a copy owned by the caller.
+     */
+    public DoubleSeries get(String symbol) {
+        DoubleSeries prices = load(symbol);
+        evict(symbol);
+        return prices.tail(prices.size());
+    }
+
+    /**
+     * Drops the symbol from memory and disk, the next request downloads it again.
+     */
+    public void invalidate(String symbol) {
+        synchronized (lock(symbol)) {
+            mMemory.remove(symbol);
+            mLastUse.remove(symbol);
+            mStore.delete(symbol);
+        }
+    }
+
+    private Object lock(String symbol) {
+        return mLocks.computeIfAbsent(symbol, s -> new Object());
+    }
+
+    private DoubleSeries load(String symbol) {
+        synchronized (lock(symbol)) {
+            long now = mClock.millis();
+            mLastUse.put(symbol, now);
+
+            Entry entry = mMemory.get(symbol);
+            if (entry != null && now - entry.mChecked < mRefreshInterval.toMillis()) {
+                return entry.mPrices;
+            }
+
+            Path path = mStore.getPath(symbol);
+            DoubleSeries prices;
+            if (!mStore.contains(symbol)) {
+                prices = download(symbol);
+            } else if (now - lastModified(path) < mRefreshInterval.toMillis()) {
+                prices = mStore.getSeries(symbol);
+                mMemory.put(symbol, new Entry(prices, lastModified(path)));
+                return prices;
+            } else {
+                prices = refresh(symbol);
+                if (prices == null) {
+                    // refresh failed, try again after the interval but don't mark the file as checked
+                    prices = mStore.getSeries(symbol);
+                    mMemory.put(symbol, new Entry(prices, now));
+                    return prices;
+                }
+            }
+
+            touch(path, now);
+            mMemory.put(symbol, new Entry(prices, now));
+            return prices;
+        }
+    }
+
+    private DoubleSeries download(String symbol) {
+        log.debug("Downloading {}", symbol);
+        DoubleSeries prices = mDelegate.getHistoricalAdjustedPrices(symbol).toBlocking().first();
+        mStore.delete(symbol);
+        mStore.append(symbol, prices);
+        return mStore.getSeries(symbol);
+    }
+
+    /**
+     * Appends the prices after the last stored one, returns null if they could not be requested.
+     */
+    private DoubleSeries refresh(String symbol) {
+        DoubleSeries stored = mStore.getSeries(symbol);
+        if (stored.isEmpty()) {
+            return download(symbol);
+        }
+
+        long last = stored.getEpochMillis(stored.size() - 1);
+        DoubleSeries tail;
+        try {
+            tail = mDelegate.getHistoricalAdjustedPrices(symbol, Instant.ofEpochMilli(last)).toBlocking().first().toAscending();
+        } catch (RuntimeException e) {
+            log.warn("Refreshing {} failed, serving stored prices", symbol, e);
+            return null;
+        }
+
+        if (!tail.isEmpty() && tail.getEpochMillis(0) == last && tail.getValue(0) != stored.getLast()) {
+            log.info("Stored prices of {} changed, downloading the full history", symbol);
+            return download(symbol);
+        }
+        log.debug("Refreshing {} from {}", symbol, Instant.ofEpochMilli(last));
+        return mStore.append(symbol, tail) == 0 ? stored : mStore.getSeries(symbol);
+    }
+
+    /**
+     * Deletes the least recently used symbols other than {@code keep} until the files fit into the disk budget.
+     */
+    private void evict(String keep) {
+        if (mDiskBudget == Long.MAX_VALUE) {
+            return;
+        }
+        synchronized (mEvictionLock) {
+            List<String> symbols = new ArrayList<>(mStore.getSymbols());
+            long total = 0;
+            for (String symbol : symbols) {
+                total += size(mStore.getPath(symbol));
+            }
+            if (total <= mDiskBudget) {
+                return;
+            }
+
+            // other threads keep updating the last use, sort by a snapshot so the order stays consistent
+            Map<String, Long> lastUse = new HashMap<>();
+            for (String symbol : symbols) {
+                lastUse.put(symbol, lastUse(symbol));
+            }
+            symbols.sort(Comparator.comparing(lastUse::get));
+            for (String symbol : symbols) {
+                if (total <= mDiskBudget) {
+                    break;
+                }
+                if (symbol.equals(keep)) {
+                    continue;
+                }
+                synchronized (lock(symbol)) {
+                    long size = size(mStore.getPath(symbol));
+                    log.debug("Evicting {}", symbol);
+                    mMemory.remove(symbol);
+                    mLastUse.remove(symbol);
+                    mStore.delete(symbol);
+                    total -= size;
+                }
+            }
+        }
+    }
+
+    private long lastUse(String symbol) {
+        Long lastUse = mLastUse.get(symbol);
+        return lastUse != null ? lastUse : lastModified(mStore.getPath(symbol));
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void touch(Path path, long epochMillis) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(epochMillis));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -3,6 +3,28 @@ package org.lst.trading.lib.util;
 import org.lst.trading.lib.series.DoubleSeries;
 import rx.Observable;
 
+import java.time.Instant;
+
 public interface HistoricalPriceService {
     Observable<DoubleSeries> getHistoricalAdjustedPrices(String symbol);
+
+    /**
+     * Prices from {@code from} on, e.g. to refresh the tail of a cached history. The default downloads the full
+     * history and drops the older prices, services that can request less should override it.
+     */
+    default Observable<DoubleSeries> getHistoricalAdjustedPrices(String symbol, Instant from) {
+        return getHistoricalAdjustedPrices(symbol).map(prices -> since(prices, from));
+    }
+
+    /**
+     * The prices of an ascending series at or after {@code from}.
+     */
+    static DoubleSeries since(DoubleSeries prices, Instant from) {
+        long fromEpochMillis = from.toEpochMilli();
+        int i = 0;
+        while (i < prices.size() && prices.getEpochMillis(i) < fromEpochMillis) {
+            i++;
+        }
+        return prices.tail(prices.size() - i);
+    }
 }
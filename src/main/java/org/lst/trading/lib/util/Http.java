@@ -1,17 +1,17 @@
 package org.lst.trading.lib.util;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 import rx.Observable.OnSubscribe;
 import rx.Subscriber;
-import rx.functions.Func1;
 import rx.schedulers.Schedulers;
 
 import java.io.IOException;
@@ -20,44 +20,102 @@ import java.util.function.Consumer;
 public class Http {
     private static final Logger log = LoggerFactory.getLogger(Http.class);
 
+    private static final int MAX_CONNECTIONS = 32;
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 16;
+    private static final int TIMEOUT_MILLIS = 30000;
+
     private static CloseableHttpClient client;
 
-    public synchronized static HttpClient getDefaultHttpClient() {
+    /**
+     * A response with a status outside of 2xx.
+     */
+    public static class StatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final int mStatus;
+
+        public StatusException(int status, String message) {
+            super(status + " " + message);
+            mStatus = status;
+        }
+
+        public int getStatus() {
+            return mStatus;
+        }
+
+        /**
+         * Whether the request may succeed when repeated later: too many requests or a server error.
+         */
+        public boolean isTransient() {
+            return mStatus == 429 || mStatus >= 500;
+        }
+    }
+
+    /**
+     * A client shared by all requests, keeping up to {@value #MAX_CONNECTIONS_PER_ROUTE} connections per host alive
+     * for reuse.
+     */
+    public synchronized static CloseableHttpClient getDefaultHttpClient() {
         if (client == null) {
-            client = HttpClients.createDefault();
+            PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(MAX_CONNECTIONS);
+            connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+            RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(TIMEOUT_MILLIS)
+                .setConnectionRequestTimeout(TIMEOUT_MILLIS)
+                .setSocketTimeout(TIMEOUT_MILLIS)
+                .build();
+            client = HttpClients.custom().setConnectionManager(connectionManager).setDefaultRequestConfig(config).build();
         }
         return client;
     }
 
-    public static Observable<HttpResponse> get(String url, Consumer<HttpGet> configureRequest) {
+    /**
+     * The body of a successful response, fails with a {@link StatusException} for a status outside of 2xx. The
+     * response is read and closed before it is emitted, so its connection returns to the pool even if the subscriber
+     * unsubscribed in the meantime.
+     */
+    public static Observable<String> getString(String url, Consumer<HttpGet> configureRequest) {
         HttpGet request = new HttpGet(url);
         configureRequest.accept(request);
 
-        return Observable.create(new OnSubscribe<HttpResponse>() {
-            @Override public void call(Subscriber<? super HttpResponse> s) {
+        return Observable.create(new OnSubscribe<String>() {
+            @Override public void call(Subscriber<? super String> s) {
+                if (s.isUnsubscribed()) {
+                    return;
+                }
+                String body;
                 try {
                     log.debug("GET {}", url);
-                    s.onNext(getDefaultHttpClient().execute(request));
-                    s.onCompleted();
+                    body = execute(request);
                 } catch (IOException e) {
-                    s.onError(e);
+                    if (!s.isUnsubscribed()) {
+                        s.onError(e);
+                    }
+                    return;
+                }
+                if (!s.isUnsubscribed()) {
+                    s.onNext(body);
+                    s.onCompleted();
                 }
             }
         }).subscribeOn(Schedulers.io());
     }
 
-    public static Observable<HttpResponse> get(String url) {
-        return get(url, x -> {
+    public static Observable<String> getString(String url) {
+        return getString(url, x -> {
         });
     }
 
-    public static Func1<? super HttpResponse, ? extends Observable<String>> asString() {
-        return t -> {
-            try {
-                return Observable.just(EntityUtils.toString(t.getEntity()));
-            } catch (IOException e) {
-                return Observable.error(e);
+    private static String execute(HttpGet request) throws IOException {
+        try (CloseableHttpResponse response = getDefaultHttpClient().execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status < 200 || status >= 300) {
+                // consumed so the connection can be reused
+                EntityUtils.consumeQuietly(response.getEntity());
+                throw new StatusException(status, response.getStatusLine().getReasonPhrase());
             }
-        };
+            return EntityUtils.toString(response.getEntity());
+        }
     }
 }
@@ -0,0 +1,79 @@
+package org.lst.trading.lib.util;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Token bucket shared by threads: up to {@code burst} permits are available at once and they are refilled at a fixed
+ * rate. Threads waiting for a permit are served in the order they asked.
+ */
+public class RateLimiter {
+    final double mNanosPerPermit;
+    final double mBurst;
+    // time at which the bucket is full again, permits are taken by moving it forward
+    long mFullAt;
+
+    public RateLimiter(double permitsPerSecond, int burst) {
+        check(permitsPerSecond > 0);
+        check(burst > 0);
+        mNanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        mBurst = burst;
+        mFullAt = System.nanoTime();
+    }
+
+    /**
+     * A quota of {@code permits} in any 60 seconds, as vendors count it. The permits are spread evenly, one every
+     * {@code 60 / permits} seconds, so no 60 seconds ever hold more than {@code permits} of them. A burst of
+     * {@code permits} would not: a full bucket refilling during the next minute gives almost twice as many.
+     */
+    public static RateLimiter perMinute(int permits) {
+        return new RateLimiter(permits / 60., 1);
+    }
+
+    /**
+     * Blocks until a permit is available and takes it.
+     */
+    public void acquire() {
+        long wait = reserve();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Takes a permit if one is available right now.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (waitNanos(now) > 0) {
+            return false;
+        }
+        take(now);
+        return true;
+    }
+
+    /**
+     * Takes the next permit, returns the nanoseconds until it may be used.
+     */
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        long wait = waitNanos(now);
+        take(now);
+        return wait;
+    }
+
+    private long waitNanos(long now) {
+        // a permit is available once the bucket is less than one permit short of full
+        return mFullAt - (long) ((mBurst - 1) * mNanosPerPermit) - now;
+    }
+
+    private void take(long now) {
+        mFullAt = Math.max(mFullAt, now) + (long) mNanosPerPermit;
+    }
+}
@@ -1,6 +1,7 @@
 package org.lst.trading.lib.util;
 
 
+import org.lst.trading.lib.csv.FastCsvWriter;
 import org.lst.trading.lib.series.MultipleDoubleSeries;
 
 import java.io.File;
@@ -8,29 +9,38 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-
-import static java.util.stream.Collectors.joining;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class Util {
 
+    /**
+     * Streams the series to a new temporary CSV file.
+     */
     public static Path writeCsv(MultipleDoubleSeries series) {
-        String data =
-            "date," + series.getNames().stream().collect(joining(",")) + "\n" +
-                series.stream().map(
-                    e -> e.getInstant() + "," + e.getItem().stream().map(Object::toString).collect(joining(","))
-                ).collect(joining("\n"));
-
-        return writeStringToTempFile(data);
+        Path path = createTempFile();
+        try (FastCsvWriter writer = new FastCsvWriter(path)) {
+            writer.write(series);
+        }
+        return path;
     }
 
-    public static Path writeStringToTempFile(String content) {
+    public static Path createTempFile() {
         try {
-            return writeString(content, Paths.get(File.createTempFile("out-", ".csv").getAbsolutePath()));
+            return Paths.get(File.createTempFile("out-", ".csv").getAbsolutePath());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    public static Path writeStringToTempFile(String content) {
+        return writeString(content, createTempFile());
+    }
+
 
     public static Path writeString(String content, Path path) {
         try {
@@ -41,6 +51,24 @@ public class Util {
         }
     }
 
+    /**
+     * Runs all tasks on the pool and returns their results in task order, failures are rethrown as RuntimeException.
+     */
+    public static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        }
+        return results;
+    }
+
     public static void check(boolean condition) {
         if (!condition) {
             throw new RuntimeException();
@@ -0,0 +1,71 @@
+package org.lst.trading.lib.util.rolling;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Exponentially weighted moving mean and variance, each new value has weight {@code alpha}. Starts at the first value.
+ */
+public class Ewma {
+    double mAlpha;
+    double mMean;
+    double mVariance;
+    long mCount;
+
+    public Ewma(double alpha) {
+        check(alpha > 0 && alpha <= 1);
+        mAlpha = alpha;
+    }
+
+    /**
+     * Same center of mass as a simple moving average of {@code span} values, alpha = 2 / (span + 1).
+     */
+    public static Ewma ofSpan(double span) {
+        check(span >= 1);
+        return new Ewma(2 / (span + 1));
+    }
+
+    /**
+     * The weight of a value halves after {@code halfLife} values.
+     */
+    public static Ewma ofHalfLife(double halfLife) {
+        check(halfLife > 0);
+        return new Ewma(1 - Math.pow(0.5, 1 / halfLife));
+    }
+
+    public void add(double value) {
+        if (mCount++ == 0) {
+            mMean = value;
+            mVariance = 0;
+        } else {
+            double delta = value - mMean;
+            mMean += mAlpha * delta;
+            mVariance = (1 - mAlpha) * (mVariance + mAlpha * delta * delta);
+        }
+    }
+
+    public double getMean() {
+        return mCount == 0 ? Double.NaN : mMean;
+    }
+
+    public double getVariance() {
+        return mCount == 0 ? Double.NaN : mVariance;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getAlpha() {
+        return mAlpha;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public void clear() {
+        mCount = 0;
+        mMean = 0;
+        mVariance = 0;
+    }
+}
@@ -0,0 +1,62 @@
+package org.lst.trading.lib.util.rolling;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Fixed size buffer of the last {@code capacity} values, the oldest value is overwritten once full.
+ */
+class RingBuffer {
+    double[] mValues;
+    int mNext;
+    int mSize;
+
+    RingBuffer(int capacity) {
+        check(capacity > 0);
+        mValues = new double[capacity];
+    }
+
+    /**
+     * Adds the value and returns the value it replaced, only meaningful if the buffer was {@link #isFull() full}.
+     */
+    double add(double value) {
+        double oldest = mValues[mNext];
+        mValues[mNext] = value;
+        mNext = mNext + 1 == mValues.length ? 0 : mNext + 1;
+        if (mSize < mValues.length) {
+            mSize++;
+        }
+        return oldest;
+    }
+
+    /**
+     * The value added {@code age} values ago, 0 is the newest.
+     */
+    double get(int age) {
+        int index = mNext - 1 - age;
+        return mValues[index < 0 ? index + mValues.length : index];
+    }
+
+    /**
+     * Whether the buffer is full and the next value overwrites the first slot, i.e. once every {@code capacity} values.
+     */
+    boolean isWrapped() {
+        return mNext == 0 && isFull();
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    int capacity() {
+        return mValues.length;
+    }
+
+    boolean isFull() {
+        return mSize == mValues.length;
+    }
+
+    void clear() {
+        mNext = 0;
+        mSize = 0;
+    }
+}
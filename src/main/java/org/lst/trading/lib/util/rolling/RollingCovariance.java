@@ -0,0 +1,161 @@
+package org.lst.trading.lib.util.rolling;
+
+/**
+ * Covariance, correlation and regression beta of the last {@code window} pairs (x, y), updated in O(1) from the sums
+ * and sums of products of the window. Like {@link RollingVariance} the sums are taken of the values shifted by
+ * references close to them and are recomputed around the means of the window once per {@code window} pairs, and when
+ * a pair with a NaN or infinite value leaves the window.
+ */
+public class RollingCovariance {
+    RingBuffer mXs;
+    RingBuffer mYs;
+    // the pairs are summed as x - mReferenceX, y - mReferenceY
+    double mReferenceX;
+    double mReferenceY;
+    double mSumX;
+    double mSumY;
+    double mSumXx;
+    double mSumYy;
+    double mSumXy;
+
+    public RollingCovariance(int window) {
+        mXs = new RingBuffer(window);
+        mYs = new RingBuffer(window);
+    }
+
+    public void add(double x, double y) {
+        boolean full = mXs.isFull();
+        if (mXs.size() == 0) {
+            mReferenceX = x;
+            mReferenceY = y;
+        }
+        double oldX = mXs.add(x);
+        double oldY = mYs.add(y);
+        if (mXs.isWrapped() || full && !(Double.isFinite(oldX) && Double.isFinite(oldY))) {
+            recompute();
+            return;
+        }
+
+        double dx = x - mReferenceX;
+        double dy = y - mReferenceY;
+        mSumX += dx;
+        mSumY += dy;
+        mSumXx += dx * dx;
+        mSumYy += dy * dy;
+        mSumXy += dx * dy;
+        if (full) {
+            double oldDx = oldX - mReferenceX;
+            double oldDy = oldY - mReferenceY;
+            mSumX -= oldDx;
+            mSumY -= oldDy;
+            mSumXx -= oldDx * oldDx;
+            mSumYy -= oldDy * oldDy;
+            mSumXy -= oldDx * oldDy;
+        }
+    }
+
+    /**
+     * Re-bases the sums on the means of the window, called when the buffers are full.
+     */
+    private void recompute() {
+        double[] xs = mXs.mValues;
+        double[] ys = mYs.mValues;
+        int n = mXs.size();
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = 0; i < n; i++) {
+            sumX += xs[i];
+            sumY += ys[i];
+        }
+        double referenceX = sumX / n;
+        double referenceY = sumY / n;
+
+        double dxs = 0;
+        double dys = 0;
+        double xx = 0;
+        double yy = 0;
+        double xy = 0;
+        for (int i = 0; i < n; i++) {
+            double dx = xs[i] - referenceX;
+            double dy = ys[i] - referenceY;
+            dxs += dx;
+            dys += dy;
+            xx += dx * dx;
+            yy += dy * dy;
+            xy += dx * dy;
+        }
+        mReferenceX = referenceX;
+        mReferenceY = referenceY;
+        mSumX = dxs;
+        mSumY = dys;
+        mSumXx = xx;
+        mSumYy = yy;
+        mSumXy = xy;
+    }
+
+    /**
+     * Bias corrected covariance, like {@code org.apache.commons.math3.stat.correlation.Covariance}.
+     */
+    public double getCovariance() {
+        int n = mXs.size();
+        return n < 2 ? Double.NaN : (mSumXy - mSumX * mSumY / n) / (n - 1);
+    }
+
+    public double getVarianceX() {
+        int n = mXs.size();
+        return n < 2 ? Double.NaN : Math.max(mSumXx - mSumX * mSumX / n, 0) / (n - 1);
+    }
+
+    public double getVarianceY() {
+        int n = mYs.size();
+        return n < 2 ? Double.NaN : Math.max(mSumYy - mSumY * mSumY / n, 0) / (n - 1);
+    }
+
+    public double getCorrelation() {
+        return getCovariance() / Math.sqrt(getVarianceX() * getVarianceY());
+    }
+
+    /**
+     * Slope of the least squares regression of y on x, cov(x, y) / var(x).
+     */
+    public double getBeta() {
+        return getCovariance() / getVarianceX();
+    }
+
+    /**
+     * Intercept of the least squares regression of y on x.
+     */
+    public double getAlpha() {
+        return getMeanY() - getBeta() * getMeanX();
+    }
+
+    public double getMeanX() {
+        int n = mXs.size();
+        return n == 0 ? Double.NaN : mReferenceX + mSumX / n;
+    }
+
+    public double getMeanY() {
+        int n = mYs.size();
+        return n == 0 ? Double.NaN : mReferenceY + mSumY / n;
+    }
+
+    public int size() {
+        return mXs.size();
+    }
+
+    public int getWindow() {
+        return mXs.capacity();
+    }
+
+    public boolean isFull() {
+        return mXs.isFull();
+    }
+
+    public void clear() {
+        mXs.clear();
+        mYs.clear();
+        mReferenceX = mReferenceY = 0;
+        mSumX = mSumY = 0;
+        mSumXx = mSumYy = mSumXy = 0;
+    }
+}
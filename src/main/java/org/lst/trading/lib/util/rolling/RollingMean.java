@@ -0,0 +1,53 @@
+package org.lst.trading.lib.util.rolling;
+
+/**
+ * Mean of the last {@code window} values, updated in O(1) from a running sum. The sum is recomputed from the window
+ * once per {@code window} values so rounding errors do not accumulate, and when a NaN or infinite value leaves the
+ * window.
+ */
+public class RollingMean {
+    RingBuffer mValues;
+    double mSum;
+
+    public RollingMean(int window) {
+        mValues = new RingBuffer(window);
+    }
+
+    public void add(double value) {
+        boolean full = mValues.isFull();
+        double oldest = mValues.add(value);
+        mSum += full ? value - oldest : value;
+        if (mValues.isWrapped() || full && !Double.isFinite(oldest)) {
+            recompute();
+        }
+    }
+
+    private void recompute() {
+        double sum = 0;
+        for (double value : mValues.mValues) {
+            sum += value;
+        }
+        mSum = sum;
+    }
+
+    public double getMean() {
+        return mValues.size() == 0 ? Double.NaN : mSum / mValues.size();
+    }
+
+    public int size() {
+        return mValues.size();
+    }
+
+    public int getWindow() {
+        return mValues.capacity();
+    }
+
+    public boolean isFull() {
+        return mValues.isFull();
+    }
+
+    public void clear() {
+        mValues.clear();
+        mSum = 0;
+    }
+}
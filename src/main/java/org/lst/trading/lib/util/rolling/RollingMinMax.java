@@ -0,0 +1,83 @@
+package org.lst.trading.lib.util.rolling;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Minimum and maximum of the last {@code window} values, amortized O(1) with one monotonic deque each.
+ * <p>
+ * The deques are ring buffers of the tick numbers of the candidates, a value is dropped once a newer value is at least
+ * as extreme or once it leaves the window.
+ */
+public class RollingMinMax {
+    int mWindow;
+    long mTick;
+    double[] mValues;
+
+    long[] mMinTicks;
+    int mMinHead, mMinSize;
+    long[] mMaxTicks;
+    int mMaxHead, mMaxSize;
+
+    public RollingMinMax(int window) {
+        check(window > 0);
+        mWindow = window;
+        mValues = new double[window];
+        mMinTicks = new long[window];
+        mMaxTicks = new long[window];
+    }
+
+    public void add(double value) {
+        long tick = mTick++;
+        mValues[(int) (tick % mWindow)] = value;
+
+        // expire the front candidates which left the window
+        if (mMinSize > 0 && mMinTicks[mMinHead] <= tick - mWindow) {
+            mMinHead = (mMinHead + 1) % mWindow;
+            mMinSize--;
+        }
+        if (mMaxSize > 0 && mMaxTicks[mMaxHead] <= tick - mWindow) {
+            mMaxHead = (mMaxHead + 1) % mWindow;
+            mMaxSize--;
+        }
+
+        // drop the back candidates the new value dominates
+        while (mMinSize > 0 && valueAt(mMinTicks[(mMinHead + mMinSize - 1) % mWindow]) >= value) {
+            mMinSize--;
+        }
+        mMinTicks[(mMinHead + mMinSize++) % mWindow] = tick;
+        while (mMaxSize > 0 && valueAt(mMaxTicks[(mMaxHead + mMaxSize - 1) % mWindow]) <= value) {
+            mMaxSize--;
+        }
+        mMaxTicks[(mMaxHead + mMaxSize++) % mWindow] = tick;
+    }
+
+    private double valueAt(long tick) {
+        return mValues[(int) (tick % mWindow)];
+    }
+
+    public double getMin() {
+        return mMinSize == 0 ? Double.NaN : valueAt(mMinTicks[mMinHead]);
+    }
+
+    public double getMax() {
+        return mMaxSize == 0 ? Double.NaN : valueAt(mMaxTicks[mMaxHead]);
+    }
+
+    public int size() {
+        return (int) Math.min(mTick, mWindow);
+    }
+
+    public int getWindow() {
+        return mWindow;
+    }
+
+    public boolean isFull() {
+        return mTick >= mWindow;
+    }
+
+    public void clear() {
+        mTick = 0;
+        mMinHead = mMinSize = 0;
+        mMaxHead = mMaxSize = 0;
+    }
+}
@@ -0,0 +1,109 @@
+package org.lst.trading.lib.util.rolling;
+
+/**
+ * Mean and sample variance of the last {@code window} values, updated in O(1) from the sum and the sum of squares of
+ * the window.
+ * <p>
+ * Both sums are taken of the values shifted by a reference close to them, so they stay small even when the values are
+ * large relative to their spread and the variance does not cancel. Once per {@code window} values the sums are
+ * recomputed from the window around its mean, which re-bases the reference and keeps rounding errors from
+ * accumulating.
+ * <p>
+ * Like {@code StatUtils}, the mean and variance are not finite while the window holds a NaN or infinite value. The
+ * sums are recomputed as soon as such a value leaves the window.
+ */
+public class RollingVariance {
+    RingBuffer mValues;
+    // the values are summed as value - mReference
+    double mReference;
+    double mSum;
+    double mSumOfSquares;
+
+    public RollingVariance(int window) {
+        mValues = new RingBuffer(window);
+    }
+
+    public void add(double value) {
+        boolean full = mValues.isFull();
+        if (mValues.size() == 0) {
+            mReference = value;
+        }
+        double oldest = mValues.add(value);
+        if (mValues.isWrapped() || full && !Double.isFinite(oldest)) {
+            recompute();
+            return;
+        }
+
+        double delta = value - mReference;
+        mSum += delta;
+        mSumOfSquares += delta * delta;
+        if (full) {
+            double oldDelta = oldest - mReference;
+            mSum -= oldDelta;
+            mSumOfSquares -= oldDelta * oldDelta;
+        }
+    }
+
+    /**
+     * Re-bases the sums on the mean of the window, called when the buffer is full.
+     */
+    private void recompute() {
+        double[] values = mValues.mValues;
+        int n = mValues.size();
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += values[i];
+        }
+        double reference = sum / n;
+
+        double deltas = 0;
+        double squares = 0;
+        for (int i = 0; i < n; i++) {
+            double delta = values[i] - reference;
+            deltas += delta;
+            squares += delta * delta;
+        }
+        mReference = reference;
+        mSum = deltas;
+        mSumOfSquares = squares;
+    }
+
+    public double getMean() {
+        int n = mValues.size();
+        return n == 0 ? Double.NaN : mReference + mSum / n;
+    }
+
+    /**
+     * Bias corrected variance, like {@code StatUtils.variance}: 0 for a single value, NaN for none.
+     */
+    public double getVariance() {
+        int n = mValues.size();
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return n == 1 ? 0 : Math.max(mSumOfSquares - mSum * mSum / n, 0) / (n - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public int size() {
+        return mValues.size();
+    }
+
+    public int getWindow() {
+        return mValues.capacity();
+    }
+
+    public boolean isFull() {
+        return mValues.isFull();
+    }
+
+    public void clear() {
+        mValues.clear();
+        mReference = 0;
+        mSum = 0;
+        mSumOfSquares = 0;
+    }
+}
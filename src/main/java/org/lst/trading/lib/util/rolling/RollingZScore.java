@@ -0,0 +1,52 @@
+package org.lst.trading.lib.util.rolling;
+
+/**
+ * Standard score of the newest value against the mean and standard deviation of the last {@code window} values,
+ * including the newest.
+ */
+public class RollingZScore {
+    RollingVariance mVariance;
+    double mLast = Double.NaN;
+
+    public RollingZScore(int window) {
+        mVariance = new RollingVariance(window);
+    }
+
+    /**
+     * Adds the value and returns its z-score.
+     */
+    public double add(double value) {
+        mVariance.add(value);
+        mLast = value;
+        return getZScore();
+    }
+
+    /**
+     * NaN if there is no value yet or all values in the window are equal.
+     */
+    public double getZScore() {
+        double sd = mVariance.getStandardDeviation();
+        return sd > 0 ? (mLast - mVariance.getMean()) / sd : Double.NaN;
+    }
+
+    public double getMean() {
+        return mVariance.getMean();
+    }
+
+    public double getStandardDeviation() {
+        return mVariance.getStandardDeviation();
+    }
+
+    public int size() {
+        return mVariance.size();
+    }
+
+    public boolean isFull() {
+        return mVariance.isFull();
+    }
+
+    public void clear() {
+        mVariance.clear();
+        mLast = Double.NaN;
+    }
+}
@@ -1,17 +1,25 @@
 package org.lst.trading.main;
 
 import org.lst.trading.lib.backtest.Backtest;
-import org.lst.trading.lib.model.ClosedOrder;
-import org.lst.trading.lib.model.TradingStrategy;
+import org.lst.trading.lib.csv.FastCsvWriter;
+import org.lst.trading.lib.series.DiagnosticsRecorder;
+import org.lst.trading.lib.series.DoubleSeries;
 import org.lst.trading.lib.series.MultipleDoubleSeries;
 import org.lst.trading.lib.util.AlphaVantageHistoricalPriceService;
+import org.lst.trading.lib.util.BulkPriceDownloader;
 import org.lst.trading.lib.util.HistoricalPriceService;
+import org.lst.trading.lib.util.RateLimiter;
 import org.lst.trading.lib.util.Util;
 import org.lst.trading.main.strategy.kalman.CointegrationTradingStrategy;
 
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.Map;
 
 import static java.lang.String.format;
+import static org.lst.trading.lib.util.Util.check;
 
 public class BacktestMain {
     static String alphaVantantageApiKey = ""; // fill API key in here or pass via system property: -Dalphavantantage.apikey=APIKEY
@@ -23,11 +31,17 @@ public class BacktestMain {
         String y = "GDX";
 
         // initialize the trading strategy
-        TradingStrategy strategy = new CointegrationTradingStrategy(x, y);
+        CointegrationTradingStrategy strategy = new CointegrationTradingStrategy(x, y);
+        Path diagnostics = Util.createTempFile();
+        strategy.setDiagnostics(DiagnosticsRecorder.streaming(new FastCsvWriter(diagnostics)));
 
         // download historical prices
         HistoricalPriceService finance = new AlphaVantageHistoricalPriceService(alphaVantantageApiKey);
-        MultipleDoubleSeries priceSeries = new MultipleDoubleSeries(finance.getHistoricalAdjustedPrices(x).toBlocking().first(), finance.getHistoricalAdjustedPrices(y).toBlocking().first());
+        BulkPriceDownloader downloader = new BulkPriceDownloader(finance, RateLimiter.perMinute(AlphaVantageHistoricalPriceService.REQUESTS_PER_MINUTE));
+        BulkPriceDownloader.Result download = downloader.downloadAll(Arrays.asList(x, y));
+        check(download.isComplete(), "Download failed: " + download.getFailures());
+        Map<String, DoubleSeries> prices = download.getPrices();
+        MultipleDoubleSeries priceSeries = new MultipleDoubleSeries(prices.get(x), prices.get(y));
 
         // initialize the backtesting engine
         int deposit = 15000;
@@ -38,12 +52,9 @@ public class BacktestMain {
         Backtest.Result result = backtest.run(strategy);
 
         // show results
-        StringBuilder orders = new StringBuilder();
-        orders.append("id,amount,side,instrument,from,to,open,close,pl\n");
-        for (ClosedOrder order : result.getOrders()) {
-            orders.append(format(Locale.US, "%d,%d,%s,%s,%s,%s,%f,%f,%f\n", order.getId(), Math.abs(order.getAmount()), order.isLong() ? "Buy" : "Sell", order.getInstrument(), order.getOpenInstant(), order.getCloseInstant(), order.getOpenPrice(), order.getClosePrice(), order.getPl()));
-        }
-        System.out.print(orders);
+        FastCsvWriter console = new FastCsvWriter(Channels.newChannel(System.out));
+        result.writeOrders(console);
+        console.flush();
 
         int days = priceSeries.size();
 
@@ -54,8 +65,17 @@ public class BacktestMain {
         System.out.println(format(Locale.US, "Commissions = %f", result.getCommissions()));
         System.out.println(format(Locale.US, "P/L = %.2f, Final value = %.2f, Result = %.2f%%, Annualized = %.2f%%, Sharpe (rf=0%%) = %.2f", result.getPl(), result.getFinalValue(), result.getReturn() * 100, result.getReturn() / (days / 251.) * 100, result.getSharpe()));
 
-        System.out.println("Orders: " + Util.writeStringToTempFile(orders.toString()));
-        System.out.println("Statistics: " + Util.writeCsv(new MultipleDoubleSeries(result.getPlHistory(), result.getMarginHistory())));
+        Path orders = Util.createTempFile();
+        try (FastCsvWriter writer = new FastCsvWriter(orders)) {
+            result.writeOrders(writer);
+        }
+        System.out.println("Orders: " + orders);
+        Path statistics = Util.createTempFile();
+        try (FastCsvWriter writer = new FastCsvWriter(statistics)) {
+            result.writeHistory(writer);
+        }
+        System.out.println("Statistics: " + statistics);
+        System.out.println("Kalman filter statistics: " + diagnostics);
     }
 
     private static void findApiKey() {
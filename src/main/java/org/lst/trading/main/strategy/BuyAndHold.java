@@ -7,18 +7,28 @@ import org.lst.trading.lib.model.TradingStrategy;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Buys one unit of every instrument on the first tick it has a price.
+ */
 public class BuyAndHold implements TradingStrategy {
-    Map<String, Order> mOrders;
+    Map<String, Order> mOrders = new HashMap<>();
     TradingContext mContext;
 
     @Override public void onStart(TradingContext context) {
         mContext = context;
     }
 
+    @Override public int getLookback() {
+        return 0;
+    }
+
     @Override public void onTick() {
-        if (mOrders == null) {
-            mOrders = new HashMap<>();
-            mContext.getInstruments().stream().forEach(instrument -> mOrders.put(instrument, mContext.order(instrument, true, 1)));
+        if (mOrders.size() < mContext.getInstruments().size()) {
+            for (String instrument : mContext.getInstruments()) {
+                if (!mOrders.containsKey(instrument) && Double.isFinite(mContext.getLastPrice(instrument))) {
+                    mOrders.put(instrument, mContext.order(instrument, true, 1));
+                }
+            }
         }
     }
 }
@@ -37,6 +37,20 @@ public class MultipleTradingStrategy implements TradingStrategy {
         mStrategies.forEach(TradingStrategy::onEnd);
     }
 
+    /**
+     * The largest lookback of the strategies, the whole history if any of them needs it.
+     */
+    @Override public int getLookback() {
+        int lookback = 0;
+        for (TradingStrategy strategy : mStrategies) {
+            if (strategy.getLookback() == FULL_HISTORY) {
+                return FULL_HISTORY;
+            }
+            lookback = Math.max(lookback, strategy.getLookback());
+        }
+        return lookback;
+    }
+
     @Override public String toString() {
         return "MultipleStrategy{" +
             "mStrategies=" + mStrategies +
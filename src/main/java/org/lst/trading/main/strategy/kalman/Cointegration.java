@@ -1,48 +1,73 @@
 package org.lst.trading.main.strategy.kalman;
 
-import org.la4j.Matrix;
-
+/**
+ * Kalman filter estimating y = alpha + beta * x with a random walk for alpha and beta.
+ * <p>
+ * This is the general {@link KalmanFilter} specialised to 2 states, identity update matrix, update covariance
+ * delta / (1 - delta) * I and a single observation with extraction matrix [1, x], written out on primitive fields so a
+ * step does not allocate. The operations are done in the same order as the matrix version, so the results are identical.
+ */
 public class Cointegration {
     double mDelta;
     double mR;
-    KalmanFilter mFilter;
-    int mNobs = 2;
+    double mQ;
+
+    // state and its covariance
+    double mAlpha;
+    double mBeta;
+    double mP00, mP01, mP10, mP11;
+
+    // innovation and its covariance of the last step
+    double mError;
+    double mVariance;
 
     public Cointegration(double delta, double r) {
         mDelta = delta;
         mR = r;
+        mQ = delta / (1 - delta);
+    }
 
-        Matrix vw = Matrix.identity(mNobs).multiply(mDelta / (1 - delta));
-        Matrix a = Matrix.identity(mNobs);
+    public void step(double x, double y) {
+        // predict, the state stays the same and the update covariance is added
+        double p00 = mP00 + mQ;
+        double p01 = mP01;
+        double p10 = mP10;
+        double p11 = mP11 + mQ;
 
-        Matrix x = Matrix.zero(mNobs, 1);
+        // observe
+        mError = y - (mAlpha + x * mBeta);
+        mVariance = (p00 + x * p10) + (p01 + x * p11) * x + mR;
 
-        mFilter = new KalmanFilter(mNobs, 1);
-        mFilter.setUpdateMatrix(a);
-        mFilter.setState(x);
-        mFilter.setStateCovariance(Matrix.zero(mNobs, mNobs));
-        mFilter.setUpdateCovariance(vw);
-        mFilter.setMeasurementCovariance(Matrix.constant(1, 1, r));
-    }
+        // update
+        double inverse = 1 / mVariance;
+        double k0 = (p00 + p01 * x) * inverse;
+        double k1 = (p10 + p11 * x) * inverse;
+        mAlpha = mAlpha + k0 * mError;
+        mBeta = mBeta + k1 * mError;
 
-    public void step(double x, double y) {
-        mFilter.setExtractionMatrix(Matrix.from1DArray(1, 2, new double[]{1, x}));
-        mFilter.step(Matrix.constant(1, 1, y));
+        double m00 = 1 - k0;
+        double m01 = -(k0 * x);
+        double m10 = -k1;
+        double m11 = 1 - k1 * x;
+        mP00 = m00 * p00 + m01 * p10;
+        mP01 = m00 * p01 + m01 * p11;
+        mP10 = m10 * p00 + m11 * p10;
+        mP11 = m10 * p01 + m11 * p11;
     }
 
     public double getAlpha() {
-        return mFilter.getState().getRow(0).get(0);
+        return mAlpha;
     }
 
     public double getBeta() {
-        return mFilter.getState().getRow(1).get(0);
+        return mBeta;
     }
 
     public double getVariance() {
-        return mFilter.getInnovationCovariance().get(0, 0);
+        return mVariance;
     }
 
     public double getError() {
-        return mFilter.getInnovation().get(0, 0);
+        return mError;
     }
 }
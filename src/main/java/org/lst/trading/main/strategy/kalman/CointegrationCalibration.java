@@ -0,0 +1,225 @@
+package org.lst.trading.main.strategy.kalman;
+
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.lib.util.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * Maximum likelihood estimation of the {@link Cointegration} parameters delta and r of a pair.
+ * <p>
+ * The log-likelihood of a parameter pair is the sum of the Gaussian log densities of the filter innovations,
+ * -0.5 * (log(2 pi S) + e^2 / S) with error e and variance S. Candidates are taken from a log-spaced grid, all candidates
+ * of a grid run as one {@link KalmanFilterBank} over the pair's prices, then the grid is refined around the best
+ * candidate. Several pairs are calibrated in parallel.
+ */
+public class CointegrationCalibration {
+    private static final int REFINEMENT_POINTS = 4;
+
+    public static class Result {
+        double mDelta;
+        double mR;
+        double mLogLikelihood;
+        int mObservations;
+
+        public Result(double delta, double r, double logLikelihood, int observations) {
+            mDelta = delta;
+            mR = r;
+            mLogLikelihood = logLikelihood;
+            mObservations = observations;
+        }
+
+        public double getDelta() {
+            return mDelta;
+        }
+
+        public double getR() {
+            return mR;
+        }
+
+        public double getLogLikelihood() {
+            return mLogLikelihood;
+        }
+
+        /**
+         * Number of innovations summed into the likelihood, after the burn in and without rows with a missing price.
+         */
+        public int getObservations() {
+            return mObservations;
+        }
+
+        @Override public String toString() {
+            return "Result{" +
+                "mDelta=" + mDelta +
+                ", mR=" + mR +
+                ", mLogLikelihood=" + mLogLikelihood +
+                ", mObservations=" + mObservations +
+                '}';
+        }
+    }
+
+    double mMinLogDelta = -12;
+    double mMaxLogDelta = -2;
+    double mMinLogR = -8;
+    double mMaxLogR = 2;
+    double mLogStep = 1;
+    int mRefinements = 2;
+    int mBurnIn = 20;
+    ForkJoinPool mPool = ForkJoinPool.commonPool();
+
+    public void setDeltaRange(double min, double max) {
+        check(0 < min && min <= max && max < 1);
+        mMinLogDelta = Math.log10(min);
+        mMaxLogDelta = Math.log10(max);
+    }
+
+    public void setRRange(double min, double max) {
+        check(0 < min && min <= max);
+        mMinLogR = Math.log10(min);
+        mMaxLogR = Math.log10(max);
+    }
+
+    /**
+     * Spacing of the initial grid in decades, each refinement divides it by {@value #REFINEMENT_POINTS}.
+     */
+    public void setLogStep(double logStep) {
+        check(logStep > 0);
+        mLogStep = logStep;
+    }
+
+    public void setRefinements(int refinements) {
+        check(refinements >= 0);
+        mRefinements = refinements;
+    }
+
+    /**
+     * Number of initial steps not counted in the likelihood, the filter starts at alpha = beta = 0 with no uncertainty
+     * so its first innovations say little about the parameters.
+     */
+    public void setBurnIn(int burnIn) {
+        check(burnIn >= 0);
+        mBurnIn = burnIn;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        mPool = pool;
+    }
+
+    public Result calibrate(MultipleDoubleSeries prices, String x, String y) {
+        return calibrate(prices.getColumn(x).toArray(), prices.getColumn(y).toArray());
+    }
+
+    /**
+     * Calibrates a single pair on the calling thread. Rows where either price is NaN are skipped.
+     */
+    public Result calibrate(double[] x, double[] y) {
+        check(x.length == y.length);
+
+        int deltaCount = (int) Math.floor((mMaxLogDelta - mMinLogDelta) / mLogStep + 1e-9) + 1;
+        int rCount = (int) Math.floor((mMaxLogR - mMinLogR) / mLogStep + 1e-9) + 1;
+        double[] logDeltas = new double[deltaCount * rCount];
+        double[] logRs = new double[deltaCount * rCount];
+        for (int i = 0; i < deltaCount; i++) {
+            for (int j = 0; j < rCount; j++) {
+                logDeltas[i * rCount + j] = mMinLogDelta + i * mLogStep;
+                logRs[i * rCount + j] = mMinLogR + j * mLogStep;
+            }
+        }
+        Result best = evaluate(x, y, logDeltas, logRs);
+
+        double step = mLogStep;
+        for (int refinement = 0; refinement < mRefinements; refinement++) {
+            double centerDelta = Math.log10(best.mDelta);
+            double centerR = Math.log10(best.mR);
+            step /= REFINEMENT_POINTS;
+
+            int side = 2 * REFINEMENT_POINTS + 1;
+            logDeltas = new double[side * side];
+            logRs = new double[side * side];
+            for (int i = 0; i < side; i++) {
+                for (int j = 0; j < side; j++) {
+                    logDeltas[i * side + j] = clamp(centerDelta + (i - REFINEMENT_POINTS) * step, mMinLogDelta, mMaxLogDelta);
+                    logRs[i * side + j] = clamp(centerR + (j - REFINEMENT_POINTS) * step, mMinLogR, mMaxLogR);
+                }
+            }
+            Result refined = evaluate(x, y, logDeltas, logRs);
+            if (refined.mLogLikelihood > best.mLogLikelihood) {
+                best = refined;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Calibrates the pairs {@code (xs.get(i), ys.get(i))} in parallel, the results are in the same order.
+     */
+    public List<Result> calibrate(List<double[]> xs, List<double[]> ys) {
+        check(xs.size() == ys.size());
+        List<Callable<Result>> tasks = new ArrayList<>(xs.size());
+        for (int i = 0; i < xs.size(); i++) {
+            double[] x = xs.get(i);
+            double[] y = ys.get(i);
+            tasks.add(() -> calibrate(x, y));
+        }
+        return Util.invokeAll(mPool, tasks);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Runs all candidates over the pair as one filter bank and returns the candidate with the highest log-likelihood.
+     */
+    Result evaluate(double[] x, double[] y, double[] logDeltas, double[] logRs) {
+        int n = logDeltas.length;
+        double[] deltas = new double[n];
+        double[] rs = new double[n];
+        for (int i = 0; i < n; i++) {
+            deltas[i] = Math.pow(10, logDeltas[i]);
+            rs[i] = Math.pow(10, logRs[i]);
+        }
+
+        KalmanFilterBank bank = new KalmanFilterBank(deltas, rs);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        // sum of log(S) + e^2 / S, the likelihood is -0.5 * (sum + observations * log(2 pi))
+        double[] sums = new double[n];
+        double[] error = bank.mError;
+        double[] variance = bank.mVariance;
+
+        int steps = 0;
+        for (int t = 0; t < x.length; t++) {
+            if (Double.isNaN(x[t]) || Double.isNaN(y[t])) {
+                continue;
+            }
+            Arrays.fill(xs, x[t]);
+            Arrays.fill(ys, y[t]);
+            bank.step(xs, ys);
+            if (steps++ < mBurnIn) {
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                double s = variance[i];
+                double e = error[i];
+                sums[i] += Math.log(s) + e * e / s;
+            }
+        }
+        int observations = Math.max(steps - mBurnIn, 0);
+
+        int best = 0;
+        for (int i = 1; i < n; i++) {
+            if (sums[i] < sums[best] || Double.isNaN(sums[best])) {
+                best = i;
+            }
+        }
+        double logLikelihood = -0.5 * (sums[best] + observations * Math.log(2 * Math.PI));
+        return new Result(deltas[best], rs[best], logLikelihood, observations);
+    }
+}
@@ -1,33 +1,39 @@
 package org.lst.trading.main.strategy.kalman;
 
-import org.apache.commons.math3.stat.StatUtils;
+import org.lst.trading.lib.model.Instrument;
 import org.lst.trading.lib.model.Order;
 import org.lst.trading.lib.model.TradingContext;
-import org.lst.trading.lib.series.DoubleSeries;
-import org.lst.trading.lib.series.MultipleDoubleSeries;
-import org.lst.trading.lib.series.TimeSeries;
-import org.lst.trading.lib.util.Util;
+import org.lst.trading.lib.series.DiagnosticsRecorder;
+import org.lst.trading.lib.util.rolling.RollingVariance;
 import org.lst.trading.main.strategy.AbstractTradingStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class CointegrationTradingStrategy extends AbstractTradingStrategy {
     private static Logger log = LoggerFactory.getLogger(CointegrationTradingStrategy.class);
+    private static final List<String> DIAGNOSTICS = Arrays.asList("x", "y", "alpha", "beta", "error", "variance", "model");
 
     boolean mReinvest = false;
+    double mDelta = 1e-10;
+    double mR = 1e-7;
+    double mEntryThreshold = 1;
 
     String mX, mY;
+    Instrument mXInstrument, mYInstrument;
     TradingContext mContext;
     Cointegration mCoint;
+    int mTick;
+
+    RollingVariance mErrorVariance;
 
-    DoubleSeries mAlpha;
-    DoubleSeries mBeta;
-    DoubleSeries mXs;
-    DoubleSeries mYs;
-    DoubleSeries mError;
-    DoubleSeries mVariance;
-    DoubleSeries mModel;
+    DiagnosticsRecorder mDiagnostics = DiagnosticsRecorder.off();
 
+    // with netting the orders can be null or closed by other strategies while the position is open
+    boolean mOpen;
+    boolean mYLong;
     Order mXOrder;
     Order mYOrder;
 
@@ -41,54 +47,85 @@ public class CointegrationTradingStrategy extends AbstractTradingStrategy {
         mY = y;
     }
 
+    public void setCointegrationParameters(double delta, double r) {
+        mDelta = delta;
+        mR = r;
+    }
+
+    /**
+     * A position is opened when the Kalman filter error exceeds this multiple of its recent standard deviation.
+     */
+    public void setEntryThreshold(double entryThreshold) {
+        mEntryThreshold = entryThreshold;
+    }
+
+    /**
+     * Records x, y, alpha, beta, error, variance and the model price beta * x + alpha per tick, nothing by default.
+     */
+    public void setDiagnostics(DiagnosticsRecorder diagnostics) {
+        mDiagnostics = diagnostics;
+    }
+
+    public DiagnosticsRecorder getDiagnostics() {
+        return mDiagnostics;
+    }
+
     @Override public void onStart(TradingContext context) {
         mContext = context;
-        mCoint = new Cointegration(1e-10, 1e-7);
-        mAlpha = new DoubleSeries("alpha");
-        mBeta = new DoubleSeries("beta");
-        mXs = new DoubleSeries("x");
-        mYs = new DoubleSeries("y");
-        mError = new DoubleSeries("error");
-        mVariance = new DoubleSeries("variance");
-        mModel = new DoubleSeries("model");
+        mXInstrument = context.getInstrument(mX);
+        mYInstrument = context.getInstrument(mY);
+        mCoint = new Cointegration(mDelta, mR);
+        mTick = 0;
+        mErrorVariance = new RollingVariance(15);
+        mDiagnostics.start(DIAGNOSTICS);
+    }
+
+    @Override public int getLookback() {
+        return 0;
     }
 
     @Override public void onTick() {
-        double x = mContext.getLastPrice(mX);
-        double y = mContext.getLastPrice(mY);
+        double x = mContext.getLastPrice(mXInstrument);
+        double y = mContext.getLastPrice(mYInstrument);
+        long time = mContext.getTime().toEpochMilli();
         double alpha = mCoint.getAlpha();
         double beta = mCoint.getBeta();
-
         mCoint.step(x, y);
-        mAlpha.add(alpha, mContext.getTime());
-        mBeta.add(beta, mContext.getTime());
-        mXs.add(x, mContext.getTime());
-        mYs.add(y, mContext.getTime());
-        mError.add(mCoint.getError(), mContext.getTime());
-        mVariance.add(mCoint.getVariance(), mContext.getTime());
-
         double error = mCoint.getError();
+        double variance = mCoint.getVariance();
+        mErrorVariance.add(error);
+        mTick++;
+
+        if (mDiagnostics.tick(time)) {
+            mDiagnostics.set(0, x);
+            mDiagnostics.set(1, y);
+            mDiagnostics.set(2, alpha);
+            mDiagnostics.set(3, beta);
+            mDiagnostics.set(4, error);
+            mDiagnostics.set(5, variance);
+            mDiagnostics.set(6, beta * x + alpha);
+        }
 
-        mModel.add(beta * x + alpha, mContext.getTime());
-
-        if (mError.size() > 30) {
-            double[] lastValues = mError.reversedStream().mapToDouble(TimeSeries.Entry::getItem).limit(15).toArray();
-            double sd = Math.sqrt(StatUtils.variance(lastValues));
+        if (mTick > 30) {
+            double sd = mErrorVariance.getStandardDeviation();
 
-            if (mYOrder == null && Math.abs(error) > sd) {
+            if (!mOpen && Math.abs(error) > sd * mEntryThreshold) {
                 double value = mReinvest ? mContext.getNetValue() : mContext.getInitialFunds();
                 double baseAmount = (value * getWeight() * 0.5 * Math.min(4, mContext.getLeverage())) / (y + beta * x);
 
                 if (beta > 0 && baseAmount * beta >= 1) {
-                    mYOrder = mContext.order(mY, error < 0, (int) baseAmount);
-                    mXOrder = mContext.order(mX, error > 0, (int) (baseAmount * beta));
+                    mOpen = true;
+                    mYLong = error < 0;
+                    mYOrder = mContext.order(mYInstrument, error < 0, (int) baseAmount);
+                    mXOrder = mContext.order(mXInstrument, error > 0, (int) (baseAmount * beta));
                 }
                 //log.debug("Order: baseAmount={}, residual={}, sd={}, beta={}", baseAmount, residual, sd, beta);
-            } else if (mYOrder != null) {
-                if (mYOrder.isLong() && error > 0 || !mYOrder.isLong() && error < 0) {
-                    mContext.close(mYOrder);
-                    mContext.close(mXOrder);
+            } else if (mOpen) {
+                if (mYLong && error > 0 || !mYLong && error < 0) {
+                    close(mYOrder);
+                    close(mXOrder);
 
+                    mOpen = false;
                     mYOrder = null;
                     mXOrder = null;
                 }
@@ -96,8 +133,14 @@ public class CointegrationTradingStrategy extends AbstractTradingStrategy {
         }
     }
 
+    private void close(Order order) {
+        if (mContext.isOpen(order)) {
+            mContext.close(order);
+        }
+    }
+
     @Override public void onEnd() {
-        log.debug("Kalman filter statistics: " + Util.writeCsv(new MultipleDoubleSeries(mXs, mYs, mAlpha, mBeta, mError, mVariance, mModel)));
+        mDiagnostics.finish();
     }
 
     @Override public String toString() {
@@ -106,32 +149,4 @@ public class CointegrationTradingStrategy extends AbstractTradingStrategy {
             ", mX='" + mX + '\'' +
             '}';
     }
-
-    public DoubleSeries getAlpha() {
-        return mAlpha;
-    }
-
-    public DoubleSeries getBeta() {
-        return mBeta;
-    }
-
-    public DoubleSeries getXs() {
-        return mXs;
-    }
-
-    public DoubleSeries getYs() {
-        return mYs;
-    }
-
-    public DoubleSeries getError() {
-        return mError;
-    }
-
-    public DoubleSeries getVariance() {
-        return mVariance;
-    }
-
-    public DoubleSeries getModel() {
-        return mModel;
-    }
 }
@@ -0,0 +1,154 @@
+package org.lst.trading.main.strategy.kalman;
+
+import org.lst.trading.lib.util.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.lst.trading.lib.util.Util.check;
+
+/**
+ * A bank of independent {@link Cointegration} filters, stored as one primitive array per state variable so a time step
+ * over all filters is a single loop over contiguous memory.
+ * <p>
+ * Filter {@code i} behaves exactly like a {@code Cointegration} with the same delta and r stepped with
+ * {@code xs[i], ys[i]}. Ranges of filters are independent, {@link #step(double[], double[], int, int)} can be called
+ * from several threads on disjoint ranges.
+ */
+public class KalmanFilterBank {
+    private static final int CHUNK_SIZE = 4096;
+
+    int mSize;
+    double[] mQ;
+    double[] mR;
+
+    double[] mAlpha;
+    double[] mBeta;
+    double[] mP00, mP01, mP10, mP11;
+
+    double[] mError;
+    double[] mVariance;
+
+    public KalmanFilterBank(int size, double delta, double r) {
+        this(fill(size, delta), fill(size, r));
+    }
+
+    /**
+     * One filter per element, with its own delta and r.
+     */
+    public KalmanFilterBank(double[] deltas, double[] rs) {
+        check(deltas.length == rs.length);
+        mSize = deltas.length;
+        mQ = new double[mSize];
+        mR = rs.clone();
+        for (int i = 0; i < mSize; i++) {
+            mQ[i] = deltas[i] / (1 - deltas[i]);
+        }
+
+        mAlpha = new double[mSize];
+        mBeta = new double[mSize];
+        mP00 = new double[mSize];
+        mP01 = new double[mSize];
+        mP10 = new double[mSize];
+        mP11 = new double[mSize];
+        mError = new double[mSize];
+        mVariance = new double[mSize];
+    }
+
+    private static double[] fill(int size, double value) {
+        double[] values = new double[size];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void step(double[] xs, double[] ys) {
+        step(xs, ys, 0, mSize);
+    }
+
+    /**
+     * Steps the filters {@code [from, to)} with the observations at the same indices of {@code xs} and {@code ys}.
+     */
+    public void step(double[] xs, double[] ys, int from, int to) {
+        check(xs.length >= to && ys.length >= to);
+        check(0 <= from && from <= to && to <= mSize);
+
+        double[] q = mQ, r = mR, alpha = mAlpha, beta = mBeta, error = mError, variance = mVariance;
+        double[] c00 = mP00, c01 = mP01, c10 = mP10, c11 = mP11;
+        for (int i = from; i < to; i++) {
+            double x = xs[i];
+
+            // predict
+            double p00 = c00[i] + q[i];
+            double p01 = c01[i];
+            double p10 = c10[i];
+            double p11 = c11[i] + q[i];
+
+            // observe
+            double e = ys[i] - (alpha[i] + x * beta[i]);
+            double s = (p00 + x * p10) + (p01 + x * p11) * x + r[i];
+            error[i] = e;
+            variance[i] = s;
+
+            // update
+            double inverse = 1 / s;
+            double k0 = (p00 + p01 * x) * inverse;
+            double k1 = (p10 + p11 * x) * inverse;
+            alpha[i] = alpha[i] + k0 * e;
+            beta[i] = beta[i] + k1 * e;
+
+            double m00 = 1 - k0;
+            double m01 = -(k0 * x);
+            double m10 = -k1;
+            double m11 = 1 - k1 * x;
+            c00[i] = m00 * p00 + m01 * p10;
+            c01[i] = m00 * p01 + m01 * p11;
+            c10[i] = m10 * p00 + m11 * p10;
+            c11[i] = m10 * p01 + m11 * p11;
+        }
+    }
+
+    /**
+     * Steps all filters, split into chunks which run in parallel on {@code pool}. Only worth it for large banks, small
+     * banks are stepped on the calling thread.
+     */
+    public void step(double[] xs, double[] ys, ForkJoinPool pool) {
+        if (mSize <= CHUNK_SIZE) {
+            step(xs, ys);
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < mSize; from += CHUNK_SIZE) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(from + CHUNK_SIZE, mSize);
+            tasks.add(() -> {
+                step(xs, ys, chunkFrom, chunkTo);
+                return null;
+            });
+        }
+        Util.invokeAll(pool, tasks);
+    }
+
+    public double getAlpha(int i) {
+        return mAlpha[i];
+    }
+
+    public double getBeta(int i) {
+        return mBeta[i];
+    }
+
+    public double getVariance(int i) {
+        return mVariance[i];
+    }
+
+    public double getError(int i) {
+        return mError[i];
+    }
+}
@@ -0,0 +1,364 @@
+package org.lst.trading.lib.backtest;
+
+import org.junit.Test;
+import org.lst.trading.lib.model.Bar;
+import org.lst.trading.lib.model.ClosedOrder;
+import org.lst.trading.lib.model.Order;
+import org.lst.trading.lib.model.TradingContext;
+import org.lst.trading.lib.model.TradingStrategy;
+import org.lst.trading.lib.series.Alignment;
+import org.lst.trading.lib.series.BarSeries;
+import org.lst.trading.lib.series.DoubleSeries;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.main.strategy.BuyAndHold;
+import org.lst.trading.main.strategy.MultipleTradingStrategy;
+import org.lst.trading.main.strategy.kalman.CointegrationTradingStrategy;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BacktestTest {
+    private static final double EPSILON = 1e-6;
+
+    /**
+     * A cointegrated pair X, Y and an unrelated Z with missing days, deterministic for a fixed seed.
+     */
+    static MultipleDoubleSeries syntheticPair() {
+        Random random = new Random(42);
+        DoubleSeries x = new DoubleSeries("X");
+        DoubleSeries y = new DoubleSeries("Y");
+        DoubleSeries z = new DoubleSeries("Z");
+        double px = 50, pz = 20, error = 0;
+        for (int i = 0; i < 2500; i++) {
+            px *= 1 + 0.01 * random.nextGaussian();
+            pz *= 1 + 0.02 * random.nextGaussian();
+            error = 0.9 * error + 0.5 * random.nextGaussian();
+            Instant time = Instant.ofEpochSecond(86400L * (10000 + i));
+            x.add(px, time);
+            y.add(1.5 * px + 3 + error, time);
+            if (i % 7 != 3) {
+                z.add(pz, time);
+            }
+        }
+        return new MultipleDoubleSeries(x, y, z);
+    }
+
+    static Backtest.Result run(TradingStrategy strategy, double leverage) {
+        Backtest backtest = new Backtest(15000, syntheticPair());
+        backtest.setLeverage(leverage);
+        return backtest.run(strategy);
+    }
+
+    /**
+     * Bars of X and Y with the synthetic pair as closes, the open, high and low a fixed distance from the close.
+     */
+    static List<BarSeries> syntheticBars() {
+        MultipleDoubleSeries prices = syntheticPair();
+        BarSeries[] bars = new BarSeries[2];
+        for (int j = 0; j < bars.length; j++) {
+            bars[j] = new BarSeries(prices.getNames().get(j), null);
+            for (int i = 0; i < prices.size(); i++) {
+                double close = prices.getValue(i, j);
+                bars[j].add(prices.getEpochMillis(i), close - 0.25, close + 1 + i % 3, close - 1 - j, close, 1000 + i);
+            }
+        }
+        return Arrays.asList(bars);
+    }
+
+    // expected values are those of the original list based backtest, whose strategy took the error sd from StatUtils
+    // over a copy of the last 15 errors instead of a RollingVariance
+
+    @Test public void cointegrationPair() {
+        Backtest.Result result = run(new CointegrationTradingStrategy("X", "Y"), 4);
+
+        assertEquals(12574.8575602012, result.getPl(), EPSILON);
+        assertEquals(27574.8575602012, result.getFinalValue(), EPSILON);
+        assertEquals(3550.63, result.getCommissions(), EPSILON);
+        assertEquals(1.011939521817, result.getSharpe(), EPSILON);
+        assertEquals(-1793.2541859688, result.getMaxDrawdown(), EPSILON);
+        assertEquals(794, result.getOrders().size());
+        assertEquals(2143, result.getDaysCount());
+    }
+
+    @Test public void multipleStrategies() {
+        Backtest.Result result = run(MultipleTradingStrategy.of(
+            new CointegrationTradingStrategy(0.5, "X", "Y"),
+            new CointegrationTradingStrategy(0.5, "Z", "Y"),
+            new BuyAndHold()), 2);
+
+        assertEquals(3103.1429592113, result.getPl(), EPSILON);
+        assertEquals(18103.1429592113, result.getFinalValue(), EPSILON);
+        assertEquals(3953.21, result.getCommissions(), EPSILON);
+        assertEquals(-0.045056803434, result.getSharpe(), EPSILON);
+        assertEquals(-5646.0620809593, result.getMaxDrawdown(), EPSILON);
+        assertEquals(1349, result.getOrders().size());
+    }
+
+    @Test public void missingPriceKeepsLastPrice() {
+        long day = 86400000L;
+        MultipleDoubleSeries prices = MultipleDoubleSeries.of(Arrays.asList("X"),
+            new long[]{0, day, 2 * day, 3 * day},
+            new double[][]{{10, 11, Double.NaN, 12}});
+
+        double[] seen = new double[4];
+        TradingStrategy strategy = new TradingStrategy() {
+            TradingContext mContext;
+            int mTick;
+
+            @Override public void onStart(TradingContext context) {
+                mContext = context;
+            }
+
+            @Override public void onTick() {
+                if (mTick == 0) {
+                    mContext.order("X", true, 100);
+                }
+                seen[mTick++] = mContext.getLastPrice("X");
+            }
+        };
+        Backtest.Result result = new Backtest(15000, prices).run(strategy);
+
+        assertEquals(11, seen[2], 0);
+        for (int i = 0; i < result.getPlHistory().size(); i++) {
+            assertTrue(Double.isFinite(result.getPlHistory().getValue(i)));
+        }
+        assertEquals(200, result.getPl(), EPSILON);
+    }
+
+    @Test public void lateStartingInstrumentHasNoPriceBeforeItsFirstValue() {
+        long day = 86400000L;
+        DoubleSeries x = new DoubleSeries("X");
+        DoubleSeries y = new DoubleSeries("Y");
+        for (int i = 0; i < 4; i++) {
+            x.add(10 + i, Instant.ofEpochMilli(i * day));
+        }
+        y.add(20, Instant.ofEpochMilli(2 * day));
+        y.add(22, Instant.ofEpochMilli(3 * day));
+        MultipleDoubleSeries prices = MultipleDoubleSeries.align(Alignment.forwardFill(), x, y);
+
+        double[] seen = new double[4];
+        boolean[] rejected = new boolean[1];
+        TradingStrategy strategy = new TradingStrategy() {
+            TradingContext mContext;
+            int mTick;
+
+            @Override public void onStart(TradingContext context) {
+                mContext = context;
+            }
+
+            @Override public void onTick() {
+                if (mTick == 0) {
+                    try {
+                        mContext.order("Y", true, 1);
+                    } catch (RuntimeException e) {
+                        rejected[0] = true;
+                    }
+                }
+                seen[mTick++] = mContext.getLastPrice("Y");
+            }
+        };
+        new Backtest(15000, prices).run(strategy);
+
+        assertTrue(rejected[0]);
+        assertTrue(Double.isNaN(seen[0]));
+        assertTrue(Double.isNaN(seen[1]));
+        assertEquals(20, seen[2], 0);
+
+        // buy and hold opens Y only once it has a price, not at 0
+        Backtest.Result result = new Backtest(15000, prices).run(new BuyAndHold());
+        assertEquals(2, result.getOrders().size());
+        assertEquals(20, result.getOrders().stream().filter(o -> o.getInstrument().equals("Y")).findFirst().get().getOpenPrice(), 0);
+        assertEquals((13 - 10) + (22 - 20), result.getPl(), EPSILON);
+    }
+
+    @Test public void partialNettingRealizesWithNewId() {
+        long day = 86400000L;
+        MultipleDoubleSeries prices = MultipleDoubleSeries.of(Arrays.asList("X"),
+            new long[]{0, day, 2 * day},
+            new double[][]{{10, 12, 13}});
+
+        Order[] lot = new Order[1];
+        TradingStrategy strategy = new TradingStrategy() {
+            TradingContext mContext;
+            int mTick;
+
+            @Override public void onStart(TradingContext context) {
+                mContext = context;
+            }
+
+            @Override public void onTick() {
+                if (mTick == 0) {
+                    lot[0] = mContext.order("X", true, 100);
+                } else if (mTick == 1) {
+                    mContext.order("X", false, 40);
+                }
+                mTick++;
+            }
+        };
+        Backtest backtest = new Backtest(15000, prices);
+        backtest.setNetting(Netting.FIFO);
+        Backtest.Result result = backtest.run(strategy);
+
+        assertEquals(2, result.getOrders().size());
+        ClosedOrder partial = result.getOrders().get(0);
+        ClosedOrder rest = result.getOrders().get(1);
+        assertEquals(40, partial.getAmount());
+        assertEquals(60, rest.getAmount());
+        assertEquals(lot[0].getId(), rest.getId());
+        assertNotEquals(lot[0].getId(), partial.getId());
+        assertEquals("X", partial.getInstrument());
+        assertEquals(40 * 2 + 60 * 3, result.getPl(), EPSILON);
+    }
+
+    @Test public void lotNettedAwayByAnotherStrategyIsNotOpen() {
+        long day = 86400000L;
+        MultipleDoubleSeries prices = MultipleDoubleSeries.of(Arrays.asList("X"),
+            new long[]{0, day, 2 * day},
+            new double[][]{{10, 12, 13}});
+
+        Order[] orders = new Order[2];
+        boolean[] open = new boolean[2];
+        TradingStrategy strategy = new TradingStrategy() {
+            TradingContext mContext;
+            int mTick;
+
+            @Override public void onStart(TradingContext context) {
+                mContext = context;
+            }
+
+            @Override public void onTick() {
+                if (mTick == 0) {
+                    orders[0] = mContext.order("X", true, 100);
+                } else if (mTick == 1) {
+                    // e.g. another strategy, closes the first lot entirely
+                    orders[1] = mContext.order("X", false, 100);
+                    open[0] = mContext.isOpen(orders[0]);
+                    open[1] = mContext.isOpen(orders[1]);
+                }
+                mTick++;
+            }
+        };
+        Backtest backtest = new Backtest(15000, prices);
+        backtest.setNetting(Netting.FIFO);
+        Backtest.Result result = backtest.run(strategy);
+
+        assertNull(orders[1]);
+        assertFalse(open[0]);
+        assertFalse(open[1]);
+        assertEquals(1, result.getOrders().size());
+        assertEquals(100 * 2, result.getPl(), EPSILON);
+    }
+
+    @Test public void nettedStrategiesOnlyCloseOpenLots() {
+        Backtest backtest = new Backtest(15000, syntheticPair());
+        backtest.setLeverage(2);
+        backtest.setNetting(Netting.FIFO);
+        Backtest.Result result = backtest.run(MultipleTradingStrategy.of(
+            new CointegrationTradingStrategy(0.5, "X", "Y"),
+            new CointegrationTradingStrategy(0.5, "Z", "Y"),
+            new CointegrationTradingStrategy(0.5, "Y", "X")));
+
+        assertTrue(result.getOrders().size() > 0);
+        assertTrue(Double.isFinite(result.getPl()));
+    }
+
+    @Test public void barsAreTheCurrentRow() {
+        List<BarSeries> bars = syntheticBars();
+        int n = bars.get(0).size();
+        double[][] seen = new double[4][n];
+        Bar[] first = new Bar[1];
+        boolean[] sameBar = {true};
+        TradingStrategy strategy = new TradingStrategy() {
+            TradingContext mContext;
+            int mTick;
+
+            @Override public void onStart(TradingContext context) {
+                mContext = context;
+            }
+
+            @Override public void onTick() {
+                Bar y = mContext.getLastBar("Y");
+                // the same cursor for the instrument on every tick
+                first[0] = first[0] == null ? y : first[0];
+                sameBar[0] &= first[0] == y;
+                seen[0][mTick] = y.getHigh();
+                seen[1][mTick] = y.getLow();
+                seen[2][mTick] = y.getClose();
+                seen[3][mTick++] = y.getStartEpochMillis();
+            }
+        };
+        new Backtest(15000, bars).run(strategy);
+
+        assertTrue(sameBar[0]);
+        BarSeries y = bars.get(1);
+        for (int i = 0; i < n; i++) {
+            assertEquals(y.getHigh(i), seen[0][i], 0);
+            assertEquals(y.getLow(i), seen[1][i], 0);
+            assertEquals(y.getClose(i), seen[2][i], 0);
+            assertEquals(y.getEpochMillis(i), (long) seen[3][i]);
+        }
+    }
+
+    @Test public void barsTradeLikeTheirCloses() {
+        List<BarSeries> bars = syntheticBars();
+        MultipleDoubleSeries closes = MultipleDoubleSeries.align(Alignment.inner(), bars.get(0).getCloses(), bars.get(1).getCloses());
+
+        Backtest onBars = new Backtest(15000, bars);
+        onBars.setLeverage(4);
+        Backtest.Result result = onBars.run(new CointegrationTradingStrategy("X", "Y"));
+        Backtest onCloses = new Backtest(15000, closes);
+        onCloses.setLeverage(4);
+        Backtest.Result expected = onCloses.run(new CointegrationTradingStrategy("X", "Y"));
+
+        assertTrue(expected.getOrders().size() > 0);
+        assertEquals(expected.getPl(), result.getPl(), 0);
+        assertEquals(expected.getCommissions(), result.getCommissions(), 0);
+        assertEquals(expected.getOrders().size(), result.getOrders().size());
+        assertEquals(expected.getPlHistory().size(), result.getPlHistory().size());
+        for (int i = 0; i < expected.getPlHistory().size(); i++) {
+            assertEquals(expected.getPlHistory().getEpochMillis(i), result.getPlHistory().getEpochMillis(i));
+            assertEquals(expected.getPlHistory().getValue(i), result.getPlHistory().getValue(i), 0);
+        }
+    }
+
+    private static String error(Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    @Test public void barsWithDifferentTimesFail() {
+        long day = 86400000L;
+        BarSeries x = BarSeries.of("X", null, new long[]{0, day}, new double[]{1, 2}, new double[]{1, 2}, new double[]{1, 2}, new double[]{1, 2}, new long[]{0, 0});
+        BarSeries shifted = BarSeries.of("Y", null, new long[]{0, 2 * day}, new double[]{1, 2}, new double[]{1, 2}, new double[]{1, 2}, new double[]{1, 2}, new long[]{0, 0});
+        BarSeries shorter = BarSeries.of("Y", null, new long[]{0}, new double[]{1}, new double[]{1}, new double[]{1}, new double[]{1}, new long[]{0});
+
+        assertEquals("Bar series must have the same times", error(() -> new Backtest(15000, Arrays.asList(x, shifted))));
+        assertEquals("Bar series must have the same times", error(() -> new Backtest(15000, Arrays.asList(x, shorter))));
+
+        // prices without bars have no last bar
+        TradingStrategy strategy = new TradingStrategy() {
+            TradingContext mContext;
+
+            @Override public void onStart(TradingContext context) {
+                mContext = context;
+            }
+
+            @Override public void onTick() {
+                mContext.getLastBar("X");
+            }
+        };
+        assertEquals("Backtest has no bars", error(() -> new Backtest(15000, new MultipleDoubleSeries(x.getCloses())).run(strategy)));
+    }
+}
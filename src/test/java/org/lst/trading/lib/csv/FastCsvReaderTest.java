@@ -0,0 +1,169 @@
+package org.lst.trading.lib.csv;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lst.trading.lib.series.BarSeries;
+import org.lst.trading.lib.series.DoubleSeries;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FastCsvReaderTest {
+    private static final List<String> EDGE_CASES = Arrays.asList(
+        "0", "-0", "0.0", "-0.0", "+1", ".5", "5.", "00012.3400", "1e22", "1e23", "1E-22", "1e-23", "123456789012345",
+        "1234567890123456", "9007199254740993", "0.1", "0.30000000000000004", "4.9e-324", "1.7976931348623157e308",
+        "2.2250738585072014E-308", "1e400", "-1e-400", "12345678901234567890123", "0.000000000000000000000123",
+        "NaN", "Infinity", "-Infinity");
+
+    @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static double parse(String value) {
+        byte[] bytes = (" " + value + " ").getBytes(StandardCharsets.US_ASCII);
+        return FastCsvReader.parseDouble(bytes, 1, bytes.length - 1);
+    }
+
+    private static void assertParsed(String value) {
+        assertEquals(value, Double.doubleToRawLongBits(Double.parseDouble(value)), Double.doubleToRawLongBits(parse(value)));
+    }
+
+    /**
+     * Random decimals with up to 25 digits, the point anywhere and an optional exponent.
+     */
+    static List<String> randomDecimals(long seed, int n) {
+        Random random = new Random(seed);
+        List<String> values = new ArrayList<>(n);
+        StringBuilder builder = new StringBuilder();
+        for (int k = 0; k < n; k++) {
+            builder.setLength(0);
+            if (random.nextInt(4) == 0) {
+                builder.append('-');
+            }
+            int digits = 1 + random.nextInt(25);
+            int point = random.nextInt(digits + 1);
+            for (int i = 0; i < digits; i++) {
+                if (i == point && i > 0) {
+                    builder.append('.');
+                }
+                builder.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextInt(3) == 0) {
+                builder.append(random.nextBoolean() ? 'e' : 'E').append(random.nextInt(61) - 30);
+            }
+            values.add(builder.toString());
+        }
+        return values;
+    }
+
+    @Test public void parseDoubleMatchesJdk() {
+        EDGE_CASES.forEach(FastCsvReaderTest::assertParsed);
+        randomDecimals(1, 200000).forEach(FastCsvReaderTest::assertParsed);
+
+        Random random = new Random(2);
+        for (int i = 0; i < 100000; i++) {
+            // shortest representations of arbitrary doubles and prices with a few decimals
+            assertParsed(Double.toString(Double.longBitsToDouble(random.nextLong())));
+            assertParsed(String.format("%." + random.nextInt(7) + "f", random.nextDouble() * 1000));
+        }
+    }
+
+    @Test public void readMatchesJdk() throws IOException {
+        List<String> values = randomDecimals(3, 50000);
+        StringBuilder csv = new StringBuilder("date,price\n");
+        long day = 86400000L;
+        for (int i = 0; i < values.size(); i++) {
+            csv.append(Instant.ofEpochMilli(i * day)).append(',').append(values.get(i)).append('\n');
+        }
+        Path path = mFolder.newFile("prices.csv").toPath();
+        Files.write(path, csv.toString().getBytes(StandardCharsets.US_ASCII));
+
+        FastCsvReader reader = new FastCsvReader();
+        // several chunks parsed in parallel
+        reader.setChunkSize(64 << 10);
+        DoubleSeries series = reader.read(path, "date", "price");
+
+        assertEquals(values.size(), series.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i * day, series.getEpochMillis(i));
+            assertEquals(Double.doubleToRawLongBits(Double.parseDouble(values.get(i))), Double.doubleToRawLongBits(series.getValue(i)));
+        }
+    }
+
+    @Test public void headerSkipsOnlyALeadingByteOrderMark() throws IOException {
+        // names ending in C3 BF and starting with EF BB BF must survive, the mark itself is only skipped at the start
+        String csv = "\uFEFF date ,pri\u00FF,\"\uFEFFopen\"\r\n2017-01-31,1.5,2\r\n2017-02-01,2.5,3\r\n";
+        Path path = mFolder.newFile("bom.csv").toPath();
+        Files.write(path, csv.getBytes(StandardCharsets.UTF_8));
+
+        MultipleDoubleSeries series = new FastCsvReader().read(path, "date", "pri\u00FF", "\uFEFFopen");
+
+        assertEquals(Arrays.asList("pri\u00FF", "\uFEFFopen"), series.getNames());
+        assertEquals(2, series.size());
+        assertEquals(1.5, series.getValue(0, 0), 0);
+        assertEquals(3, series.getValue(1, 1), 0);
+    }
+
+    private static String timeError(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        try {
+            FastCsvReader.parseTime(bytes, 0, bytes.length);
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    @Test public void parseTimeRejectsTruncatedSeconds() {
+        String[][] valid = {
+            {"2017-01-31", "2017-01-31T00:00:00Z"},
+            {"2017-01-31T10:30", "2017-01-31T10:30:00Z"},
+            {"2017-01-31 10:30:45", "2017-01-31T10:30:45Z"},
+            {"2017-01-31T10:30:45.25Z", "2017-01-31T10:30:45.250Z"}
+        };
+        for (String[] time : valid) {
+            byte[] bytes = time[0].getBytes(StandardCharsets.US_ASCII);
+            assertEquals(time[0], Instant.parse(time[1]).toEpochMilli(), FastCsvReader.parseTime(bytes, 0, bytes.length));
+        }
+        // the input ends right after the separator or inside the seconds
+        assertEquals("Unsupported time 2017-01-31T10:30:", timeError("2017-01-31T10:30:"));
+        assertEquals("Unsupported time 2017-01-31T10:30:4", timeError("2017-01-31T10:30:4"));
+    }
+
+    @Test public void readBarsByColumnName() throws IOException {
+        // columns in another order than the bar fields, an unused column and the newest row first
+        String csv = "volume,close,date,low,adj,high,open\n" +
+            "1200,10.5,2017-02-01,9.75,0,11,10\n" +
+            "1100,9.5,2017-01-31,9.25,0,10.25,9.75\n";
+        Path path = mFolder.newFile("bars.csv").toPath();
+        Files.write(path, csv.getBytes(StandardCharsets.US_ASCII));
+
+        BarSeries bars = new FastCsvReader().readBars(path, "X", Duration.ofDays(1), "date", "open", "high", "low", "close", "volume");
+
+        assertEquals("X", bars.getName());
+        assertEquals(Duration.ofDays(1), bars.getDuration());
+        assertEquals(2, bars.size());
+        assertEquals(Instant.parse("2017-01-31T00:00:00Z").toEpochMilli(), bars.getEpochMillis(0));
+        assertEquals(9.75, bars.getOpen(0), 0);
+        assertEquals(10.25, bars.getHigh(0), 0);
+        assertEquals(9.25, bars.getLow(0), 0);
+        assertEquals(9.5, bars.getClose(0), 0);
+        assertEquals(1100, bars.getVolume(0));
+        assertEquals(Instant.parse("2017-02-01T00:00:00Z").toEpochMilli(), bars.getEpochMillis(1));
+        assertEquals(10, bars.getOpen(1), 0);
+        assertEquals(11, bars.getHigh(1), 0);
+        assertEquals(9.75, bars.getLow(1), 0);
+        assertEquals(10.5, bars.getClose(1), 0);
+        assertEquals(1200, bars.getVolume(1));
+    }
+}
@@ -0,0 +1,83 @@
+package org.lst.trading.lib.csv;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FastCsvWriterTest {
+    private static final double[] EDGE_CASES = {
+        0, -0.0, 1, -1, 0.1, 0.2, 0.3, 1e15, 1e16, 1e22, 1e-15, 1e-16, 123.456, 9007199254740991., 9007199254740993.,
+        Double.MIN_VALUE, Double.MIN_NORMAL, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    private static String[] write(double[] values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FastCsvWriter writer = new FastCsvWriter(Channels.newChannel(out));
+        for (double value : values) {
+            writer.field(value).endRow();
+        }
+        writer.close();
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII).split("\n");
+    }
+
+    private static void assertRoundTrip(double[] values) {
+        String[] lines = write(values);
+        assertEquals(values.length, lines.length);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(lines[i], Double.doubleToLongBits(values[i]), Double.doubleToLongBits(Double.parseDouble(lines[i])));
+        }
+    }
+
+    @Test public void doublesRoundTrip() {
+        assertRoundTrip(EDGE_CASES);
+
+        Random random = new Random(1);
+        double[] values = new double[300000];
+        for (int i = 0; i < values.length; i++) {
+            switch (i % 3) {
+                case 0:
+                    values[i] = Double.longBitsToDouble(random.nextLong());
+                    break;
+                case 1:
+                    // prices with a few decimals
+                    values[i] = Math.round(random.nextDouble() * 1e7) / Math.pow(10, random.nextInt(7));
+                    break;
+                default:
+                    values[i] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20);
+            }
+        }
+        assertRoundTrip(values);
+    }
+
+    @Test public void shortestDigits() {
+        assertArrayEquals(new String[]{"0.0", "-0.0", "12.0", "-12.34", "0.1", "0.30000000000000004", "1.0E22"},
+            write(new double[]{0, -0.0, 12, -12.34, 0.1, 0.1 + 0.2, 1e22}));
+    }
+
+    @Test public void timesLikeInstant() {
+        Random random = new Random(2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FastCsvWriter writer = new FastCsvWriter(Channels.newChannel(out));
+        long min = Instant.parse("0001-01-01T00:00:00Z").toEpochMilli();
+        long max = Instant.parse("9999-12-31T23:59:59.999Z").toEpochMilli();
+        long[] times = new long[10000];
+        for (int i = 0; i < times.length; i++) {
+            // whole days, seconds or millis
+            long time = min + (long) (random.nextDouble() * (max - min));
+            times[i] = i % 3 == 0 ? time - Math.floorMod(time, 86400000L) : i % 3 == 1 ? time - Math.floorMod(time, 1000L) : time;
+            writer.time(times[i]).endRow();
+        }
+        writer.close();
+        String[] lines = new String(out.toByteArray(), StandardCharsets.US_ASCII).split("\n");
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(Instant.ofEpochMilli(times[i]).toString(), lines[i]);
+        }
+    }
+}
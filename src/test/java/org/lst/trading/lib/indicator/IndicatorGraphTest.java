@@ -0,0 +1,99 @@
+package org.lst.trading.lib.indicator;
+
+import org.junit.Test;
+import org.lst.trading.lib.backtest.Backtest;
+import org.lst.trading.lib.model.Instrument;
+import org.lst.trading.lib.model.TradingContext;
+import org.lst.trading.lib.model.TradingStrategy;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.lib.util.rolling.RollingZScore;
+import org.lst.trading.main.strategy.MultipleTradingStrategy;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IndicatorGraphTest {
+    private static final int WINDOW = 20;
+
+    static MultipleDoubleSeries prices(int n) {
+        Random random = new Random(7);
+        long[] times = new long[n];
+        double[][] columns = new double[2][n];
+        double x = 50;
+        for (int i = 0; i < n; i++) {
+            x *= 1 + 0.01 * random.nextGaussian();
+            times[i] = 86400000L * i;
+            columns[0][i] = x;
+            columns[1][i] = 1.5 * x + 3 + random.nextGaussian();
+        }
+        return MultipleDoubleSeries.of(Arrays.asList("X", "Y"), times, columns);
+    }
+
+    /**
+     * Declares the z-score of the spread Y - X and records it on every tick.
+     */
+    static class SpreadZScore implements TradingStrategy {
+        final double[] mValues;
+        TradingContext mContext;
+        Indicator mZScore;
+        int mTick;
+
+        SpreadZScore(int ticks) {
+            mValues = new double[ticks];
+        }
+
+        @Override public void onStart(TradingContext context) {
+            mContext = context;
+            IndicatorGraph indicators = context.getIndicators();
+            Indicator spread = indicators.difference(indicators.price(context.getInstrument("Y")), indicators.price(context.getInstrument("X")));
+            mZScore = indicators.zScore(spread, WINDOW);
+        }
+
+        @Override public void onTick() {
+            mValues[mTick++] = mContext.getIndicators().get(mZScore);
+        }
+    }
+
+    @Test public void strategiesShareOneZScoreNode() {
+        MultipleDoubleSeries prices = prices(300);
+        SpreadZScore first = new SpreadZScore(prices.size());
+        SpreadZScore second = new SpreadZScore(prices.size());
+        IndicatorGraph[] graph = new IndicatorGraph[1];
+        TradingStrategy capture = new TradingStrategy() {
+            @Override public void onStart(TradingContext context) {
+                graph[0] = context.getIndicators();
+            }
+        };
+        new Backtest(15000, prices).run(MultipleTradingStrategy.of(first, second, capture));
+
+        assertSame(first.mZScore, second.mZScore);
+        // price X, price Y, difference and z-score
+        assertEquals(4, graph[0].size());
+
+        RollingZScore expected = new RollingZScore(WINDOW);
+        for (int i = 0; i < prices.size(); i++) {
+            expected.add(prices.getValue(i, 1) - prices.getValue(i, 0));
+            double value = expected.isFull() ? expected.getZScore() : Double.NaN;
+            assertEquals(value, first.mValues[i], 0);
+            assertEquals(value, second.mValues[i], 0);
+        }
+        assertTrue(Double.isNaN(first.mValues[WINDOW - 2]));
+        assertTrue(Double.isFinite(first.mValues[WINDOW - 1]));
+    }
+
+    @Test public void getBeforeFirstBarFails() {
+        IndicatorGraph indicators = new IndicatorGraph();
+        Indicator price = indicators.price(Instrument.byName(Arrays.asList("X")).get("X"));
+        String message = null;
+        try {
+            indicators.get(price);
+        } catch (RuntimeException e) {
+            message = e.getMessage();
+        }
+        assertEquals("Indicator price(#0) has no value before the first bar", message);
+    }
+}
@@ -0,0 +1,172 @@
+package org.lst.trading.lib.montecarlo;
+
+import org.junit.Test;
+import org.lst.trading.lib.backtest.Backtest;
+import org.lst.trading.lib.model.ClosedOrder;
+import org.lst.trading.lib.series.DoubleSeries;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.lib.util.Statistics;
+import org.lst.trading.main.strategy.kalman.CointegrationTradingStrategy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MonteCarloTest {
+    private static final double DEPOSIT = 15000;
+
+    /**
+     * A cointegrated pair X, Y with {@code n} daily rows, deterministic for a fixed seed.
+     */
+    static MultipleDoubleSeries pair(int n) {
+        Random random = new Random(5);
+        long[] times = new long[n];
+        double[][] columns = new double[2][n];
+        double x = 50, error = 0;
+        for (int i = 0; i < n; i++) {
+            x *= 1 + 0.01 * random.nextGaussian();
+            error = 0.9 * error + 0.5 * random.nextGaussian();
+            times[i] = 86400000L * (10000 + i);
+            columns[0][i] = x;
+            columns[1][i] = 1.5 * x + 3 + error;
+        }
+        return MultipleDoubleSeries.of(Arrays.asList("X", "Y"), times, columns);
+    }
+
+    static Backtest.Result backtest(MultipleDoubleSeries prices) {
+        Backtest backtest = new Backtest(DEPOSIT, prices);
+        backtest.setLeverage(2);
+        return backtest.run(new CointegrationTradingStrategy("X", "Y"));
+    }
+
+    /**
+     * A result whose account values are the given values, without orders.
+     */
+    static Backtest.Result accountValues(double... values) {
+        long[] times = new long[values.length];
+        double[] pl = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            times[i] = 86400000L * i;
+            pl[i] = values[i] - values[0];
+        }
+        return new Backtest.Result(0, DoubleSeries.of("pl", times, pl), null, Collections.<ClosedOrder>emptyList(), values[0], values[values.length - 1], 0);
+    }
+
+    static MonteCarlo monteCarlo(int samples, int blockSize, int threads) {
+        MonteCarlo monteCarlo = new MonteCarlo();
+        monteCarlo.setSamples(samples);
+        monteCarlo.setBlockSize(blockSize);
+        monteCarlo.setSeed(7);
+        monteCarlo.setPool(new ForkJoinPool(threads));
+        return monteCarlo;
+    }
+
+    static void assertSameReport(MonteCarlo.Report expected, MonteCarlo.Report actual) {
+        assertArrayEquals(expected.getSharpe().mSamples, actual.getSharpe().mSamples, 0);
+        assertArrayEquals(expected.getMaxDrawdownPercent().mSamples, actual.getMaxDrawdownPercent().mSamples, 0);
+        assertArrayEquals(expected.getFinalValue().mSamples, actual.getFinalValue().mSamples, 0);
+    }
+
+    @Test public void evaluateMatchesStatistics() {
+        Random random = new Random(3);
+        double[] path = new double[301];
+        path[0] = 1000;
+        for (int t = 1; t < path.length; t++) {
+            path[t] = path[t - 1] * (1 + 0.01 * random.nextGaussian());
+        }
+        // only the first n values of the buffer are a path
+        double[] buffer = Arrays.copyOf(path, path.length + 10);
+        Arrays.fill(buffer, path.length, buffer.length, 1);
+
+        double[] sharpe = new double[2];
+        double[] maxDrawdownPercent = new double[2];
+        double[] finalValue = new double[2];
+        MonteCarlo.evaluate(buffer, path.length, 1, sharpe, maxDrawdownPercent, finalValue);
+
+        double expected = Statistics.sharpe(Statistics.returns(path));
+        assertEquals(expected, sharpe[1], Math.abs(expected) * 1e-12);
+        assertEquals(Statistics.drawdown(path)[1], maxDrawdownPercent[1], 0);
+        assertEquals(path[path.length - 1], finalValue[1], 0);
+        assertEquals(0, sharpe[0], 0);
+    }
+
+    @Test public void reportsDependOnlyOnTheSeed() {
+        MultipleDoubleSeries prices = pair(300);
+        Backtest.Result result = backtest(prices);
+        assertTrue(result.getOrders().size() > 10);
+
+        // more samples than one chunk, so the chunks run in a different order on more threads
+        assertSameReport(monteCarlo(1000, 20, 1).bootstrapReturns(result), monteCarlo(1000, 20, 4).bootstrapReturns(result));
+        assertSameReport(monteCarlo(1000, 20, 1).shuffleTrades(result), monteCarlo(1000, 20, 4).shuffleTrades(result));
+        assertSameReport(monteCarlo(600, 20, 1).resamplePrices(prices, DEPOSIT, 2, () -> new CointegrationTradingStrategy("X", "Y")),
+            monteCarlo(600, 20, 4).resamplePrices(prices, DEPOSIT, 2, () -> new CointegrationTradingStrategy("X", "Y")));
+    }
+
+    @Test public void shuffleTradesKeepsTheFinalValue() {
+        Backtest.Result result = backtest(pair(300));
+        double expected = result.getInitialFund();
+        for (ClosedOrder order : result.getOrders()) {
+            expected += order.getPl();
+        }
+
+        MonteCarlo.Distribution finalValue = monteCarlo(500, 20, 2).shuffleTrades(result).getFinalValue();
+        assertEquals(500, finalValue.size());
+        assertEquals(expected, finalValue.getPercentile(0), 1e-9);
+        assertEquals(expected, finalValue.getPercentile(1), 1e-9);
+    }
+
+    @Test public void resamplingWithOneBlockReproducesTheBacktest() {
+        MultipleDoubleSeries prices = pair(200);
+        Backtest.Result expected = backtest(prices);
+
+        // a block of all returns can only start at the first return, so every path is the original prices
+        MonteCarlo.Report report = monteCarlo(300, prices.size(), 2).resamplePrices(prices, DEPOSIT, 2, () -> new CointegrationTradingStrategy("X", "Y"));
+        for (MonteCarlo.Distribution distribution : new MonteCarlo.Distribution[]{report.getSharpe(), report.getMaxDrawdownPercent(), report.getFinalValue()}) {
+            assertEquals(300, distribution.size());
+        }
+        assertEquals(expected.getFinalValue(), report.getFinalValue().getPercentile(0), 1e-6);
+        assertEquals(expected.getFinalValue(), report.getFinalValue().getPercentile(1), 1e-6);
+        assertEquals(expected.getSharpe(), report.getSharpe().getMedian(), 1e-9);
+        assertEquals(expected.getMaxDrawdownPercent(), report.getMaxDrawdownPercent().getMedian(), 1e-9);
+    }
+
+    @Test public void blocksStartAtEveryValidReturn() {
+        // returns 2, 3 and 4; blocks of 2 start at the first or the second return, the path takes one full block and
+        // the first return of another
+        MonteCarlo.Distribution finalValue = monteCarlo(1000, 2, 1).bootstrapReturns(accountValues(1, 2, 6, 24)).getFinalValue();
+
+        Set<Double> values = new HashSet<>();
+        for (int i = 0; i < finalValue.size(); i++) {
+            values.add(finalValue.mSamples[i]);
+        }
+        assertEquals(new HashSet<>(Arrays.asList(2.0 * 3 * 2, 2.0 * 3 * 3, 3.0 * 4 * 2, 3.0 * 4 * 3)), values);
+    }
+
+    @Test public void distributionSkipsNaN() {
+        MonteCarlo.Distribution distribution = new MonteCarlo.Distribution(new double[]{3, Double.NaN, 1, 4, Double.NaN, 2});
+        assertEquals(4, distribution.size());
+        assertEquals(1, distribution.getPercentile(0), 0);
+        assertEquals(4, distribution.getPercentile(1), 0);
+        assertEquals(2, distribution.getPercentile(1.0 / 3), 1e-15);
+        assertEquals(2.5, distribution.getMedian(), 0);
+        assertEquals(2.5, distribution.getMean(), 0);
+        assertEquals(1.75, distribution.getInterval(0.5).getLower(), 0);
+        assertEquals(3.25, distribution.getInterval(0.5).getUpper(), 0);
+
+        MonteCarlo.Distribution single = new MonteCarlo.Distribution(new double[]{Double.NaN, 5});
+        assertEquals(5, single.getPercentile(0), 0);
+        assertEquals(5, single.getPercentile(1), 0);
+
+        MonteCarlo.Distribution empty = new MonteCarlo.Distribution(new double[]{Double.NaN, Double.NaN});
+        assertEquals(0, empty.size());
+        assertTrue(Double.isNaN(empty.getMedian()));
+        assertTrue(Double.isNaN(empty.getMean()));
+    }
+}
@@ -0,0 +1,154 @@
+package org.lst.trading.lib.optimization;
+
+import org.junit.Test;
+import org.lst.trading.lib.backtest.Backtest;
+import org.lst.trading.lib.model.TradingStrategy;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.main.strategy.kalman.CointegrationTradingStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PairScannerTest {
+    private static final double DEPOSIT = 15000;
+    private static final int SYMBOLS = 10;
+    private static final int ROWS = 300;
+    // the last symbol is listed late, its prices are NaN before this row
+    private static final int LISTING_ROW = 120;
+
+    /**
+     * Symbols S0 .. S9 which follow one random walk with their own level and noise, so some pairs are cointegrated and
+     * some are not.
+     */
+    static MultipleDoubleSeries universe() {
+        Random random = new Random(11);
+        List<String> names = new ArrayList<>();
+        long[] times = new long[ROWS];
+        double[][] columns = new double[SYMBOLS][ROWS];
+        double[] errors = new double[SYMBOLS];
+        double x = 50;
+        for (int i = 0; i < ROWS; i++) {
+            x *= 1 + 0.01 * random.nextGaussian();
+            times[i] = 86400000L * (10000 + i);
+            for (int s = 0; s < SYMBOLS; s++) {
+                errors[s] = (0.5 + 0.05 * s) * errors[s] + (0.2 + 0.1 * s) * random.nextGaussian();
+                columns[s][i] = (1 + 0.1 * s) * x + s + errors[s];
+            }
+            if (i < LISTING_ROW) {
+                columns[SYMBOLS - 1][i] = Double.NaN;
+            }
+        }
+        for (int s = 0; s < SYMBOLS; s++) {
+            names.add("S" + s);
+        }
+        return MultipleDoubleSeries.of(names, times, columns);
+    }
+
+    /**
+     * Counts the pairs the scanner creates a strategy for.
+     */
+    static class CountingFactory implements PairScanner.PairStrategyFactory {
+        Map<String, Integer> mPairs = new ConcurrentHashMap<>();
+
+        @Override public TradingStrategy create(String x, String y) {
+            mPairs.merge(x + "/" + y, 1, Integer::sum);
+            return new CointegrationTradingStrategy(x, y);
+        }
+    }
+
+    static PairScanner scanner(MultipleDoubleSeries universe, PairScanner.PairStrategyFactory factory, int topK) {
+        PairScanner scanner = new PairScanner(DEPOSIT, universe, factory);
+        scanner.setLeverage(2);
+        scanner.setTopK(topK);
+        scanner.setPool(new ForkJoinPool(4));
+        return scanner;
+    }
+
+    @Test public void topPairsMatchSequentialBacktests() {
+        MultipleDoubleSeries universe = universe();
+        CountingFactory factory = new CountingFactory();
+        List<PairScanner.Pair> top = scanner(universe, factory, 7).run();
+
+        // every ordered pair exactly once
+        assertEquals(SYMBOLS * (SYMBOLS - 1), factory.mPairs.size());
+        for (int x = 0; x < SYMBOLS; x++) {
+            for (int y = 0; y < SYMBOLS; y++) {
+                if (x != y) {
+                    assertEquals(Integer.valueOf(1), factory.mPairs.get("S" + x + "/S" + y));
+                }
+            }
+        }
+
+        List<PairScanner.Pair> expected = new ArrayList<>();
+        for (String x : universe.getNames()) {
+            for (String y : universe.getNames()) {
+                if (x.equals(y)) {
+                    continue;
+                }
+                MultipleDoubleSeries prices = universe.select(x, y);
+                int from = x.equals("S9") || y.equals("S9") ? LISTING_ROW : 0;
+                Backtest backtest = new Backtest(DEPOSIT, prices, from, prices.size());
+                backtest.setLeverage(2);
+                Backtest.Result result = backtest.run(new CointegrationTradingStrategy(x, y));
+                if (!Double.isNaN(result.getSharpe())) {
+                    expected.add(new PairScanner.Pair(x, y, result, result.getSharpe()));
+                }
+            }
+        }
+        expected.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        assertTrue(expected.size() > 7);
+
+        assertEquals(7, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(expected.get(i).getX(), top.get(i).getX());
+            assertEquals(expected.get(i).getY(), top.get(i).getY());
+            assertEquals(expected.get(i).getScore(), top.get(i).getScore(), 0);
+            assertEquals(expected.get(i).getResult().getFinalValue(), top.get(i).getResult().getFinalValue(), 0);
+        }
+    }
+
+    @Test public void lateListedSymbolStartsAtItsFirstPrice() {
+        MultipleDoubleSeries universe = universe();
+        List<PairScanner.Pair> all = scanner(universe, new CountingFactory(), SYMBOLS * SYMBOLS).run();
+
+        int late = 0;
+        for (PairScanner.Pair pair : all) {
+            int from = pair.getX().equals("S9") || pair.getY().equals("S9") ? LISTING_ROW : 0;
+            assertEquals(ROWS - from, pair.getResult().getDaysCount());
+            assertEquals(universe.getEpochMillis(from), pair.getResult().getPlHistory().getEpochMillis(0));
+            late += from > 0 ? 1 : 0;
+        }
+        assertTrue(late > 0);
+    }
+
+    @Test public void pairsWithTooFewRowsAreSkipped() {
+        MultipleDoubleSeries universe = universe();
+        CountingFactory factory = new CountingFactory();
+        PairScanner scanner = scanner(universe, factory, SYMBOLS * SYMBOLS);
+        scanner.setMinRows(ROWS - LISTING_ROW + 1);
+
+        List<PairScanner.Pair> all = scanner.run();
+
+        // the pairs of the late symbol have one row too few
+        assertEquals((SYMBOLS - 1) * (SYMBOLS - 2), factory.mPairs.size());
+        for (String pair : factory.mPairs.keySet()) {
+            assertFalse(pair, pair.contains("S9"));
+        }
+        for (PairScanner.Pair pair : all) {
+            assertFalse(pair.getX().equals("S9") || pair.getY().equals("S9"));
+        }
+
+        scanner.setMinRows(ROWS - LISTING_ROW);
+        factory.mPairs.clear();
+        scanner.run();
+        assertEquals(SYMBOLS * (SYMBOLS - 1), factory.mPairs.size());
+    }
+}
@@ -0,0 +1,65 @@
+package org.lst.trading.lib.optimization;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ParameterGridTest {
+    static double[] values(ParameterSet parameters) {
+        return parameters.getNames().stream().mapToDouble(parameters::get).toArray();
+    }
+
+    @Test public void enumeratesTheCartesianProduct() {
+        ParameterGrid grid = ParameterGrid.create().add("a", 1, 2).add("b", 10, 20, 30).add("c", -1);
+        List<ParameterSet> sets = grid.getParameterSets();
+
+        assertEquals(6, grid.size());
+        assertEquals(6, sets.size());
+        assertEquals(6, new HashSet<>(sets).size());
+        // the last parameter varies fastest
+        int index = 0;
+        for (double a : new double[]{1, 2}) {
+            for (double b : new double[]{10, 20, 30}) {
+                ParameterSet parameters = sets.get(index);
+                assertEquals(Arrays.asList("a", "b", "c"), parameters.getNames());
+                assertArrayEquals(new double[]{a, b, -1}, values(parameters), 0);
+                assertEquals(parameters, grid.get(index));
+                index++;
+            }
+        }
+    }
+
+    @Test public void rangesIncludeTheirEnds() {
+        ParameterGrid grid = ParameterGrid.create().range("x", 0, 1, 0.25).logRange("y", 1e-10, 1e-6, 5);
+        assertEquals(25, grid.size());
+        assertArrayEquals(new double[]{0, 0.25, 0.5, 0.75, 1}, grid.mValues.get(0), 0);
+        double[] logValues = grid.mValues.get(1);
+        for (int i = 0; i < logValues.length; i++) {
+            assertEquals(-10 + i, Math.log10(logValues[i]), 1e-12);
+        }
+        // a step which does not divide the range stops below its end
+        assertEquals(3, ParameterGrid.create().range("x", 0, 1, 0.4).size());
+    }
+
+    @Test public void sizeFailsInsteadOfOverflowing() {
+        double[] values = new double[2000];
+        ParameterGrid grid = ParameterGrid.create().add("a", values).add("b", values);
+        assertEquals(4000000, grid.size());
+
+        grid.add("c", values);
+        String message = null;
+        try {
+            grid.size();
+        } catch (RuntimeException e) {
+            message = e.getMessage();
+        }
+        assertNotNull(message);
+        assertEquals("More than 2147483647 parameter sets", message);
+    }
+}
@@ -0,0 +1,124 @@
+package org.lst.trading.lib.optimization;
+
+import org.junit.Test;
+import org.lst.trading.lib.backtest.Backtest;
+import org.lst.trading.lib.model.TradingStrategy;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.main.strategy.kalman.CointegrationTradingStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParameterSweepTest {
+    static final double DEPOSIT = 15000;
+
+    /**
+     * A cointegrated pair X, Y with {@code n} daily rows, deterministic for a fixed seed.
+     */
+    static MultipleDoubleSeries pair(long seed, int n) {
+        Random random = new Random(seed);
+        long[] times = new long[n];
+        double[][] columns = new double[2][n];
+        double x = 50, error = 0;
+        for (int i = 0; i < n; i++) {
+            x *= 1 + 0.01 * random.nextGaussian();
+            error = 0.9 * error + 0.5 * random.nextGaussian();
+            times[i] = 86400000L * (10000 + i);
+            columns[0][i] = x;
+            columns[1][i] = 1.5 * x + 3 + error;
+        }
+        return MultipleDoubleSeries.of(Arrays.asList("X", "Y"), times, columns);
+    }
+
+    /**
+     * The cointegration strategy on X and Y with the entry threshold from the parameter "entry".
+     */
+    static TradingStrategy strategy(ParameterSet parameters) {
+        CointegrationTradingStrategy strategy = new CointegrationTradingStrategy("X", "Y");
+        strategy.setEntryThreshold(parameters.get("entry"));
+        return strategy;
+    }
+
+    static void assertSameResult(Backtest.Result expected, Backtest.Result actual) {
+        assertEquals(expected.getFinalValue(), actual.getFinalValue(), 0);
+        assertEquals(expected.getPl(), actual.getPl(), 0);
+        assertEquals(expected.getCommissions(), actual.getCommissions(), 0);
+        assertEquals(expected.getSharpe(), actual.getSharpe(), 0);
+        assertEquals(expected.getOrders().size(), actual.getOrders().size());
+        assertEquals(expected.getPlHistory().size(), actual.getPlHistory().size());
+    }
+
+    static ParameterSweep.Run run(double score) {
+        return new ParameterSweep.Run(null, null, score);
+    }
+
+    @Test public void parallelRunMatchesSequentialBacktests() {
+        MultipleDoubleSeries prices = pair(1, 600);
+        ParameterGrid grid = ParameterGrid.create().add("entry", 0.5, 1, 1.5, 2).add(ParameterSweep.LEVERAGE, 1, 2);
+        ParameterSweep sweep = new ParameterSweep(DEPOSIT, prices, ParameterSweepTest::strategy);
+        sweep.setPool(new ForkJoinPool(4));
+
+        List<ParameterSweep.Run> runs = sweep.run(grid);
+
+        assertEquals(grid.size(), runs.size());
+        List<ParameterSet> parameters = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i++) {
+            ParameterSweep.Run run = runs.get(i);
+            parameters.add(run.getParameters());
+
+            Backtest backtest = new Backtest(DEPOSIT, prices);
+            backtest.setLeverage(run.getParameters().get(ParameterSweep.LEVERAGE));
+            Backtest.Result expected = backtest.run(strategy(run.getParameters()));
+            assertSameResult(expected, run.getResult());
+            assertEquals(expected.getSharpe(), run.getScore(), 0);
+            assertTrue(expected.getOrders().size() > 0);
+            if (i > 0) {
+                assertTrue(runs.get(i - 1).getScore() >= run.getScore());
+            }
+        }
+        assertEquals(new HashSet<>(grid.getParameterSets()), new HashSet<>(parameters));
+    }
+
+    @Test public void rankingPutsNaNLast() {
+        List<ParameterSweep.Run> runs = new ArrayList<>(Arrays.asList(
+            run(1), run(Double.NaN), run(3), run(Double.NEGATIVE_INFINITY), run(Double.NaN), run(-2)));
+        Collections.sort(runs, ParameterSweep.RANKING);
+
+        double[] scores = runs.stream().mapToDouble(ParameterSweep.Run::getScore).toArray();
+        assertEquals(3, scores[0], 0);
+        assertEquals(1, scores[1], 0);
+        assertEquals(-2, scores[2], 0);
+        assertEquals(Double.NEGATIVE_INFINITY, scores[3], 0);
+        assertTrue(Double.isNaN(scores[4]));
+        assertTrue(Double.isNaN(scores[5]));
+        assertEquals(3, Collections.min(runs, ParameterSweep.RANKING).getScore(), 0);
+    }
+
+    @Test public void leverageParameterOverridesSetLeverage() {
+        MultipleDoubleSeries prices = pair(2, 600);
+        ParameterSweep sweep = new ParameterSweep(DEPOSIT, prices, ParameterSweepTest::strategy);
+        sweep.setLeverage(1);
+
+        ParameterSet withLeverage = ParameterGrid.create().add("entry", 1).add(ParameterSweep.LEVERAGE, 3).get(0);
+        ParameterSet withoutLeverage = ParameterGrid.create().add("entry", 1).get(0);
+
+        Backtest leveraged = new Backtest(DEPOSIT, prices);
+        leveraged.setLeverage(3);
+        Backtest.Result expected = leveraged.run(strategy(withLeverage));
+        assertSameResult(expected, sweep.run(withLeverage).getResult());
+
+        // without the parameter the sweep's leverage applies
+        Backtest.Result unleveraged = new Backtest(DEPOSIT, prices).run(strategy(withoutLeverage));
+        assertSameResult(unleveraged, sweep.run(withoutLeverage).getResult());
+        assertNotEquals(expected.getFinalValue(), unleveraged.getFinalValue(), 1e-6);
+    }
+}
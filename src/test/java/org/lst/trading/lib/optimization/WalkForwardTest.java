@@ -0,0 +1,146 @@
+package org.lst.trading.lib.optimization;
+
+import org.junit.Test;
+import org.lst.trading.lib.backtest.Backtest;
+import org.lst.trading.lib.model.TradingContext;
+import org.lst.trading.lib.model.TradingStrategy;
+import org.lst.trading.lib.series.DoubleSeries;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WalkForwardTest {
+    private static final double DEPOSIT = 1000;
+
+    /**
+     * Buys the parameter "units" of X on the first tick and holds them. Large positions use up the deposit, so a falling
+     * price stops the backtest early.
+     */
+    static class BuyAndHoldUnits implements TradingStrategy {
+        int mUnits;
+        TradingContext mContext;
+        boolean mBought;
+
+        BuyAndHoldUnits(ParameterSet parameters) {
+            mUnits = (int) parameters.get("units");
+        }
+
+        @Override public void onStart(TradingContext context) {
+            mContext = context;
+        }
+
+        @Override public void onTick() {
+            if (!mBought) {
+                mContext.order("X", true, mUnits);
+                mBought = true;
+            }
+        }
+    }
+
+    /**
+     * One instrument X around 10 which trends up and down in turns of 45 days.
+     */
+    static MultipleDoubleSeries trending(int n) {
+        Random random = new Random(3);
+        long[] times = new long[n];
+        double[][] columns = new double[1][n];
+        double x = 10;
+        for (int i = 0; i < n; i++) {
+            x *= 1 + (i / 45 % 2 == 0 ? 0.004 : -0.004) + 0.01 * random.nextGaussian();
+            times[i] = 86400000L * (10000 + i);
+            columns[0][i] = x;
+        }
+        return MultipleDoubleSeries.of(Collections.singletonList("X"), times, columns);
+    }
+
+    static ParameterSweep sweep(MultipleDoubleSeries prices) {
+        ParameterSweep sweep = new ParameterSweep(DEPOSIT, prices, BuyAndHoldUnits::new);
+        sweep.setScore(Backtest.Result::getFinalValue);
+        sweep.setPool(new ForkJoinPool(3));
+        return sweep;
+    }
+
+    static void assertWindow(WalkForward.Window window, int inSampleFrom, int outOfSampleFrom, int outOfSampleTo) {
+        assertEquals(inSampleFrom, window.getInSampleFrom());
+        assertEquals(outOfSampleFrom, window.getOutOfSampleFrom());
+        assertEquals(outOfSampleTo, window.getOutOfSampleTo());
+    }
+
+    @Test public void windowsRollByTheOutOfSampleLength() {
+        // the last window is cut at the end of the series
+        List<WalkForward.Window> windows = new WalkForward(sweep(trending(11)), 4, 3).getWindows();
+        assertEquals(3, windows.size());
+        assertWindow(windows.get(0), 0, 4, 7);
+        assertWindow(windows.get(1), 3, 7, 10);
+        assertWindow(windows.get(2), 6, 10, 11);
+
+        // a window needs at least one out-of-sample row
+        windows = new WalkForward(sweep(trending(10)), 4, 3).getWindows();
+        assertEquals(2, windows.size());
+        assertWindow(windows.get(1), 3, 7, 10);
+
+        assertTrue(new WalkForward(sweep(trending(4)), 4, 3).getWindows().isEmpty());
+        assertEquals(1, new WalkForward(sweep(trending(5)), 4, 3).getWindows().size());
+    }
+
+    @Test public void equityChainsOutOfSampleBacktests() {
+        MultipleDoubleSeries prices = trending(400);
+        ParameterGrid grid = ParameterGrid.create().add("units", 5, 40, 90);
+        WalkForward.Result result = new WalkForward(sweep(prices), 60, 25).run(grid);
+
+        DoubleSeries expected = new DoubleSeries("equity");
+        Set<Double> selected = new HashSet<>();
+        int earlyStops = 0;
+        double value = DEPOSIT;
+        for (WalkForward.Window window : result.getWindows()) {
+            // the best in-sample run, by final value
+            List<ParameterSweep.Run> inSample = new ArrayList<>();
+            for (ParameterSet parameters : grid.getParameterSets()) {
+                Backtest.Result run = new Backtest(DEPOSIT, prices, window.getInSampleFrom(), window.getOutOfSampleFrom()).run(new BuyAndHoldUnits(parameters));
+                inSample.add(new ParameterSweep.Run(parameters, run, run.getFinalValue()));
+            }
+            ParameterSweep.Run best = Collections.min(inSample, ParameterSweep.RANKING);
+            assertEquals(best.getParameters(), window.getInSample().getParameters());
+            assertEquals(best.getScore(), window.getInSample().getScore(), 0);
+            assertEquals(best.getParameters(), window.getOutOfSample().getParameters());
+            selected.add(best.getParameters().get("units"));
+
+            // the selected parameters backtested out of sample only, scaled to the value reached so far
+            Backtest.Result outOfSample = new Backtest(DEPOSIT, prices, window.getOutOfSampleFrom(), window.getOutOfSampleTo()).run(new BuyAndHoldUnits(best.getParameters()));
+            DoubleSeries pl = outOfSample.getPlHistory();
+            assertEquals(prices.getEpochMillis(window.getOutOfSampleFrom()), pl.getEpochMillis(0));
+            double scale = value / DEPOSIT;
+            for (int i = 0; i < pl.size(); i++) {
+                expected.add((DEPOSIT + pl.getValue(i)) * scale, pl.getEpochMillis(i));
+            }
+            value = (DEPOSIT + outOfSample.getPl() - outOfSample.getCommissions()) * scale;
+            if (window.getOutOfSampleFrom() + pl.size() < window.getOutOfSampleTo()) {
+                earlyStops++;
+            }
+            for (int row = window.getOutOfSampleFrom() + pl.size(); row < window.getOutOfSampleTo(); row++) {
+                expected.add(value, prices.getEpochMillis(row));
+            }
+        }
+
+        DoubleSeries equity = result.getEquity();
+        assertEquals(prices.size() - 60, equity.size());
+        assertEquals(expected.size(), equity.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getEpochMillis(i), equity.getEpochMillis(i));
+            assertEquals(expected.getValue(i), equity.getValue(i), 0);
+        }
+        // the fixture selects different parameters over time and stops some windows early
+        assertTrue(selected.size() > 1);
+        assertTrue(earlyStops > 0);
+        assertTrue(earlyStops < result.getWindows().size());
+    }
+}
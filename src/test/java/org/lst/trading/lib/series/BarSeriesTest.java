@@ -0,0 +1,98 @@
+package org.lst.trading.lib.series;
+
+import org.junit.Test;
+import org.lst.trading.lib.model.Bar;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BarSeriesTest {
+    private static final long DAY = 86400000L;
+
+    /**
+     * {@code n} daily bars, the fields of row i are derived from i so every row and field differs.
+     */
+    static BarSeries bars(int n) {
+        BarSeries series = new BarSeries("X", Duration.ofDays(1));
+        for (int i = 0; i < n; i++) {
+            series.add(i * DAY, 100 + i, 102 + i, 99 + i, 101 + i, 1000 + i);
+        }
+        return series;
+    }
+
+    static void assertRow(BarSeries series, int row, Bar bar) {
+        assertEquals(series.getEpochMillis(row), bar.getStartEpochMillis());
+        assertEquals(Instant.ofEpochMilli(series.getEpochMillis(row)), bar.getStart());
+        assertEquals(series.getOpen(row), bar.getOpen(), 0);
+        assertEquals(series.getHigh(row), bar.getHigh(), 0);
+        assertEquals(series.getLow(row), bar.getLow(), 0);
+        assertEquals(series.getClose(row), bar.getClose(), 0);
+        assertEquals(series.getVolume(row), bar.getVolume());
+    }
+
+    @Test public void cursorIsOneViewOfEveryRow() {
+        // more rows than the default capacity
+        BarSeries series = bars(40);
+        assertEquals(40, series.size());
+        assertEquals(140, series.getClose(39), 0);
+        assertEquals(1039, series.getVolume(39));
+
+        BarSeries.Cursor cursor = series.cursor();
+        assertEquals(-1, cursor.getRow());
+        int rows = 0;
+        while (cursor.next()) {
+            assertEquals(rows, cursor.getRow());
+            assertRow(series, rows++, cursor);
+        }
+        assertEquals(40, rows);
+        assertFalse(cursor.next());
+        assertEquals(39, cursor.getRow());
+
+        assertSame(cursor, cursor.moveTo(7));
+        assertRow(series, 7, cursor);
+        assertEquals(Duration.ofDays(1), cursor.getDuration());
+        assertTrue(Double.isNaN(cursor.getWAP()));
+
+        // cursors move independently
+        BarSeries.Cursor other = series.cursor().moveTo(20);
+        assertRow(series, 7, cursor);
+        assertRow(series, 20, other);
+    }
+
+    @Test public void columnsAndRowLookup() {
+        BarSeries series = bars(5);
+        DoubleSeries highs = series.getHighs();
+        DoubleSeries closes = series.getCloses();
+        assertEquals("X", closes.getName());
+        assertEquals(5, closes.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i * DAY, closes.getEpochMillis(i));
+            assertEquals(series.getHigh(i), highs.getValue(i), 0);
+            assertEquals(series.getClose(i), closes.getValue(i), 0);
+        }
+
+        assertEquals(3, series.rowOf(3 * DAY));
+        assertEquals(-5, series.rowOf(3 * DAY + 1));
+        // rows added later are not in the copied columns
+        series.add(5 * DAY, 1, 1, 1, 1, 1);
+        assertEquals(5, closes.size());
+    }
+
+    @Test public void moveOutsideTheRowsFails() {
+        BarSeries.Cursor cursor = bars(3).cursor();
+        for (int row : new int[]{-1, 3}) {
+            boolean failed = false;
+            try {
+                cursor.moveTo(row);
+            } catch (RuntimeException e) {
+                failed = true;
+            }
+            assertTrue(failed);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.lst.trading.lib.series;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lst.trading.lib.store.RowFile;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DiagnosticsRecorderTest {
+    private static final long DAY = 86400000L;
+    private static final List<String> NAMES = Arrays.asList("a", "b");
+
+    @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+    /**
+     * Ticks the recorder {@code n} times a day apart and sets a = tick, b = -tick on the recorded ticks, the column b of
+     * every third tick is left unset.
+     */
+    static void record(DiagnosticsRecorder recorder, int n) {
+        recorder.start(NAMES);
+        for (int i = 0; i < n; i++) {
+            if (recorder.tick(i * DAY)) {
+                recorder.set(0, i);
+                if (i % 3 != 0) {
+                    recorder.set(1, -i);
+                }
+            }
+        }
+        recorder.finish();
+    }
+
+    /**
+     * Asserts the series holds the given ticks as recorded by {@link #record(DiagnosticsRecorder, int)}.
+     */
+    static void assertTicks(MultipleDoubleSeries series, int... ticks) {
+        assertEquals(NAMES, series.getNames());
+        assertEquals(ticks.length, series.size());
+        for (int row = 0; row < ticks.length; row++) {
+            int i = ticks[row];
+            assertEquals(i * DAY, series.getEpochMillis(row));
+            assertEquals(i, series.getValue(row, 0), 0);
+            assertEquals(i % 3 != 0 ? -i : Double.NaN, series.getValue(row, 1), 0);
+        }
+    }
+
+    static int[] range(int from, int to, int step) {
+        int[] ticks = new int[(to - from + step - 1) / step];
+        for (int k = 0; k < ticks.length; k++) {
+            ticks[k] = from + k * step;
+        }
+        return ticks;
+    }
+
+    @Test public void offRecordsNothing() {
+        DiagnosticsRecorder recorder = DiagnosticsRecorder.off();
+        recorder.start(NAMES);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(recorder.tick(i * DAY));
+        }
+        recorder.finish();
+        assertEquals(0, recorder.size());
+        assertEquals(0, recorder.toSeries().size());
+    }
+
+    @Test public void sampledKeepsEveryKthTick() {
+        DiagnosticsRecorder recorder = DiagnosticsRecorder.sampled(4);
+        record(recorder, 4099);
+        assertEquals(1025, recorder.size());
+        assertTicks(recorder.toSeries(), range(0, 4099, 4));
+
+        // starting again clears the rows and restarts the count at the first tick
+        record(recorder, 6);
+        assertTicks(recorder.toSeries(), 0, 4);
+    }
+
+    @Test public void fullKeepsEveryTickPastItsCapacity() {
+        DiagnosticsRecorder recorder = DiagnosticsRecorder.full(3);
+        record(recorder, 50);
+        assertEquals(50, recorder.size());
+        assertTicks(recorder.toSeries(), range(0, 50, 1));
+    }
+
+    @Test public void streamedRowsReadBackAsFull() throws Exception {
+        Path path = mFolder.getRoot().toPath().resolve("diagnostics.bin");
+        DiagnosticsRecorder streamed = DiagnosticsRecorder.streaming(RowFile.writer(path));
+        record(streamed, 10000);
+        assertEquals(10000, streamed.size());
+
+        DiagnosticsRecorder full = DiagnosticsRecorder.full();
+        record(full, 10000);
+        MultipleDoubleSeries expected = full.toSeries();
+        MultipleDoubleSeries actual = RowFile.read(path);
+        assertEquals(expected.getNames(), actual.getNames());
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getEpochMillis(row), actual.getEpochMillis(row));
+            for (int c = 0; c < NAMES.size(); c++) {
+                assertEquals(Double.doubleToRawLongBits(expected.getValue(row, c)), Double.doubleToRawLongBits(actual.getValue(row, c)));
+            }
+        }
+
+        boolean failed = false;
+        try {
+            streamed.toSeries();
+        } catch (RuntimeException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+    }
+}
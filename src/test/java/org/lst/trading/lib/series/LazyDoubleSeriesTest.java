@@ -0,0 +1,113 @@
+package org.lst.trading.lib.series;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class LazyDoubleSeriesTest {
+    private static final long DAY = 86400000L;
+
+    /**
+     * Random prices on the days {@code [from, from + n)} without the days in {@code skip}, with a zero price so that
+     * divisions and returns give infinities and NaN.
+     */
+    static DoubleSeries prices(String name, long seed, int from, int n, int... skip) {
+        Random random = new Random(seed);
+        DoubleSeries series = new DoubleSeries(name);
+        double price = 50;
+        for (int day = from; day < from + n; day++) {
+            price *= 1 + 0.02 * random.nextGaussian();
+            boolean skipped = false;
+            for (int s : skip) {
+                skipped |= s == day;
+            }
+            if (!skipped) {
+                series.add(day % 17 == 5 ? 0 : price, day * DAY);
+            }
+        }
+        return series;
+    }
+
+    static void assertSameSeries(DoubleSeries expected, LazyDoubleSeries actual) {
+        DoubleSeries series = actual.toSeries();
+        assertEquals(expected.getName(), series.getName());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.size(), series.size());
+        double[] values = actual.toArray();
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getEpochMillis(i), series.getEpochMillis(i));
+            long bits = Double.doubleToRawLongBits(expected.getValue(i));
+            assertEquals(bits, Double.doubleToRawLongBits(series.getValue(i)));
+            assertEquals(bits, Double.doubleToRawLongBits(values[i]));
+        }
+    }
+
+    @Test public void sameIndexMatchesEagerOperations() {
+        DoubleSeries x = prices("X", 1, 0, 300);
+        LazyDoubleSeries lazy = x.lazy();
+
+        assertSameSeries(x.plus(2.5).mul(3).mapToDouble(Math::log), lazy.plus(2.5).mul(3).mapToDouble(Math::log));
+        assertSameSeries(x.returns(3), lazy.returns(3));
+        assertSameSeries(x.lag(4), lazy.lag(4));
+        assertSameSeries(x.returns().div(x.lag(1)), lazy.returns().div(lazy.lag(1)));
+        assertSameSeries(x.lag(2).mul(x.returns(5)).plus(x), lazy.lag(2).mul(lazy.returns(5)).plus(lazy));
+        // a plan combined with itself, and more rows dropped than there are
+        assertSameSeries(x.div(x), lazy.div(lazy));
+        assertSameSeries(x.returns(400), lazy.returns(400));
+
+        // one index all along, the plans only differ in their row ranges
+        LazyDoubleSeries combined = lazy.lag(2).plus(lazy.returns(5));
+        assertSame(x.mTimes, combined.mTimes);
+        assertEquals(5, combined.mFrom);
+    }
+
+    @Test public void sameTimesMatchEagerOperations() {
+        DoubleSeries x = prices("X", 1, 0, 300);
+        DoubleSeries y = prices("Y", 2, 0, 300);
+        // z starts a day later, so z.lag(1) has the times of x.lag(2)
+        DoubleSeries z = prices("Z", 3, 1, 299);
+        assertNotSame(x.mTimes, y.mTimes);
+
+        assertSameSeries(x.plus(y), x.lazy().plus(y.lazy()));
+        assertSameSeries(x.div(y.lag(1)), x.lazy().div(y.lazy().lag(1)));
+        assertSameSeries(x.lag(2).mul(z.lag(1)), x.lazy().lag(2).mul(z.lazy().lag(1)));
+        assertSameSeries(z.returns(2).plus(x.returns(3)), z.lazy().returns(2).plus(x.lazy().returns(3)));
+
+        // aligned by row offset on the index of the left plan, nothing is materialized
+        LazyDoubleSeries shifted = x.lazy().lag(2).mul(z.lazy().lag(1));
+        assertSame(x.mTimes, shifted.mTimes);
+        assertEquals(2, shifted.mFrom);
+    }
+
+    @Test public void otherTimesMergeLikeEagerOperations() {
+        DoubleSeries x = prices("X", 1, 0, 300, 7, 8, 150);
+        DoubleSeries y = prices("Y", 2, 10, 300, 42, 151, 152);
+
+        assertSameSeries(x.plus(y), x.lazy().plus(y.lazy()));
+        assertSameSeries(x.returns().mul(y.lag(2)), x.lazy().returns().mul(y.lazy().lag(2)));
+        assertSameSeries(y.div(x).plus(1), y.lazy().div(x.lazy()).plus(1));
+        // same size but shifted times are merged as well
+        DoubleSeries z = prices("Z", 3, 1, 300);
+        assertSameSeries(prices("W", 4, 0, 300).plus(z), prices("W", 4, 0, 300).lazy().plus(z.lazy()));
+
+        // the merged plan starts over on a new index
+        LazyDoubleSeries merged = x.lazy().plus(y.lazy());
+        assertNotSame(x.mTimes, merged.mTimes);
+        assertNotSame(y.mTimes, merged.mTimes);
+        assertEquals(0, merged.mFrom);
+    }
+
+    @Test public void valuesAddedLaterAreNotPartOfThePlan() {
+        DoubleSeries x = prices("X", 1, 0, 20);
+        DoubleSeries expected = x.returns();
+        LazyDoubleSeries lazy = x.lazy().returns();
+        for (int day = 20; day < 100; day++) {
+            x.add(day, day * DAY);
+        }
+        assertSameSeries(expected, lazy);
+    }
+}
@@ -0,0 +1,53 @@
+package org.lst.trading.lib.series;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class MultipleDoubleSeriesTest {
+    private static final long DAY = 86400000L;
+
+    static MultipleDoubleSeries prices() {
+        MultipleDoubleSeries series = new MultipleDoubleSeries(Arrays.asList("A", "B"));
+        for (int i = 0; i < 5; i++) {
+            series.add(new double[]{10 + i, 20 + i}, i * DAY);
+        }
+        return series;
+    }
+
+    @Test public void getColumnSharesArraysUntilModified() {
+        MultipleDoubleSeries prices = prices();
+        DoubleSeries a = prices.getColumn("A");
+        DoubleSeries b = prices.getColumn("B");
+
+        assertSame(prices.mColumns[0], a.mValues);
+        assertSame(prices.mTimes, a.mTimes);
+        assertSame(a.mTimes, b.mTimes);
+        assertEquals(5, a.size());
+        assertEquals(13, a.getValue(3), 0);
+
+        // rows added to the table are past the end of the column
+        prices.add(new double[]{15, 25}, 5 * DAY);
+        assertEquals(5, a.size());
+        assertEquals(6, prices.getColumn("A").size());
+
+        // values set in the table are visible, as for select
+        prices.setValue(0, 0, 9);
+        assertEquals(9, a.getValue(0), 0);
+
+        // adding to the column copies its arrays and leaves the table alone
+        a.add(99, 10 * DAY);
+        assertNotSame(prices.mColumns[0], a.mValues);
+        assertNotSame(prices.mTimes, a.mTimes);
+        assertEquals(6, a.size());
+        assertEquals(99, a.getLast(), 0);
+        assertEquals(4 * DAY, a.getEpochMillis(4));
+        assertEquals(15, prices.getValue(5, 0), 0);
+        assertEquals(5 * DAY, prices.getEpochMillis(5));
+        assertEquals(5, b.size());
+    }
+}
@@ -0,0 +1,171 @@
+package org.lst.trading.lib.series;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SeriesMergerTest {
+    private static final long DAY = 86400000L;
+
+    static DoubleSeries series(String name, long[] days, double... values) {
+        DoubleSeries series = new DoubleSeries(name);
+        for (int i = 0; i < days.length; i++) {
+            series.add(values[i], days[i] * DAY);
+        }
+        return series;
+    }
+
+    /**
+     * Three series which share some days (ties in the merge heap), miss others, and C starts late.
+     */
+    static DoubleSeries[] fixture() {
+        return new DoubleSeries[]{
+            series("A", new long[]{0, 1, 2, 4, 5, 7}, 10, 11, 12, 14, 15, 17),
+            series("B", new long[]{1, 2, 3, 5, 7}, 21, 22, 23, 25, 27),
+            series("C", new long[]{2, 3, 5, 6, 7}, 32, 33, 35, 36, 37)
+        };
+    }
+
+    /**
+     * The constructor before the k-way merge: the first series copied as is, then one inner merge per further series.
+     */
+    static MultipleDoubleSeries pairwiseInner(DoubleSeries... series) {
+        DoubleSeries first = series[0];
+        MultipleDoubleSeries merged = new MultipleDoubleSeries(Collections.singletonList(first.getName()),
+            Arrays.copyOf(first.mTimes, first.mSize), new double[][]{Arrays.copyOf(first.mValues, first.mSize)}, first.mSize);
+        for (int s = 1; s < series.length; s++) {
+            merged.addSeries(series[s]);
+        }
+        return merged;
+    }
+
+    /**
+     * Looks up every series on its own at every time of any series: the first value at the latest time at or before
+     * it, rows where a series is missing or too stale are dropped for as-of and hold NaN for forward fill.
+     */
+    static MultipleDoubleSeries lookup(Alignment alignment, DoubleSeries... series) {
+        TreeSet<Long> times = new TreeSet<>();
+        for (DoubleSeries s : series) {
+            for (int i = 0; i < s.size(); i++) {
+                times.add(s.getEpochMillis(i));
+            }
+        }
+
+        MultipleDoubleSeries merged = new MultipleDoubleSeries(Arrays.asList(names(series)));
+        double[] row = new double[series.length];
+        for (long t : times) {
+            boolean keep = true;
+            for (int s = 0; s < series.length; s++) {
+                int index = -1;
+                for (int i = 0; i < series[s].size() && series[s].getEpochMillis(i) <= t; i++) {
+                    if (index < 0 || series[s].getEpochMillis(i) != series[s].getEpochMillis(index)) {
+                        index = i;
+                    }
+                }
+                row[s] = index < 0 ? Double.NaN : series[s].getValue(index);
+                if (alignment.getMode() == Alignment.Mode.AS_OF) {
+                    keep &= index >= 0 && t - series[s].getEpochMillis(index) <= alignment.getMaxStaleness().toMillis();
+                }
+            }
+            if (keep) {
+                merged.add(row, t);
+            }
+        }
+        return merged;
+    }
+
+    static String[] names(DoubleSeries... series) {
+        return Arrays.stream(series).map(DoubleSeries::getName).toArray(String[]::new);
+    }
+
+    static void assertSeries(MultipleDoubleSeries expected, MultipleDoubleSeries actual) {
+        assertEquals(expected.getNames(), actual.getNames());
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getEpochMillis(row), actual.getEpochMillis(row));
+            for (int c = 0; c < expected.getNames().size(); c++) {
+                assertEquals(expected.getValue(row, c), actual.getValue(row, c), 0);
+            }
+        }
+    }
+
+    @Test public void innerMatchesPairwiseMerge() {
+        DoubleSeries[] series = fixture();
+        MultipleDoubleSeries merged = MultipleDoubleSeries.align(Alignment.inner(), series);
+
+        assertSeries(pairwiseInner(series), merged);
+        assertSeries(pairwiseInner(series), new MultipleDoubleSeries(series));
+        assertEquals(3, merged.size());
+        assertEquals(5 * DAY, merged.getEpochMillis(1));
+        assertEquals(25, merged.getValue(1, 1), 0);
+    }
+
+    @Test public void forwardFillCarriesValuesAndStartsWithNaN() {
+        DoubleSeries[] series = fixture();
+        MultipleDoubleSeries merged = MultipleDoubleSeries.align(Alignment.forwardFill(), series);
+
+        assertSeries(lookup(Alignment.forwardFill(), series), merged);
+        assertEquals(8, merged.size());
+        // B and C have no value on day 0, C none on day 1
+        assertTrue(Double.isNaN(merged.getValue(0, 1)));
+        assertTrue(Double.isNaN(merged.getValue(0, 2)));
+        assertEquals(21, merged.getValue(1, 1), 0);
+        assertTrue(Double.isNaN(merged.getValue(1, 2)));
+        // day 6 carries A from day 5 and B from day 5
+        assertEquals(15, merged.getValue(6, 0), 0);
+        assertEquals(25, merged.getValue(6, 1), 0);
+        assertEquals(36, merged.getValue(6, 2), 0);
+    }
+
+    @Test public void asOfMatchesLookup() {
+        DoubleSeries[] series = fixture();
+        for (long staleness : new long[]{0, DAY - 1, DAY, 2 * DAY, 3 * DAY}) {
+            Alignment alignment = Alignment.asOf(Duration.ofMillis(staleness));
+            assertSeries(lookup(alignment, series), MultipleDoubleSeries.align(alignment, series));
+        }
+        // no staleness allowed is an inner join
+        assertSeries(pairwiseInner(series), MultipleDoubleSeries.align(Alignment.asOf(Duration.ZERO), series));
+    }
+
+    @Test public void asOfKeepsValuesExactlyAtMaxStaleness() {
+        Duration maxStaleness = Duration.ofHours(1);
+        long limit = maxStaleness.toMillis();
+        DoubleSeries x = series("X", new long[]{0}, 1);
+
+        DoubleSeries atLimit = new DoubleSeries("Y");
+        atLimit.add(2, limit);
+        MultipleDoubleSeries merged = MultipleDoubleSeries.align(Alignment.asOf(maxStaleness), x, atLimit);
+        assertEquals(1, merged.size());
+        assertEquals(limit, merged.getEpochMillis(0));
+        assertEquals(1, merged.getValue(0, 0), 0);
+        assertEquals(2, merged.getValue(0, 1), 0);
+
+        DoubleSeries pastLimit = new DoubleSeries("Y");
+        pastLimit.add(2, limit + 1);
+        assertEquals(0, MultipleDoubleSeries.align(Alignment.asOf(maxStaleness), x, pastLimit).size());
+        assertSeries(lookup(Alignment.asOf(maxStaleness), x, pastLimit), MultipleDoubleSeries.align(Alignment.asOf(maxStaleness), x, pastLimit));
+    }
+
+    @Test public void repeatedTimeKeepsFirstValue() {
+        DoubleSeries a = series("A", new long[]{0, 1, 1, 2}, 10, 11, 111, 12);
+        DoubleSeries b = series("B", new long[]{0, 1, 2, 2, 3}, 20, 21, 22, 222, 23);
+
+        assertSeries(pairwiseInner(a, b), MultipleDoubleSeries.align(Alignment.inner(), a, b));
+        assertSeries(pairwiseInner(b, a), MultipleDoubleSeries.align(Alignment.inner(), b, a));
+        for (Alignment alignment : new Alignment[]{Alignment.forwardFill(), Alignment.asOf(Duration.ofDays(1))}) {
+            assertSeries(lookup(alignment, a, b), MultipleDoubleSeries.align(alignment, a, b));
+        }
+
+        MultipleDoubleSeries merged = MultipleDoubleSeries.align(Alignment.forwardFill(), a, b);
+        assertEquals(4, merged.size());
+        assertEquals(11, merged.getValue(1, 0), 0);
+        assertEquals(22, merged.getValue(2, 1), 0);
+        assertEquals(23, merged.getValue(3, 1), 0);
+    }
+}
@@ -0,0 +1,137 @@
+package org.lst.trading.lib.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lst.trading.lib.series.DoubleSeries;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PriceFileTest {
+    private static final long DAY = 86400000L;
+    private static final List<String> FIELDS = Arrays.asList("close", "volume");
+
+    @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+    static double close(int row) {
+        return 100 + row * 0.25;
+    }
+
+    static double volume(int row) {
+        return 1000 + row;
+    }
+
+    /**
+     * Rows {@code [from, to)} of the test prices, one per day.
+     */
+    static MultipleDoubleSeries rows(int from, int to) {
+        long[] times = new long[to - from];
+        double[][] columns = new double[2][to - from];
+        for (int row = from; row < to; row++) {
+            times[row - from] = row * DAY;
+            columns[0][row - from] = close(row);
+            columns[1][row - from] = volume(row);
+        }
+        return MultipleDoubleSeries.of(FIELDS, times, columns);
+    }
+
+    static void assertRows(int from, MultipleDoubleSeries series) {
+        for (int i = 0; i < series.size(); i++) {
+            assertEquals((from + i) * DAY, series.getEpochMillis(i));
+            assertEquals(close(from + i), series.getValue(i, 0), 0);
+            assertEquals(volume(from + i), series.getValue(i, 1), 0);
+        }
+    }
+
+    @Test public void roundTripAcrossCapacityDoubling() throws Exception {
+        Path path = mFolder.getRoot().toPath().resolve("prices.bin");
+        int rows = 1500;
+
+        try (PriceFile file = PriceFile.create(path, FIELDS)) {
+            int capacity = file.mCapacity;
+            assertEquals(0, file.size());
+            assertEquals(capacity, file.append(rows(0, capacity)));
+            assertEquals(capacity, file.mCapacity);
+
+            // single rows past the capacity double it once
+            for (int row = capacity; row < rows; row++) {
+                file.append(row * DAY, close(row), volume(row));
+            }
+            assertEquals(2 * capacity, file.mCapacity);
+            assertEquals(rows, file.size());
+        }
+
+        try (PriceFile file = PriceFile.open(path)) {
+            assertEquals(FIELDS, file.getFields());
+            assertEquals(rows, file.size());
+            MultipleDoubleSeries all = file.getAll();
+            assertEquals(rows, all.size());
+            assertRows(0, all);
+
+            // times between rows, before the first and after the last
+            assertEquals(0, file.lowerBound(-DAY));
+            assertEquals(10, file.lowerBound(10 * DAY));
+            assertEquals(11, file.lowerBound(10 * DAY + 1));
+            assertEquals(rows, file.lowerBound(rows * DAY));
+
+            MultipleDoubleSeries slice = file.getAll(1000 * DAY + 1, 1100 * DAY);
+            assertEquals(99, slice.size());
+            assertRows(1001, slice);
+            assertEquals(0, file.getAll(20 * DAY, 10 * DAY).size());
+
+            DoubleSeries closes = file.getSeries("close", 1020 * DAY, 1030 * DAY);
+            assertEquals("close", closes.getName());
+            assertEquals(10, closes.size());
+            for (int i = 0; i < closes.size(); i++) {
+                assertEquals((1020 + i) * DAY, closes.getEpochMillis(i));
+                assertEquals(close(1020 + i), closes.getValue(i), 0);
+            }
+        }
+    }
+
+    @Test public void overlappingRefreshOnlyReservesNewRows() throws Exception {
+        Path path = mFolder.getRoot().toPath().resolve("refresh.bin");
+        try (PriceFile file = PriceFile.create(path, FIELDS)) {
+            int capacity = file.mCapacity;
+            file.append(rows(0, capacity - 1));
+
+            // 100 rows of which only the last is new fit without rewriting the file
+            assertEquals(1, file.append(rows(capacity - 100, capacity)));
+            assertEquals(capacity, file.mCapacity);
+            assertEquals(capacity, file.size());
+        }
+
+        // a full file takes a refresh without new rows as is
+        try (PriceFile file = PriceFile.openForAppend(path)) {
+            int capacity = file.mCapacity;
+            assertEquals(0, file.append(rows(0, capacity)));
+            assertEquals(capacity, file.mCapacity);
+            assertRows(0, file.getAll());
+        }
+    }
+
+    @Test public void singleFieldRefresh() throws Exception {
+        Path path = mFolder.getRoot().toPath().resolve("close.bin");
+        try (PriceFile file = PriceFile.create(path, Arrays.asList("close"))) {
+            int capacity = file.mCapacity;
+            DoubleSeries closes = new DoubleSeries("close");
+            for (int row = 0; row < capacity; row++) {
+                closes.add(close(row), row * DAY);
+            }
+            assertEquals(capacity, file.append(closes));
+
+            // the stored rows alone need no room, one more row doubles the capacity
+            assertEquals(0, file.append(closes));
+            assertEquals(capacity, file.mCapacity);
+            closes.add(close(capacity), capacity * DAY);
+            assertEquals(1, file.append(closes));
+            assertEquals(2 * capacity, file.mCapacity);
+            assertEquals(close(capacity), file.getValue(capacity, 0), 0);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.lst.trading.lib.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BulkPriceDownloaderTest {
+    StubPriceServer mServer;
+    BulkPriceDownloader mDownloader;
+
+    @Before public void setUp() {
+        mServer = new StubPriceServer();
+        mDownloader = new BulkPriceDownloader(mServer.service(), new RateLimiter(1000, 100));
+        mDownloader.setBackoff(Duration.ofMillis(1), Duration.ofMillis(10));
+    }
+
+    @After public void tearDown() {
+        mServer.close();
+    }
+
+    private static int status(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof Http.StatusException) {
+                return ((Http.StatusException) t).getStatus();
+            }
+        }
+        return -1;
+    }
+
+    @Test public void retriesOnlyTransientFailures() {
+        mServer.script("QUOTA", 429, 429);
+        mServer.script("DOWN", 503);
+        mServer.script("BAD", 400);
+        // a JSON error message with status 200 is an unknown symbol
+        mServer.script("UNKNOWN", 200);
+
+        BulkPriceDownloader.Result result = mDownloader.downloadAll(Arrays.asList("QUOTA", "BAD", "DOWN", "UNKNOWN", "OK"));
+
+        assertEquals(Arrays.asList("QUOTA", "DOWN", "OK"), new ArrayList<>(result.getPrices().keySet()));
+        assertEquals(mServer.mDays, result.getPrices().get("QUOTA").size());
+        assertEquals(new HashSet<>(Arrays.asList("BAD", "UNKNOWN")), result.getFailures().keySet());
+        assertEquals(400, status(result.getFailures().get("BAD")));
+        assertEquals(400, status(result.getFailures().get("UNKNOWN")));
+        assertFalse(result.isComplete());
+
+        assertEquals(3, mServer.getRequests("QUOTA"));
+        assertEquals(2, mServer.getRequests("DOWN"));
+        assertEquals(1, mServer.getRequests("BAD"));
+        assertEquals(1, mServer.getRequests("UNKNOWN"));
+        assertEquals(1, mServer.getRequests("OK"));
+    }
+
+    @Test public void givesUpAfterMaxRetries() {
+        mServer.script("DOWN", 503, 503, 503, 503, 503);
+        mDownloader.setMaxRetries(2);
+
+        BulkPriceDownloader.Result result = mDownloader.downloadAll(Arrays.asList("DOWN"));
+
+        assertEquals(503, status(result.getFailures().get("DOWN")));
+        assertEquals(3, mServer.getRequests("DOWN"));
+    }
+
+    @Test public void failuresBelongToTheirDownload() {
+        mServer.script("BAD", 400);
+        BulkPriceDownloader.Result first = mDownloader.downloadAll(Arrays.asList("BAD", "OK"));
+        BulkPriceDownloader.Result second = mDownloader.downloadAll(Arrays.asList("BAD", "OK"));
+
+        assertEquals(new HashSet<>(Arrays.asList("BAD")), first.getFailures().keySet());
+        assertTrue(second.isComplete());
+        assertEquals(2, second.getPrices().size());
+    }
+
+    @Test public void boundsConcurrentRequests() {
+        List<String> symbols = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            symbols.add("S" + i);
+        }
+        mDownloader.setConcurrency(4);
+
+        BulkPriceDownloader.Result result = mDownloader.downloadAll(symbols);
+
+        assertEquals(symbols, new ArrayList<>(result.getPrices().keySet()));
+        assertTrue(mServer.mMaxInFlight.get() <= 4);
+    }
+}
@@ -0,0 +1,128 @@
+package org.lst.trading.lib.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lst.trading.lib.series.DoubleSeries;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class CachedHistoricalPriceServiceTest {
+    @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+    StubPriceServer mServer;
+    Path mDirectory;
+
+    @Before public void setUp() throws Exception {
+        mServer = new StubPriceServer();
+        mDirectory = mFolder.newFolder("prices").toPath();
+    }
+
+    @After public void tearDown() {
+        mServer.close();
+    }
+
+    private CachedHistoricalPriceService cache(Duration elapsed) {
+        CachedHistoricalPriceService cache = new CachedHistoricalPriceService(mServer.service(), mDirectory);
+        cache.setClock(Clock.offset(Clock.systemUTC(), elapsed));
+        return cache;
+    }
+
+    /**
+     * The prices the server has for the symbol right now.
+     */
+    private void assertServed(String symbol, double scale, DoubleSeries prices) {
+        assertEquals(mServer.mDays, prices.size());
+        LocalDate last = mServer.today();
+        for (int i = 0; i < prices.size(); i++) {
+            LocalDate day = last.minusDays(prices.size() - 1 - i);
+            assertEquals(day.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli(), prices.getEpochMillis(i));
+            assertEquals(StubPriceServer.close(symbol, day, scale), prices.getValue(i), 0);
+        }
+    }
+
+    @Test public void warmReadsDoNotRequest() {
+        assertServed("A", 1, cache(Duration.ZERO).get("A"));
+        assertEquals(1, mServer.mFullRequests.get());
+
+        // from disk in a new instance and then from memory
+        CachedHistoricalPriceService cache = cache(Duration.ofHours(1));
+        assertServed("A", 1, cache.get("A"));
+        assertServed("A", 1, cache.getHistoricalAdjustedPrices("A").toBlocking().first());
+        assertEquals(1, mServer.mFullRequests.get());
+        assertEquals(0, mServer.mCompactRequests.get());
+    }
+
+    @Test public void refreshRequestsOnlyTheTail() {
+        cache(Duration.ZERO).get("A");
+
+        mServer.mShift = 2;
+        mServer.mDays += 2;
+        assertServed("A", 1, cache(Duration.ofDays(2)).get("A"));
+        assertEquals(1, mServer.mFullRequests.get());
+        assertEquals(1, mServer.mCompactRequests.get());
+    }
+
+    @Test public void failedRefreshServesStoredPrices() {
+        CachedHistoricalPriceService cache = cache(Duration.ZERO);
+        DoubleSeries stored = cache.get("A");
+
+        mServer.mShift = 1;
+        mServer.script("A", 503);
+        cache.setClock(Clock.offset(Clock.systemUTC(), Duration.ofDays(1)));
+        DoubleSeries served = cache.get("A");
+        assertEquals(stored.size(), served.size());
+        assertEquals(stored.getLast(), served.getLast(), 0);
+        assertEquals(1, mServer.mCompactRequests.get());
+
+        // not retried within the refresh interval, then refreshed
+        cache.get("A");
+        assertEquals(1, mServer.mCompactRequests.get());
+        mServer.mDays += 1;
+        cache.setClock(Clock.offset(Clock.systemUTC(), Duration.ofDays(1).plusHours(13)));
+        assertServed("A", 1, cache.get("A"));
+        assertEquals(2, mServer.mCompactRequests.get());
+        assertEquals(1, mServer.mFullRequests.get());
+    }
+
+    @Test public void changedPriceDownloadsFullHistory() {
+        cache(Duration.ZERO).get("A");
+
+        // a split halves the whole history
+        mServer.mShift = 1;
+        mServer.mScale = 0.5;
+        assertServed("A", 0.5, cache(Duration.ofDays(1)).get("A"));
+        assertEquals(2, mServer.mFullRequests.get());
+        assertEquals(1, mServer.mCompactRequests.get());
+    }
+
+    @Test public void evictsLeastRecentlyUsed() throws Exception {
+        CachedHistoricalPriceService cache = cache(Duration.ZERO);
+        for (int i = 0; i < 10; i++) {
+            cache.setClock(Clock.offset(Clock.systemUTC(), Duration.ofMinutes(i)));
+            cache.get("S" + i);
+        }
+        cache.setClock(Clock.offset(Clock.systemUTC(), Duration.ofMinutes(20)));
+        cache.get("S0");
+
+        cache.setDiskBudget(Files.size(cache.getStore().getPath("S0")) * 5);
+        cache.get("S10");
+        assertEquals(new HashSet<>(Arrays.asList("S0", "S7", "S8", "S9", "S10")), new HashSet<>(cache.getStore().getSymbols()));
+
+        // evicted symbols are downloaded again
+        int requests = mServer.mFullRequests.get();
+        assertServed("S1", 1, cache.get("S1"));
+        assertEquals(requests + 1, mServer.mFullRequests.get());
+    }
+}
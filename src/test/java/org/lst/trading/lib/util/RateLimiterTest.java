@@ -0,0 +1,55 @@
+package org.lst.trading.lib.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+    @Test public void acquireSpacesPermits() {
+        RateLimiter limiter = new RateLimiter(50, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            limiter.acquire();
+        }
+        // the first permit is immediate, each further one 20 ms after the previous
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test public void acquireSpacesPermitsAcrossThreads() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(100, 1);
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5; i++) {
+                    limiter.acquire();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+    }
+
+    @Test public void burstIsAvailableAtOnce() {
+        RateLimiter limiter = new RateLimiter(1, 5);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test public void perMinuteHasNoBurst() {
+        RateLimiter limiter = RateLimiter.perMinute(5);
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+}
@@ -0,0 +1,122 @@
+package org.lst.trading.lib.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the Alpha Vantage daily prices endpoint, for {@link AlphaVantageHistoricalPriceService#AlphaVantageHistoricalPriceService(String, String)}.
+ * <p>
+ * Serves {@link #mDays} daily closes up to today plus {@link #mShift} days, newest first, the compact output the last
+ * 100 of them. The close of a day only depends on the symbol, the day and {@link #mScale}. Responses can be scripted
+ * per symbol with {@link #script(String, Integer...)}.
+ */
+class StubPriceServer implements AutoCloseable {
+    static final int COMPACT_SIZE = 100;
+
+    HttpServer mServer;
+    volatile int mDays = 300;
+    volatile int mShift;
+    volatile double mScale = 1;
+
+    AtomicInteger mFullRequests = new AtomicInteger();
+    AtomicInteger mCompactRequests = new AtomicInteger();
+    AtomicInteger mInFlight = new AtomicInteger();
+    AtomicInteger mMaxInFlight = new AtomicInteger();
+    Map<String, AtomicInteger> mRequests = new ConcurrentHashMap<>();
+    Map<String, Deque<Integer>> mScripts = new ConcurrentHashMap<>();
+
+    StubPriceServer() {
+        try {
+            mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        mServer.createContext("/query", this::handle);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+    }
+
+    String getUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/query";
+    }
+
+    AlphaVantageHistoricalPriceService service() {
+        return new AlphaVantageHistoricalPriceService("key", getUrl());
+    }
+
+    /**
+     * The next requests of the symbol are answered with these statuses, in order, then with prices. A status of 200
+     * answers with the JSON error message of an unknown symbol.
+     */
+    void script(String symbol, Integer... statuses) {
+        mScripts.put(symbol, new ArrayDeque<>(Arrays.asList(statuses)));
+    }
+
+    int getRequests(String symbol) {
+        AtomicInteger requests = mRequests.get(symbol);
+        return requests == null ? 0 : requests.get();
+    }
+
+    static double close(String symbol, LocalDate day, double scale) {
+        return (100 + Math.floorMod(symbol.hashCode(), 100) + day.toEpochDay() * 0.01) * scale;
+    }
+
+    LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC).plusDays(mShift);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int inFlight = mInFlight.incrementAndGet();
+        mMaxInFlight.accumulateAndGet(inFlight, Math::max);
+        try {
+            String query = exchange.getRequestURI().getQuery();
+            String symbol = query.replaceAll(".*symbol=([^&]*).*", "$1");
+            boolean compact = query.contains("outputsize=compact");
+            (compact ? mCompactRequests : mFullRequests).incrementAndGet();
+            mRequests.computeIfAbsent(symbol, s -> new AtomicInteger()).incrementAndGet();
+
+            Deque<Integer> script = mScripts.get(symbol);
+            Integer status = script == null ? null : script.poll();
+            if (status != null && status == 200) {
+                respond(exchange, 200, "{\n    \"Error Message\": \"Invalid API call.\"\n}");
+            } else if (status != null) {
+                respond(exchange, status, "error " + status);
+            } else {
+                StringBuilder csv = new StringBuilder("timestamp,open,high,low,close,volume\n");
+                LocalDate today = today();
+                double scale = mScale;
+                for (int i = 0; i < (compact ? Math.min(COMPACT_SIZE, mDays) : mDays); i++) {
+                    LocalDate day = today.minusDays(i);
+                    csv.append(day).append(",1,2,0.5,").append(close(symbol, day, scale)).append(",1000\n");
+                }
+                respond(exchange, 200, csv.toString());
+            }
+        } finally {
+            mInFlight.decrementAndGet();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    @Override public void close() {
+        mServer.stop(0);
+    }
+}
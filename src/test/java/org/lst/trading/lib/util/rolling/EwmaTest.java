@@ -0,0 +1,65 @@
+package org.lst.trading.lib.util.rolling;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EwmaTest {
+    /**
+     * Compares mean and variance after every value with the weighted mean and variance of all values so far, the
+     * first value weighted (1 - alpha)^t and value k > 0 weighted alpha (1 - alpha)^(t - k), which sum to 1.
+     */
+    private static void check(Ewma ewma, double offset) {
+        double alpha = ewma.getAlpha();
+        double[] values = RollingVarianceTest.values(offset, 300);
+        double[] weights = new double[values.length];
+        for (int t = 0; t < values.length; t++) {
+            ewma.add(values[t]);
+            for (int k = 0; k < t; k++) {
+                weights[k] *= 1 - alpha;
+            }
+            weights[t] = t == 0 ? 1 : alpha;
+
+            double mean = 0;
+            for (int k = 0; k <= t; k++) {
+                mean += weights[k] * values[k];
+            }
+            double variance = 0;
+            for (int k = 0; k <= t; k++) {
+                variance += weights[k] * (values[k] - mean) * (values[k] - mean);
+            }
+            assertEquals(t + 1, ewma.getCount());
+            assertEquals(mean, ewma.getMean(), Math.max(Math.abs(offset), 1) * 1e-13);
+            assertEquals(variance, ewma.getVariance(), Math.max(Math.abs(offset), 1) * 1e-14);
+        }
+    }
+
+    @Test public void matchesWeightedMeanAndVariance() {
+        for (double offset : new double[]{0, 1e4}) {
+            check(new Ewma(1), offset);
+            check(new Ewma(0.5), offset);
+            check(Ewma.ofSpan(15), offset);
+            check(Ewma.ofHalfLife(10), offset);
+        }
+    }
+
+    @Test public void spanAndHalfLife() {
+        assertEquals(2.0 / 16, Ewma.ofSpan(15).getAlpha(), 0);
+        assertEquals(1, Ewma.ofSpan(1).getAlpha(), 0);
+        assertEquals(0.5, Math.pow(1 - Ewma.ofHalfLife(10).getAlpha(), 10), 1e-15);
+    }
+
+    @Test public void emptyAndClear() {
+        Ewma ewma = new Ewma(0.1);
+        assertTrue(Double.isNaN(ewma.getMean()));
+        assertTrue(Double.isNaN(ewma.getVariance()));
+        ewma.add(3);
+        assertEquals(3, ewma.getMean(), 0);
+        assertEquals(0, ewma.getVariance(), 0);
+        ewma.clear();
+        ewma.add(7);
+        assertEquals(7, ewma.getMean(), 0);
+        assertEquals(0, ewma.getVariance(), 0);
+    }
+}
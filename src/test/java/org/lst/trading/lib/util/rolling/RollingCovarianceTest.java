@@ -0,0 +1,76 @@
+package org.lst.trading.lib.util.rolling;
+
+import org.apache.commons.math3.stat.StatUtils;
+import org.apache.commons.math3.stat.correlation.Covariance;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class RollingCovarianceTest {
+    /**
+     * Compares the covariance after every pair with {@link Covariance} over the same window. The pairs have a
+     * variance of about 1, so both are compared absolutely; the means can only match to the precision of the offset.
+     */
+    private static void check(int window, double offset) {
+        Random random = new Random(1);
+        double[] xs = new double[3000];
+        double[] ys = new double[xs.length];
+        RollingCovariance covariance = new RollingCovariance(window);
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = offset + random.nextGaussian();
+            ys[i] = offset / 2 + 0.3 * xs[i] + random.nextGaussian();
+            covariance.add(xs[i], ys[i]);
+
+            int from = Math.max(0, i + 1 - window);
+            if (i + 1 - from < 2) {
+                continue;
+            }
+            double[] x = Arrays.copyOfRange(xs, from, i + 1);
+            double[] y = Arrays.copyOfRange(ys, from, i + 1);
+            assertEquals(new Covariance().covariance(x, y), covariance.getCovariance(), 1e-13);
+            assertEquals(StatUtils.variance(x), covariance.getVarianceX(), 1e-13);
+            assertEquals(StatUtils.variance(y), covariance.getVarianceY(), 1e-13);
+            assertEquals(StatUtils.mean(y), covariance.getMeanY(), Math.max(Math.abs(offset), 1) * 1e-14);
+        }
+    }
+
+    @Test public void matchesCommonsMath() {
+        for (int window : new int[]{2, 15, 100, 1000}) {
+            for (double offset : new double[]{0, 1e4, 1e6}) {
+                check(window, offset);
+            }
+        }
+    }
+
+    @Test public void nonFiniteValuesOnlyAffectTheirWindow() {
+        double[] xs = RollingVarianceTest.values(0, 1000);
+        double[] ys = RollingVarianceTest.withNonFinite(1000);
+        // the first x is finite, later pairs are not finite in x only
+        xs[500] = Double.NaN;
+        for (int window : new int[]{2, 3, 15, 100}) {
+            RollingCovariance covariance = new RollingCovariance(window);
+            for (int i = 0; i < xs.length; i++) {
+                covariance.add(xs[i], ys[i]);
+                int from = Math.max(0, i + 1 - window);
+                int n = i + 1 - from;
+                if (n < 2) {
+                    continue;
+                }
+
+                if (RollingVarianceTest.allFinite(xs, from, n) && RollingVarianceTest.allFinite(ys, from, n)) {
+                    double[] x = Arrays.copyOfRange(xs, from, i + 1);
+                    double[] y = Arrays.copyOfRange(ys, from, i + 1);
+                    assertEquals(new Covariance().covariance(x, y), covariance.getCovariance(), 1e-13);
+                    assertEquals(StatUtils.variance(x), covariance.getVarianceX(), 1e-13);
+                    assertEquals(StatUtils.mean(y), covariance.getMeanY(), 1e-14);
+                } else {
+                    assertFalse(Double.isFinite(covariance.getCovariance()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.lst.trading.lib.util.rolling;
+
+import org.apache.commons.math3.stat.StatUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RollingMeanTest {
+    @Test public void matchesStatUtils() {
+        for (int window : new int[]{1, 2, 3, 15, 100}) {
+            for (double offset : new double[]{0, 1e4, 1e8}) {
+                double[] values = RollingVarianceTest.values(offset, 3000);
+                RollingMean mean = new RollingMean(window);
+                for (int i = 0; i < values.length; i++) {
+                    mean.add(values[i]);
+                    int from = Math.max(0, i + 1 - window);
+                    int n = i + 1 - from;
+
+                    assertEquals(n, mean.size());
+                    assertEquals(n == window, mean.isFull());
+                    assertEquals(StatUtils.mean(values, from, n), mean.getMean(), Math.max(Math.abs(offset), 1) * 1e-13);
+                }
+            }
+        }
+    }
+
+    @Test public void nonFiniteValuesOnlyAffectTheirWindow() {
+        double[] values = RollingVarianceTest.withNonFinite(1000);
+        for (int window : new int[]{1, 2, 3, 15, 100}) {
+            RollingMean mean = new RollingMean(window);
+            for (int i = 0; i < values.length; i++) {
+                mean.add(values[i]);
+                int from = Math.max(0, i + 1 - window);
+                int n = i + 1 - from;
+
+                if (RollingVarianceTest.allFinite(values, from, n)) {
+                    assertEquals(StatUtils.mean(values, from, n), mean.getMean(), 1e-13);
+                } else {
+                    assertFalse(Double.isFinite(mean.getMean()));
+                }
+            }
+        }
+    }
+
+    @Test public void emptyAndClear() {
+        RollingMean mean = new RollingMean(3);
+        assertTrue(Double.isNaN(mean.getMean()));
+        mean.add(1);
+        mean.add(2);
+        assertEquals(1.5, mean.getMean(), 0);
+        mean.clear();
+        assertTrue(Double.isNaN(mean.getMean()));
+        mean.add(4);
+        assertEquals(4, mean.getMean(), 0);
+    }
+}
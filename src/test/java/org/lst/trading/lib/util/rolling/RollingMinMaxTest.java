@@ -0,0 +1,66 @@
+package org.lst.trading.lib.util.rolling;
+
+import org.apache.commons.math3.stat.StatUtils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RollingMinMaxTest {
+    /**
+     * Compares min and max after every value with {@link StatUtils} over the same window. The values are rounded so
+     * that equal values, which replace each other in the deques, are common.
+     */
+    private static void check(int window, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[2000];
+        RollingMinMax minMax = new RollingMinMax(window);
+        for (int i = 0; i < values.length; i++) {
+            // runs of rising and falling values fill and empty the deques
+            values[i] = i % 200 < 100 ? Math.round(random.nextGaussian() * 3) + i % 200 : Math.round(random.nextGaussian() * 3);
+            minMax.add(values[i]);
+            int from = Math.max(0, i + 1 - window);
+            int n = i + 1 - from;
+
+            assertEquals(n, minMax.size());
+            assertEquals(StatUtils.min(values, from, n), minMax.getMin(), 0);
+            assertEquals(StatUtils.max(values, from, n), minMax.getMax(), 0);
+            assertTrue(minMax.mMinSize <= window && minMax.mMaxSize <= window);
+        }
+    }
+
+    @Test public void matchesStatUtils() {
+        for (int window : new int[]{1, 2, 3, 15, 100, 500}) {
+            for (long seed = 1; seed <= 3; seed++) {
+                check(window, seed);
+            }
+        }
+    }
+
+    @Test public void monotonicValuesExpireByTick() {
+        RollingMinMax minMax = new RollingMinMax(4);
+        for (int i = 0; i < 20; i++) {
+            minMax.add(i);
+            // rising values leave every value in the min deque until it expires
+            assertEquals(Math.max(0, i - 3), minMax.getMin(), 0);
+            assertEquals(i, minMax.getMax(), 0);
+            assertEquals(Math.min(i + 1, 4), minMax.mMinSize);
+            assertEquals(1, minMax.mMaxSize);
+        }
+    }
+
+    @Test public void emptyAndClear() {
+        RollingMinMax minMax = new RollingMinMax(3);
+        assertTrue(Double.isNaN(minMax.getMin()));
+        assertTrue(Double.isNaN(minMax.getMax()));
+        minMax.add(5);
+        minMax.add(-1);
+        minMax.clear();
+        assertTrue(Double.isNaN(minMax.getMin()));
+        minMax.add(2);
+        assertEquals(2, minMax.getMin(), 0);
+        assertEquals(2, minMax.getMax(), 0);
+    }
+}
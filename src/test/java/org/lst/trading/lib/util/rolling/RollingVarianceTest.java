@@ -0,0 +1,101 @@
+package org.lst.trading.lib.util.rolling;
+
+import org.apache.commons.math3.stat.StatUtils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RollingVarianceTest {
+    static double[] values(double offset, int n) {
+        Random random = new Random(1);
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = offset + random.nextGaussian();
+        }
+        return values;
+    }
+
+    /**
+     * Random values with a NaN first value, which becomes the reference of the sums, and a NaN or infinite value every
+     * 101 values after that.
+     */
+    static double[] withNonFinite(int n) {
+        double[] values = values(0, n);
+        values[0] = Double.NaN;
+        for (int i = 37; i < n; i += 101) {
+            values[i] = i % 2 == 0 ? Double.NaN : Double.POSITIVE_INFINITY;
+        }
+        return values;
+    }
+
+    static boolean allFinite(double[] values, int from, int n) {
+        for (int i = from; i < from + n; i++) {
+            if (!Double.isFinite(values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares mean and variance after every value with {@link StatUtils} over the same window. The values have unit
+     * variance, so the variance is compared absolutely; the mean can only match to the precision of the offset.
+     */
+    private static void check(int window, double offset) {
+        double[] values = values(offset, 3000);
+        RollingVariance variance = new RollingVariance(window);
+        for (int i = 0; i < values.length; i++) {
+            variance.add(values[i]);
+            int from = Math.max(0, i + 1 - window);
+            int n = i + 1 - from;
+
+            assertEquals(n, variance.size());
+            assertEquals(StatUtils.mean(values, from, n), variance.getMean(), Math.max(Math.abs(offset), 1) * 1e-14);
+            assertEquals(StatUtils.variance(values, from, n), variance.getVariance(), 1e-13);
+        }
+    }
+
+    @Test public void matchesStatUtils() {
+        for (int window : new int[]{1, 2, 3, 15, 100, 1000}) {
+            for (double offset : new double[]{0, 1e4, 1e6, 1e8}) {
+                check(window, offset);
+            }
+        }
+    }
+
+    @Test public void nonFiniteValuesOnlyAffectTheirWindow() {
+        double[] values = withNonFinite(1000);
+        for (int window : new int[]{1, 2, 3, 15, 100}) {
+            RollingVariance variance = new RollingVariance(window);
+            for (int i = 0; i < values.length; i++) {
+                variance.add(values[i]);
+                int from = Math.max(0, i + 1 - window);
+                int n = i + 1 - from;
+
+                if (allFinite(values, from, n)) {
+                    assertEquals(StatUtils.mean(values, from, n), variance.getMean(), 1e-14);
+                    assertEquals(StatUtils.variance(values, from, n), variance.getVariance(), 1e-13);
+                } else {
+                    // a single value has variance 0 whatever it is, like StatUtils
+                    assertFalse(Double.isFinite(variance.getMean()));
+                    assertEquals(n == 1, Double.isFinite(variance.getVariance()));
+                }
+            }
+        }
+    }
+
+    @Test public void emptyAndSingleValue() {
+        RollingVariance variance = new RollingVariance(5);
+        assertTrue(Double.isNaN(variance.getMean()));
+        assertTrue(Double.isNaN(variance.getVariance()));
+        variance.add(3);
+        assertEquals(3, variance.getMean(), 0);
+        assertEquals(0, variance.getVariance(), 0);
+        variance.clear();
+        assertTrue(Double.isNaN(variance.getVariance()));
+    }
+}
@@ -0,0 +1,41 @@
+package org.lst.trading.lib.util.rolling;
+
+import org.apache.commons.math3.stat.StatUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RollingZScoreTest {
+    @Test public void matchesStatUtils() {
+        for (int window : new int[]{2, 3, 15, 100}) {
+            double[] values = RollingVarianceTest.values(100, 2000);
+            RollingZScore zScore = new RollingZScore(window);
+            for (int i = 0; i < values.length; i++) {
+                double z = zScore.add(values[i]);
+                int from = Math.max(0, i + 1 - window);
+                int n = i + 1 - from;
+                if (n < 2) {
+                    assertTrue(Double.isNaN(z));
+                    continue;
+                }
+
+                double mean = StatUtils.mean(values, from, n);
+                double sd = Math.sqrt(StatUtils.variance(values, from, n));
+                assertEquals((values[i] - mean) / sd, z, 1e-11);
+                assertEquals(z, zScore.getZScore(), 0);
+            }
+        }
+    }
+
+    @Test public void constantWindowIsNaN() {
+        RollingZScore zScore = new RollingZScore(3);
+        assertTrue(Double.isNaN(zScore.getZScore()));
+        zScore.add(2);
+        zScore.add(2);
+        assertTrue(Double.isNaN(zScore.add(2)));
+        assertEquals(Math.sqrt(4.0 / 3), zScore.add(5), 1e-15);
+        zScore.clear();
+        assertTrue(Double.isNaN(zScore.getZScore()));
+    }
+}
@@ -0,0 +1,132 @@
+package org.lst.trading.main.strategy.kalman;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CointegrationCalibrationTest {
+    /**
+     * A pair drawn from the filter's own model: alpha and beta start at 0 and are random walks with variance
+     * delta / (1 - delta) per step, y = alpha + beta * x plus noise of variance r.
+     */
+    static double[][] modelPair(long seed, int n, double delta, double r) {
+        Random random = new Random(seed);
+        double q = Math.sqrt(delta / (1 - delta));
+        double[][] pair = new double[2][n];
+        double x = 10, alpha = 0, beta = 0;
+        for (int i = 0; i < n; i++) {
+            x += 0.1 * random.nextGaussian();
+            alpha += q * random.nextGaussian();
+            beta += q * random.nextGaussian();
+            pair[0][i] = x;
+            pair[1][i] = alpha + beta * x + Math.sqrt(r) * random.nextGaussian();
+        }
+        return pair;
+    }
+
+    static void assertSameResult(CointegrationCalibration.Result expected, CointegrationCalibration.Result actual) {
+        assertEquals(expected.getDelta(), actual.getDelta(), 0);
+        assertEquals(expected.getR(), actual.getR(), 0);
+        assertEquals(expected.getLogLikelihood(), actual.getLogLikelihood(), 0);
+        assertEquals(expected.getObservations(), actual.getObservations());
+    }
+
+    @Test public void recoversModelParameters() {
+        CointegrationCalibration calibration = new CointegrationCalibration();
+        // r is only identifiable while the noise is not much smaller than the state steps times x
+        for (double[] parameters : new double[][]{{1e-4, 1e-2}, {1e-6, 1}, {1e-3, 1e-1}}) {
+            double[][] pair = modelPair(1, 5000, parameters[0], parameters[1]);
+            CointegrationCalibration.Result result = calibration.calibrate(pair[0], pair[1]);
+
+            assertEquals(Math.log10(parameters[0]), Math.log10(result.getDelta()), 0.5);
+            assertEquals(Math.log10(parameters[1]), Math.log10(result.getR()), 0.5);
+            assertEquals(5000 - 20, result.getObservations());
+        }
+    }
+
+    @Test public void parallelCalibrationMatchesSinglePairs() {
+        CointegrationCalibration calibration = new CointegrationCalibration();
+        calibration.setPool(new ForkJoinPool(3));
+        List<double[]> xs = new ArrayList<>();
+        List<double[]> ys = new ArrayList<>();
+        for (int seed = 0; seed < 5; seed++) {
+            double[][] pair = CointegrationTest.syntheticPair(seed, 500);
+            xs.add(pair[0]);
+            ys.add(pair[1]);
+        }
+
+        List<CointegrationCalibration.Result> results = calibration.calibrate(xs, ys);
+        assertEquals(xs.size(), results.size());
+        for (int i = 0; i < xs.size(); i++) {
+            assertSameResult(calibration.calibrate(xs.get(i), ys.get(i)), results.get(i));
+        }
+    }
+
+    @Test public void missingRowsAreSkippedAfterTheBurnIn() {
+        double[][] pair = CointegrationTest.syntheticPair(3, 400);
+        double[] x = pair[0].clone();
+        double[] y = pair[1].clone();
+        // rows missing in the burn in, later in x only and in y only
+        int[] missing = {5, 100, 101, 250};
+        for (int row : missing) {
+            (row == 250 ? y : x)[row] = Double.NaN;
+        }
+        double[] presentX = new double[x.length - missing.length];
+        double[] presentY = new double[presentX.length];
+        for (int t = 0, i = 0; t < x.length; t++) {
+            if (Arrays.binarySearch(missing, t) < 0) {
+                presentX[i] = x[t];
+                presentY[i++] = y[t];
+            }
+        }
+
+        CointegrationCalibration calibration = new CointegrationCalibration();
+        calibration.setBurnIn(30);
+        CointegrationCalibration.Result result = calibration.calibrate(x, y);
+        assertSameResult(calibration.calibrate(presentX, presentY), result);
+        assertEquals(400 - missing.length - 30, result.getObservations());
+
+        // a burn in longer than the pair leaves no observations
+        calibration.setBurnIn(500);
+        assertEquals(0, calibration.calibrate(x, y).getObservations());
+    }
+
+    @Test public void evaluateSkipsCandidatesWithNaNLikelihood() {
+        double[][] pair = CointegrationTest.syntheticPair(4, 300);
+        CointegrationCalibration calibration = new CointegrationCalibration();
+
+        // delta = 1 has an infinite update covariance and a NaN likelihood
+        CointegrationCalibration.Result expected = calibration.evaluate(pair[0], pair[1], new double[]{-4, -8}, new double[]{-1, -1});
+        assertTrue(Double.isFinite(expected.getLogLikelihood()));
+        assertSameResult(expected, calibration.evaluate(pair[0], pair[1], new double[]{0, -4, -8}, new double[]{-1, -1, -1}));
+        assertSameResult(expected, calibration.evaluate(pair[0], pair[1], new double[]{-4, 0, -8}, new double[]{-1, -1, -1}));
+        assertSameResult(expected, calibration.evaluate(pair[0], pair[1], new double[]{-4, -8, 0}, new double[]{-1, -1, -1}));
+    }
+
+    @Test public void refinementStaysInTheRange() {
+        double[][] pair = modelPair(2, 2000, 1e-3, 1e-2);
+        CointegrationCalibration calibration = new CointegrationCalibration();
+        // the likelihood keeps rising towards the true delta, above the range
+        calibration.setDeltaRange(1e-12, 1e-6);
+        calibration.setRefinements(0);
+        CointegrationCalibration.Result coarse = calibration.calibrate(pair[0], pair[1]);
+        calibration.setRefinements(3);
+        CointegrationCalibration.Result refined = calibration.calibrate(pair[0], pair[1]);
+
+        assertEquals(1e-6, coarse.getDelta(), 0);
+        assertEquals(1e-6, refined.getDelta(), 0);
+        assertTrue(refined.getR() >= 1e-8 && refined.getR() <= 100);
+        assertTrue(refined.getLogLikelihood() >= coarse.getLogLikelihood());
+        // the refined r lies on the grid of a quarter, a sixteenth or a 64th of a decade around the coarse one
+        double steps = (Math.log10(refined.getR()) - Math.log10(coarse.getR())) * 64;
+        assertEquals(Math.rint(steps), steps, 1e-6);
+        assertTrue(Math.abs(steps) <= 4 * (16 + 4 + 1));
+    }
+}
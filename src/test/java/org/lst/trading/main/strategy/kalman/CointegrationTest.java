@@ -0,0 +1,62 @@
+package org.lst.trading.main.strategy.kalman;
+
+import org.junit.Test;
+import org.la4j.Matrix;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class CointegrationTest {
+    /**
+     * x and y of a cointegrated pair, {@code pair[0][i]} and {@code pair[1][i]}, deterministic for a fixed seed.
+     */
+    static double[][] syntheticPair(long seed, int n) {
+        Random random = new Random(seed);
+        double[][] pair = new double[2][n];
+        double x = 50, error = 0;
+        for (int i = 0; i < n; i++) {
+            x *= 1 + 0.01 * random.nextGaussian();
+            error = 0.9 * error + 0.5 * random.nextGaussian();
+            pair[0][i] = x;
+            pair[1][i] = 1.5 * x + 3 + error;
+        }
+        return pair;
+    }
+
+    /**
+     * The general filter set up the way the strategy used it before the closed form.
+     */
+    static KalmanFilter matrixFilter(double delta, double r) {
+        KalmanFilter filter = new KalmanFilter(2, 1);
+        filter.setUpdateMatrix(Matrix.identity(2));
+        filter.setState(Matrix.zero(2, 1));
+        filter.setStateCovariance(Matrix.zero(2, 2));
+        filter.setUpdateCovariance(Matrix.identity(2).multiply(delta / (1 - delta)));
+        filter.setMeasurementCovariance(Matrix.constant(1, 1, r));
+        return filter;
+    }
+
+    static void step(KalmanFilter filter, double x, double y) {
+        filter.setExtractionMatrix(Matrix.from1DArray(1, 2, new double[]{1, x}));
+        filter.step(Matrix.constant(1, 1, y));
+    }
+
+    @Test public void matchesMatrixFilter() {
+        double[][] pair = syntheticPair(42, 2500);
+        for (double delta : new double[]{0.0001, 0.5}) {
+            Cointegration coint = new Cointegration(delta, 1e-3);
+            KalmanFilter filter = matrixFilter(delta, 1e-3);
+
+            for (int i = 0; i < pair[0].length; i++) {
+                coint.step(pair[0][i], pair[1][i]);
+                step(filter, pair[0][i], pair[1][i]);
+
+                assertEquals(filter.getInnovation().get(0, 0), coint.getError(), 0);
+                assertEquals(filter.getInnovationCovariance().get(0, 0), coint.getVariance(), 0);
+                assertEquals(filter.getState().get(0, 0), coint.getAlpha(), 0);
+                assertEquals(filter.getState().get(1, 0), coint.getBeta(), 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.lst.trading.main.strategy.kalman;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lst.trading.lib.backtest.Backtest;
+import org.lst.trading.lib.series.DiagnosticsRecorder;
+import org.lst.trading.lib.series.MultipleDoubleSeries;
+import org.lst.trading.lib.store.RowFile;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CointegrationTradingStrategyTest {
+    @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+    static MultipleDoubleSeries prices(int n) {
+        double[][] pair = CointegrationTest.syntheticPair(42, n);
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++) {
+            times[i] = 86400000L * i;
+        }
+        return MultipleDoubleSeries.of(Arrays.asList("X", "Y"), times, pair);
+    }
+
+    static Backtest.Result run(MultipleDoubleSeries prices, DiagnosticsRecorder diagnostics) {
+        CointegrationTradingStrategy strategy = new CointegrationTradingStrategy("X", "Y");
+        strategy.setDiagnostics(diagnostics);
+        Backtest backtest = new Backtest(15000, prices);
+        backtest.setLeverage(4);
+        return backtest.run(strategy);
+    }
+
+    static void assertSameRows(MultipleDoubleSeries expected, MultipleDoubleSeries actual) {
+        assertEquals(expected.getNames(), actual.getNames());
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getEpochMillis(row), actual.getEpochMillis(row));
+            for (int c = 0; c < expected.getNames().size(); c++) {
+                assertEquals(expected.getValue(row, c), actual.getValue(row, c), 0);
+            }
+        }
+    }
+
+    @Test public void diagnosticsDoNotChangeTheBacktest() {
+        MultipleDoubleSeries prices = prices(2000);
+        Path path = mFolder.getRoot().toPath().resolve("diagnostics.bin");
+        DiagnosticsRecorder full = DiagnosticsRecorder.full(prices.size());
+        DiagnosticsRecorder sampled = DiagnosticsRecorder.sampled(10);
+        DiagnosticsRecorder streamed = DiagnosticsRecorder.streaming(RowFile.writer(path));
+
+        Backtest.Result expected = run(prices, DiagnosticsRecorder.off());
+        assertTrue(expected.getOrders().size() > 0);
+        for (DiagnosticsRecorder diagnostics : new DiagnosticsRecorder[]{full, sampled, streamed}) {
+            Backtest.Result result = run(prices, diagnostics);
+            assertEquals(expected.getPl(), result.getPl(), 0);
+            assertEquals(expected.getCommissions(), result.getCommissions(), 0);
+            assertEquals(expected.getOrders().size(), result.getOrders().size());
+            for (int i = 0; i < expected.getPlHistory().size(); i++) {
+                assertEquals(expected.getPlHistory().getValue(i), result.getPlHistory().getValue(i), 0);
+            }
+        }
+
+        // one row per tick with the prices of the tick, every 10th of them sampled and the same rows streamed
+        MultipleDoubleSeries rows = full.toSeries();
+        assertEquals(prices.size(), rows.size());
+        for (int i = 0; i < prices.size(); i++) {
+            assertEquals(prices.getEpochMillis(i), rows.getEpochMillis(i));
+            assertEquals(prices.getValue(i, 0), rows.getValue(i, 0), 0);
+            assertEquals(prices.getValue(i, 1), rows.getValue(i, 1), 0);
+        }
+        assertSameRows(rows, RowFile.read(path));
+        MultipleDoubleSeries samples = sampled.toSeries();
+        assertEquals(200, samples.size());
+        for (int k = 0; k < samples.size(); k++) {
+            assertEquals(rows.getEpochMillis(10 * k), samples.getEpochMillis(k));
+            for (int c = 0; c < rows.getNames().size(); c++) {
+                assertEquals(rows.getValue(10 * k, c), samples.getValue(k, c), 0);
+            }
+        }
+    }
+}
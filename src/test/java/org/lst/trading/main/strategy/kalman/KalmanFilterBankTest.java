@@ -0,0 +1,64 @@
+package org.lst.trading.main.strategy.kalman;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class KalmanFilterBankTest {
+    private static final double[] DELTAS = {1e-10, 1e-4, 0.5};
+    private static final double[] RS = {1e-7, 1e-3, 1};
+
+    private static void assertSame(Cointegration expected, KalmanFilterBank bank, int i) {
+        assertEquals(expected.getError(), bank.getError(i), 0);
+        assertEquals(expected.getVariance(), bank.getVariance(i), 0);
+        assertEquals(expected.getAlpha(), bank.getAlpha(i), 0);
+        assertEquals(expected.getBeta(), bank.getBeta(i), 0);
+    }
+
+    private static void check(int size, int steps, ForkJoinPool pool) {
+        double[] deltas = new double[size];
+        double[] rs = new double[size];
+        double[][][] pairs = new double[size][][];
+        Cointegration[] filters = new Cointegration[size];
+        for (int i = 0; i < size; i++) {
+            deltas[i] = DELTAS[i % DELTAS.length];
+            rs[i] = RS[i / DELTAS.length % RS.length];
+            pairs[i] = CointegrationTest.syntheticPair(i, steps);
+            filters[i] = new Cointegration(deltas[i], rs[i]);
+        }
+        KalmanFilterBank bank = new KalmanFilterBank(deltas, rs);
+
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int t = 0; t < steps; t++) {
+            for (int i = 0; i < size; i++) {
+                xs[i] = pairs[i][0][t];
+                ys[i] = pairs[i][1][t];
+                filters[i].step(xs[i], ys[i]);
+            }
+            if (pool == null) {
+                bank.step(xs, ys);
+            } else {
+                bank.step(xs, ys, pool);
+            }
+            for (int i = 0; i < size; i++) {
+                assertSame(filters[i], bank, i);
+            }
+        }
+    }
+
+    @Test public void matchesCointegration() {
+        check(9, 2500, null);
+    }
+
+    @Test public void parallelStepMatchesCointegration() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            check(10000, 50, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}